@@ -14,10 +14,13 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.widget.Toast;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
 
+import com.example.myfirstapp.ai.ForbiddenMoveDetector;
 import com.example.myfirstapp.ai.GomokuAI;
+import com.example.myfirstapp.ai.GomokuBoard;
 
 public class GobangView extends View {
 
@@ -25,6 +28,7 @@ public class GobangView extends View {
     private Paint linePaint;
     private Paint blackStonePaint;
     private Paint whiteStonePaint;
+    private Paint forbiddenPaint;
     private int gridSize = 15;
     private float cellWidth;
     private int[][] board = new int[15][15];
@@ -40,10 +44,15 @@ public class GobangView extends View {
     private Random random = new Random();
     private GameActivity gameActivity = null;
     private boolean gameStarted = false;
+    // Black's forbidden points for the current position, AI games only (renju rules apply there)
+    private BitSet forbiddenPoints = new BitSet();
 
     // Professional AI Engine
     private GomokuAI aiEngine;
     private GomokuAI.难度等级 aiDifficulty = GomokuAI.难度等级.困难;
+    // Background search; aiRequestId drops results that arrive after a restart
+    private GomokuAI.搜索任务 aiTask;
+    private int aiRequestId = 0;
 
     // Animation and sound effects
     private int lastMoveX = -1;
@@ -86,6 +95,13 @@ public class GobangView extends View {
         whiteStonePaint.setAntiAlias(true);
         whiteStonePaint.setStyle(Paint.Style.FILL);
 
+        // Initialize forbidden point marker paint (renju rules restrict black only)
+        forbiddenPaint = new Paint();
+        forbiddenPaint.setAntiAlias(true);
+        forbiddenPaint.setStyle(Paint.Style.STROKE);
+        forbiddenPaint.setStrokeWidth(3f);
+        forbiddenPaint.setColor(Color.parseColor("#B22222")); // Firebrick
+
         // Initialize sound effects using ToneGenerator for realistic stone sounds
         try {
             toneGenerator = new ToneGenerator(AudioManager.STREAM_NOTIFICATION, 80);
@@ -160,6 +176,24 @@ public class GobangView extends View {
                 }
             }
         }
+
+        // Mark black's forbidden points while black is to move (computed once per move)
+        drawForbiddenPoints(canvas);
+    }
+
+    private void drawForbiddenPoints(Canvas canvas) {
+        float size = cellWidth * 0.18f;
+        for (int cell = forbiddenPoints.nextSetBit(0); cell >= 0; cell = forbiddenPoints.nextSetBit(cell + 1)) {
+            int i = cell / gridSize;
+            int j = cell % gridSize;
+            if (board[i][j] != 0) {
+                continue;
+            }
+            float cx = i * cellWidth + cellWidth / 2;
+            float cy = j * cellWidth + cellWidth / 2;
+            canvas.drawLine(cx - size, cy - size, cx + size, cy + size, forbiddenPaint);
+            canvas.drawLine(cx - size, cy + size, cx + size, cy - size, forbiddenPaint);
+        }
     }
 
     private void drawStarPoints(Canvas canvas) {
@@ -268,9 +302,13 @@ public class GobangView extends View {
                 }
             }
 
-            // Place stone at the best position found
+            // Place stone at the best position found; black may not play a marked forbidden point
             if (bestX >= 0 && bestY >= 0) {
-                makeMove(bestX, bestY);
+                if (forbiddenPoints.get(bestX * gridSize + bestY)) {
+                    Toast.makeText(getContext(), "黑棋禁手", Toast.LENGTH_SHORT).show();
+                } else {
+                    makeMove(bestX, bestY);
+                }
             }
         }
         return true;
@@ -296,6 +334,7 @@ public class GobangView extends View {
 
         if (checkWin(x, y)) {
             isGameOver = true;
+            forbiddenPoints = new BitSet();
             String winner = gameActivity != null ?
                 gameActivity.getPlayerName(isBlack) + " 获胜!" :
                 (isBlack ? (blackName + " wins!") : (whiteName + " wins!"));
@@ -321,6 +360,7 @@ public class GobangView extends View {
             restartGame(false);
         } else {
             isBlack = !isBlack;
+            updateForbiddenPoints();
 
             // Update status to show whose turn it is
             updateTurnStatus();
@@ -340,6 +380,18 @@ public class GobangView extends View {
         invalidate();
     }
 
+    /**
+     * Recompute black's forbidden points after a move. Only AI games enforce renju rules:
+     * the engine never plays them and onTouchEvent rejects them, so PvP shows no marks
+     */
+    private void updateForbiddenPoints() {
+        if (gameMode == MenuActivity.GameMode.AI && isBlack && !isGameOver && aiEngine != null) {
+            forbiddenPoints = ForbiddenMoveDetector.获取所有禁手点(aiEngine.getBoard(), GomokuBoard.BLACK);
+        } else {
+            forbiddenPoints = new BitSet();
+        }
+    }
+
     // Animation and sound methods
     private void startPlaceAnimation() {
         // Check if animations are enabled in settings
@@ -483,17 +535,34 @@ public class GobangView extends View {
     private void makeAIMove() {
         if (isGameOver) return;
 
-        // 同步棋盘状态到AI引擎
-        aiEngine.initializeFromBoard(board);
+        // 双方的每一步都已在makeMove中同步给AI引擎，不再整盘重建，引擎延续上一次搜索的状态
+        // 在后台线程搜索AI最佳着法（AI执白棋 = 2），结果post回主线程落子
+        final int requestId = ++aiRequestId;
+        aiTask = aiEngine.getBestMoveAsync(2, 着法 -> aiHandler.post(() -> {
+            if (requestId == aiRequestId) {
+                aiTask = null;
+                applyAIMove(着法);
+            }
+        }));
+    }
 
-        // 获取AI最佳着法（AI执白棋 = 2）
-        GomokuAI.AI着法 ai着法 = aiEngine.getBestMove(2);
+    /**
+     * Cancel a pending or running AI search and drop its result
+     */
+    private void cancelAIMove() {
+        aiRequestId++;
+        aiHandler.removeCallbacksAndMessages(null);
+        if (aiTask != null) {
+            aiTask.cancel(false);
+            aiTask = null;
+        }
+    }
 
-        if (ai着法.isValidMove()) {
-            // 更新AI引擎棋盘状态
-            aiEngine.makeMove(ai着法.x, ai着法.y, 2);
+    private void applyAIMove(GomokuAI.AI着法 ai着法) {
+        if (isGameOver) return;
 
-            // 在UI棋盘上下子
+        if (ai着法.isValidMove()) {
+            // 在UI棋盘上下子，makeMove同时更新AI引擎棋盘
             makeMove(ai着法.x, ai着法.y);
 
             // 显示AI思考过程（可选）
@@ -511,6 +580,12 @@ public class GobangView extends View {
                 isPlayerTurn = true;
             }
         }
+
+        // 玩家思考期间AI在后台继续搜索，玩家落子时aiEngine.makeMove会停止它
+        // lastMoveX < 0 表示平局后makeMove已重新开局
+        if (!isGameOver && isBlack && lastMoveX >= 0) {
+            aiEngine.ponder(1);
+        }
     }
 
     private boolean checkWin(int x, int y) {
@@ -578,10 +653,13 @@ public class GobangView extends View {
         gameStarted = true;
 
         // Reset professional AI engine
+        cancelAIMove();
         if (aiEngine != null) {
             aiEngine.clearBoard();
         }
 
+        forbiddenPoints = new BitSet();
+
         // Reset animation state
         lastMoveX = -1;
         lastMoveY = -1;
@@ -614,6 +692,8 @@ public class GobangView extends View {
             blackName = "Player";
             whiteName = "AI";
         }
+        updateForbiddenPoints();
+        invalidate();
     }
 
     public void setAIDifficulty(GomokuAI.难度等级 难度) {
@@ -697,5 +777,9 @@ public class GobangView extends View {
             toneGenerator.release();
             toneGenerator = null;
         }
+        cancelAIMove();
+        if (aiEngine != null) {
+            aiEngine.shutdown();
+        }
     }
 }
\ No newline at end of file
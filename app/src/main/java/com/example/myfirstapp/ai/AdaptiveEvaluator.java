@@ -9,6 +9,9 @@ package com.example.myfirstapp.ai;
  * 2. 攻守态势识别 - 自动切换攻击/防御模式
  * 3. 局面阶段感知 - 开局/中局/残局不同策略
  * 4. 威胁紧急度评估 - 多层次威胁优先级
+ *
+ * 全部特征和基础分数都取自GomokuBoard按线增量维护的棋型状态，一次读取，
+ * 除紧急防御外每个叶节点只比标准评估多几次算术
  */
 public class AdaptiveEvaluator {
 
@@ -26,23 +29,23 @@ public class AdaptiveEvaluator {
      * 自适应局面评估 - 主入口函数
      */
     public static int 自适应评估局面(GomokuBoard 棋盘, int 当前玩家) {
-        // 分析当前局面特征
+        // 一次提取局面特征和基础评估分数
         局面特征 特征 = 分析局面特征(棋盘, 当前玩家);
 
-        // 计算基础评估分数
-        int 基础分数 = PatternEvaluator.评估局面(棋盘, 当前玩家);
+        // 生死关头仅考虑防御，分数完全由防御计算决定
+        if (特征.态势 == 攻守态势.紧急防御) {
+            return 重新计算紧急防御分数(棋盘, 当前玩家);
+        }
 
         // 应用自适应权重调整
-        int 调整后分数 = 应用自适应权重(基础分数, 特征, 棋盘, 当前玩家);
+        int 调整后分数 = 应用自适应权重(特征.基础分数, 特征, 棋盘, 当前玩家);
 
         // 攻守态势修正
-        调整后分数 = 应用攻守态势修正(调整后分数, 特征, 棋盘, 当前玩家);
-
-        return 调整后分数;
+        return 应用攻守态势修正(调整后分数, 特征);
     }
 
     /**
-     * 分析当前局面的特征
+     * 分析当前局面的特征 - 双方棋型数量和棋型总分各读取一次，基础分数与PatternEvaluator标准评估相同
      */
     private static 局面特征 分析局面特征(GomokuBoard 棋盘, int 当前玩家) {
         int 对手 = GomokuBoard.getOpponent(当前玩家);
@@ -58,14 +61,26 @@ public class AdaptiveEvaluator {
             阶段 = 游戏阶段.残局;
         }
 
-        // 威胁统计
-        int 己方活三 = 统计威胁数量(棋盘, 当前玩家, PatternEvaluator.活三);
-        int 己方冲四 = 统计威胁数量(棋盘, 当前玩家, PatternEvaluator.冲四);
-        int 己方活四 = 统计威胁数量(棋盘, 当前玩家, PatternEvaluator.活四);
+        // 棋型统计
+        int 己方活四数 = 棋盘.getPatternCount(当前玩家, LinePatternTable.类_活四);
+        int 己方冲四数 = 棋盘.getPatternCount(当前玩家, LinePatternTable.类_冲四);
+        int 己方活三数 = 棋盘.getPatternCount(当前玩家, LinePatternTable.类_活三);
+        int 对手活四数 = 棋盘.getPatternCount(对手, LinePatternTable.类_活四);
+        int 对手冲四数 = 棋盘.getPatternCount(对手, LinePatternTable.类_冲四);
+        int 对手活三数 = 棋盘.getPatternCount(对手, LinePatternTable.类_活三);
+
+        int 基础分数 = PatternEvaluator.标准评估分数(
+                棋盘.getPatternScore(当前玩家), 己方活四数, 己方冲四数, 己方活三数,
+                棋盘.getPatternScore(对手), 对手活四数, 对手冲四数, 对手活三数);
+
+        // 威胁特征按有无计（与PatternEvaluator.检查玩家XX威胁一致），冲四包含活四
+        int 己方活三 = 己方活三数 > 0 ? 1 : 0;
+        int 己方冲四 = 己方冲四数 > 0 || 己方活四数 > 0 ? 1 : 0;
+        int 己方活四 = 己方活四数 > 0 ? 1 : 0;
 
-        int 对手活三 = 统计威胁数量(棋盘, 对手, PatternEvaluator.活三);
-        int 对手冲四 = 统计威胁数量(棋盘, 对手, PatternEvaluator.冲四);
-        int 对手活四 = 统计威胁数量(棋盘, 对手, PatternEvaluator.活四);
+        int 对手活三 = 对手活三数 > 0 ? 1 : 0;
+        int 对手冲四 = 对手冲四数 > 0 || 对手活四数 > 0 ? 1 : 0;
+        int 对手活四 = 对手活四数 > 0 ? 1 : 0;
 
         // 态势判断
         攻守态势 态势 = 判断攻守态势(己方活三, 己方冲四, 己方活四, 对手活三, 对手冲四, 对手活四);
@@ -73,7 +88,7 @@ public class AdaptiveEvaluator {
         // 紧急度计算
         威胁紧急度 紧急度 = 计算威胁紧急度(对手活三, 对手冲四, 对手活四);
 
-        return new 局面特征(阶段, 态势, 紧急度, 己方活三, 己方冲四, 己方活四, 对手活三, 对手冲四, 对手活四);
+        return new 局面特征(阶段, 态势, 紧急度, 基础分数, 己方活三, 己方冲四, 己方活四, 对手活三, 对手冲四, 对手活四);
     }
 
     /**
@@ -150,7 +165,7 @@ public class AdaptiveEvaluator {
     /**
      * 应用攻守态势修正
      */
-    private static int 应用攻守态势修正(int 分数, 局面特征 特征, GomokuBoard 棋盘, int 当前玩家) {
+    private static int 应用攻守态势修正(int 分数, 局面特征 特征) {
         switch (特征.态势) {
             case 强攻击:
                 // 强攻击时，提升攻击权重
@@ -177,8 +192,7 @@ public class AdaptiveEvaluator {
                 break;
 
             case 紧急防御:
-                // 生死关头，仅考虑防御
-                分数 = 重新计算紧急防御分数(棋盘, 当前玩家);
+                // 生死关头已在入口处单独计算
                 break;
         }
 
@@ -190,17 +204,18 @@ public class AdaptiveEvaluator {
      */
     private static int 重新计算紧急防御分数(GomokuBoard 棋盘, int 当前玩家) {
         int 对手 = GomokuBoard.getOpponent(当前玩家);
+
+        // 对手有成五点时必须防御，按线掩码判断，不用逐格试下
+        if (存在成五点(棋盘, 对手)) {
+            return PatternEvaluator.连五 / 2;
+        }
+
         int 最高防御价值 = -PatternEvaluator.连五;
 
         // 寻找最关键的防御点
         for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
             for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
                 if (棋盘.isValidMove(x, y)) {
-                    // 检查是否能阻止对手获胜
-                    if (PatternEvaluator.是否获胜手(棋盘, x, y, 对手)) {
-                        return PatternEvaluator.连五 / 2; // 必须防御
-                    }
-
                     // 检查防御价值
                     棋盘.makeMove(x, y, 当前玩家);
                     int 防御后分数 = -PatternEvaluator.评估局面(棋盘, 对手);
@@ -214,6 +229,18 @@ public class AdaptiveEvaluator {
         return 最高防御价值;
     }
 
+    /**
+     * 玩家是否有落子即连五的空位
+     */
+    private static boolean 存在成五点(GomokuBoard 棋盘, int 玩家) {
+        for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+            if (ThreatMoveGenerator.成五位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // ================== 辅助计算方法 ==================
 
     private static int 计算开局位置奖励(GomokuBoard 棋盘, int 当前玩家) {
@@ -304,20 +331,6 @@ public class AdaptiveEvaluator {
         return 威胁紧急度.无;
     }
 
-    private static int 统计威胁数量(GomokuBoard 棋盘, int 玩家, int 威胁类型) {
-        // 简化实现 - 使用PatternEvaluator的现有功能
-        switch (威胁类型) {
-            case PatternEvaluator.活三:
-                return PatternEvaluator.检查玩家活三威胁(棋盘, 玩家) ? 1 : 0;
-            case PatternEvaluator.冲四:
-                return PatternEvaluator.检查玩家冲四威胁(棋盘, 玩家) ? 1 : 0;
-            case PatternEvaluator.活四:
-                return PatternEvaluator.检查玩家活四威胁(棋盘, 玩家) ? 1 : 0;
-            default:
-                return 0;
-        }
-    }
-
     // ================== 数据类定义 ==================
 
     /**
@@ -327,15 +340,17 @@ public class AdaptiveEvaluator {
         final 游戏阶段 阶段;
         final 攻守态势 态势;
         final 威胁紧急度 紧急度;
+        final int 基础分数;
         final int 己方活三, 己方冲四, 己方活四;
         final int 对手活三, 对手冲四, 对手活四;
 
-        局面特征(游戏阶段 阶段, 攻守态势 态势, 威胁紧急度 紧急度,
+        局面特征(游戏阶段 阶段, 攻守态势 态势, 威胁紧急度 紧急度, int 基础分数,
                 int 己方活三, int 己方冲四, int 己方活四,
                 int 对手活三, int 对手冲四, int 对手活四) {
             this.阶段 = 阶段;
             this.态势 = 态势;
             this.紧急度 = 紧急度;
+            this.基础分数 = 基础分数;
             this.己方活三 = 己方活三;
             this.己方冲四 = 己方冲四;
             this.己方活四 = 己方活四;
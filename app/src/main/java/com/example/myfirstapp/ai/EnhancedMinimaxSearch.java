@@ -1,11 +1,14 @@
 package com.example.myfirstapp.ai;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 增强版五子棋搜索引擎
- * 新增功能：空步裁剪、深度动态调整、威胁序列检测
+ * 新增功能：空步裁剪、深度动态调整、威胁序列检测、PVS零窗口搜索、渴望窗口
  * 专门针对VCF/VCTS攻击进行优化
+ * 多线程：线程数大于1时根节点着法由RootSplitter并行搜索
+ * 着法排序：静态优先级之上叠加杀手着法、历史表、应手表（MoveOrderingTables）
  */
 public class EnhancedMinimaxSearch {
 
@@ -13,39 +16,81 @@ public class EnhancedMinimaxSearch {
     private static final int 默认基础深度 = 6;
     private static final int 最大扩展深度 = 12;
     private static final long 默认时间限制 = 3000; // 3秒
+    private static final int 软限制比例 = 4;  // 用掉时间限制的1/4后不再加深，留给威胁扩展搜索
+    private static final double 着法变化延长 = 1.5;  // 最佳着法在相邻两层间变化时软限制的延长倍数
+    private static final int 渴望窗口初始宽度 = PatternEvaluator.活二; // 每次失败后放大4倍
+    private static final long 空步哈希 = 0x9E3779B97F4A7C15L;  // 空步之后棋子相同但走棋方相反，置换表键另行区分
 
     private final TranspositionTable 置换表;
+    private final EvaluationCache 评估缓存;  // 静态评估分数，与置换表一样由所有线程共享
+    private final MoveOrderingTables 排序表;  // 与根节点拆分任务共享
+    private final ThreatSpaceSolver 威胁求解器;  // 只有主搜索持有，根节点拆分任务实例为null
+    private final AtomicBoolean 停止标志;  // 与根节点拆分任务共享
+    private volatile boolean 已取消;       // 取消搜索()设置，搜索开始时不清除，由清除取消()复位
+    private final TimeManager 计时器;      // 与根节点拆分任务共享
     private long 时间限制;
-    private long 开始时间;
-    private boolean 超时;
+    private long 节点预算;  // 0为不限
     private int 节点评估数;
     private int 基础深度;
     private int 剪枝次数;
     private int 空步裁剪次数;
     private int 威胁扩展次数;
+    private int 窗口重搜次数;
+    private int 根步数;  // 根局面的已下步数，用于计算当前节点距根的层数
+    private int 扩展层数上限;  // 威胁扩展只在距根不足此层数时进行
+    private boolean 空步中;  // 正在搜索空步之后的子树，空步子树内不再空步，同一路径至多一次
+    private final int[] 路径着法 = new int[MoveOrderingTables.最大层数];  // 各层已走着法，供应手表查询
+    private final int[][] 着法缓冲 = new int[MoveOrderingTables.最大层数][];  // 各层打包着法列表，首次用到时分配
+    private int 线程数 = 1;
+    private RootSplitter<EnhancedMinimaxSearch> 根节点拆分器;
 
     public EnhancedMinimaxSearch() {
-        this.置换表 = new TranspositionTable();
-        this.时间限制 = 默认时间限制;
-        this.基础深度 = 默认基础深度;
+        this(默认时间限制, 默认基础深度);
     }
 
     public EnhancedMinimaxSearch(long 时间限制, int 基础深度) {
         this.置换表 = new TranspositionTable();
+        this.评估缓存 = new EvaluationCache();
+        this.排序表 = new MoveOrderingTables();
+        this.停止标志 = new AtomicBoolean();
+        this.计时器 = new TimeManager();
+        this.威胁求解器 = new ThreatSpaceSolver();
         this.时间限制 = 时间限制;
         this.基础深度 = 基础深度;
     }
 
+    /**
+     * 根节点拆分任务实例 - 与主搜索共享置换表、排序表和停止标志，不做威胁空间搜索
+     */
+    private EnhancedMinimaxSearch(EnhancedMinimaxSearch 主搜索) {
+        this.置换表 = 主搜索.置换表;
+        this.评估缓存 = 主搜索.评估缓存;
+        this.排序表 = 主搜索.排序表;
+        this.停止标志 = 主搜索.停止标志;
+        this.计时器 = 主搜索.计时器;
+        this.威胁求解器 = null;
+        this.时间限制 = 主搜索.时间限制;
+        this.基础深度 = 主搜索.基础深度;
+    }
+
     /**
      * 增强版最佳着法搜索 - 支持威胁扩展和动态深度
      */
     public 增强搜索结果 寻找最佳下法(GomokuBoard 棋盘, int 玩家) {
-        开始时间 = System.currentTimeMillis();
-        超时 = false;
+        计时器.开始(时间限制 / 软限制比例, 时间限制, 节点预算);
+        停止标志.set(已取消);  // 开始前已取消的搜索立即结束
         节点评估数 = 0;
         剪枝次数 = 0;
         空步裁剪次数 = 0;
         威胁扩展次数 = 0;
+        窗口重搜次数 = 0;
+        根步数 = 棋盘.getMoveCount();
+        置换表.newSearch();
+        评估缓存.newSearch();
+        排序表.新搜索();
+        if (根节点拆分器 != null) {
+            根节点拆分器.开始新搜索();
+        }
 
         GomokuEvaluator.Move 最佳着法 = null;
         int 最佳分数 = -无穷大;
@@ -54,20 +99,32 @@ public class EnhancedMinimaxSearch {
         // 第一阶段：强制防守检查
         GomokuEvaluator.Move 强制防守着法 = 检查强制防守(棋盘, 玩家);
         if (强制防守着法 != null) {
-            return new 增强搜索结果(强制防守着法, 0, 1, 1, 0.0, 0, 0, 0, "强制防守");
+            return new 增强搜索结果(强制防守着法, 0, 1, 1, 0.0, 0.0, 0, 0, 0, "强制防守");
         }
 
-        // 第二阶段：VCF威胁序列检测
-        GomokuEvaluator.Move VCF着法 = 检查VCF序列(棋盘, 玩家);
-        if (VCF着法 != null) {
-            return new 增强搜索结果(VCF着法, 无穷大/2, 基础深度*2, 100, 0.0, 0, 0, 1, "VCF必胜序列");
+        // 第二阶段：VCF/VCT威胁空间搜索
+        ThreatSpaceSolver.求解结果 威胁解 = 威胁求解器.求解(棋盘, 玩家);
+        if (威胁解 != null) {
+            return new 增强搜索结果(威胁解.着法, 无穷大/2, 威胁解.步数, 威胁解.节点数, 0.0, 0.0, 0, 0, 1,
+                    威胁解.类型 + "必胜序列");
         }
 
-        // 第三阶段：动态深度迭代搜索
-        for (int 深度 = 1; 深度 <= 基础深度 && !超时; 深度++) {
-            增强搜索结果 结果 = 搜索指定深度(棋盘, 玩家, 深度);
+        // 第三阶段：动态深度迭代搜索，第2层起以上一层分数为中心使用渴望窗口
+        // 硬限制打断的迭代作废，结果总是最后一次完成的迭代
+        for (int 深度 = 1; 深度 <= 基础深度 && !已停止(); 深度++) {
+            int 迭代前节点数 = 节点评估数;
+            long 迭代开始 = System.nanoTime();
+            增强搜索结果 结果 = 达到深度 > 0
+                    ? 渴望窗口搜索(棋盘, 玩家, 深度, 最佳分数)
+                    : 搜索指定深度(棋盘, 玩家, 深度, -无穷大, 无穷大);
 
-            if (!超时 && 结果.最佳着法 != null) {
+            if (已停止()) {
+                break;
+            }
+            if (结果.最佳着法 != null) {
+                if (最佳着法 != null && !最佳着法.equals(结果.最佳着法)) {
+                    计时器.延长软限制(着法变化延长);
+                }
                 最佳着法 = 结果.最佳着法;
                 最佳分数 = 结果.分数;
                 达到深度 = 深度;
@@ -78,15 +135,14 @@ public class EnhancedMinimaxSearch {
                 }
             }
 
-            // 动态时间控制
-            long 已用时间 = System.currentTimeMillis() - 开始时间;
-            if (已用时间 > 时间限制 / 4) {
+            // 动态时间控制 - 超过软限制，或按有效分支因子预计下一层完成不了
+            if (!计时器.继续加深(节点评估数 - 迭代前节点数, System.nanoTime() - 迭代开始)) {
                 break;
             }
         }
 
         // 第四阶段：威胁扩展搜索
-        if (!超时 && 检测到关键威胁(棋盘, 玩家)) {
+        if (!已停止() && 检测到关键威胁(棋盘, 玩家)) {
             增强搜索结果 扩展结果 = 威胁扩展搜索(棋盘, 玩家, 最佳着法, 达到深度);
             if (扩展结果.最佳着法 != null && 扩展结果.分数 > 最佳分数) {
                 最佳着法 = 扩展结果.最佳着法;
@@ -96,9 +152,12 @@ public class EnhancedMinimaxSearch {
             }
         }
 
-        String 分析 = 生成增强分析(最佳分数, 达到深度, 节点评估数, 剪枝次数, 空步裁剪次数, 威胁扩展次数);
+        String 分析 = 生成增强分析(最佳分数, 达到深度, 节点评估数, 剪枝次数, 空步裁剪次数, 威胁扩展次数, 窗口重搜次数);
+        if (使用根节点拆分()) {
+            分析 += " 线程利用率 " + 根节点拆分器.获取利用率报告();
+        }
         return new 增强搜索结果(最佳着法, 最佳分数, 达到深度, 节点评估数, 置换表.getHitRate(),
-                             剪枝次数, 空步裁剪次数, 威胁扩展次数, 分析);
+                             评估缓存.getHitRate(), 排序表.首着截断率(), 剪枝次数, 空步裁剪次数, 威胁扩展次数, 分析);
     }
 
     /**
@@ -139,89 +198,40 @@ public class EnhancedMinimaxSearch {
     }
 
     /**
-     * VCF威胁序列检测 - 检查是否存在连续冲四必胜序列
+     * 渴望窗口搜索 - 以上一层分数为中心的窄窗口，失败高/失败低时向失败一侧放大窗口重搜
      */
-    private GomokuEvaluator.Move 检查VCF序列(GomokuBoard 棋盘, int 玩家) {
-        // 寻找可以开始VCF攻击的着法
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.isValidMove(x, y)) {
-                    棋盘.makeMove(x, y, 玩家);
-
-                    if (模拟VCF序列(棋盘, 玩家, 0, 6)) { // 检查6步内VCF
-                        棋盘.undoMove(x, y);
-                        return new GomokuEvaluator.Move(x, y, PatternEvaluator.连五);
-                    }
-
-                    棋盘.undoMove(x, y);
-                }
-            }
+    private 增强搜索结果 渴望窗口搜索(GomokuBoard 棋盘, int 玩家, int 深度, int 上次分数) {
+        if (Math.abs(上次分数) >= 无穷大 / 2) {
+            return 搜索指定深度(棋盘, 玩家, 深度, -无穷大, 无穷大);
         }
-        return null;
-    }
-
-    /**
-     * 模拟VCF序列 - 递归检查连续冲四攻击
-     */
-    private boolean 模拟VCF序列(GomokuBoard 棋盘, int 攻击者, int 当前深度, int 最大深度) {
-        if (当前深度 >= 最大深度) return false;
-
-        int 防守者 = GomokuBoard.getOpponent(攻击者);
 
-        // 检查攻击者是否已经获胜
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.isValidMove(x, y) && PatternEvaluator.是否获胜手(棋盘, x, y, 攻击者)) {
-                    return true; // VCF成功
-                }
+        long 下宽 = 渴望窗口初始宽度;
+        long 上宽 = 渴望窗口初始宽度;
+        while (true) {
+            int 下界 = (int) Math.max(-无穷大, 上次分数 - 下宽);
+            int 上界 = (int) Math.min(无穷大, 上次分数 + 上宽);
+            增强搜索结果 结果 = 搜索指定深度(棋盘, 玩家, 深度, 下界, 上界);
+            if (已停止()) {
+                return 结果;
             }
-        }
-
-        // 寻找攻击者的冲四着法
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.isValidMove(x, y)) {
-                    棋盘.makeMove(x, y, 攻击者);
 
-                    // 检查是否形成冲四威胁
-                    boolean 形成冲四 = PatternEvaluator.检查玩家冲四威胁(棋盘, 攻击者);
-
-                    if (形成冲四) {
-                        // 让防守者选择最佳防守
-                        boolean VCF成功 = true;
-
-                        for (int dx = 0; dx < GomokuBoard.BOARD_SIZE && VCF成功; dx++) {
-                            for (int dy = 0; dy < GomokuBoard.BOARD_SIZE && VCF成功; dy++) {
-                                if (棋盘.isValidMove(dx, dy) && PatternEvaluator.是否获胜手(棋盘, dx, dy, 攻击者)) {
-                                    // 防守者必须堵这个点
-                                    棋盘.makeMove(dx, dy, 防守者);
-
-                                    // 递归检查攻击者的下一轮攻击
-                                    if (!模拟VCF序列(棋盘, 攻击者, 当前深度 + 1, 最大深度)) {
-                                        VCF成功 = false;
-                                    }
-
-                                    棋盘.undoMove(dx, dy);
-                                }
-                            }
-                        }
-
-                        棋盘.undoMove(x, y);
-                        if (VCF成功) return true;
-                    } else {
-                        棋盘.undoMove(x, y);
-                    }
-                }
+            if (结果.分数 <= 下界 && 下界 > -无穷大) {
+                下宽 *= 4;  // 失败低
+            } else if (结果.分数 >= 上界 && 上界 < 无穷大) {
+                上宽 *= 4;  // 失败高
+            } else {
+                return 结果;
             }
+            窗口重搜次数++;
         }
-
-        return false;
     }
 
     /**
-     * 指定深度搜索
+     * 指定深度搜索 - 根节点PVS：首个着法用完整窗口，其余先以零窗口验证能否超过当前最佳
+     * 返回分数不在(下界, 上界)内时只是界限，由渴望窗口搜索负责重搜
      */
-    private 增强搜索结果 搜索指定深度(GomokuBoard 棋盘, int 玩家, int 深度) {
+    private 增强搜索结果 搜索指定深度(GomokuBoard 棋盘, int 玩家, int 深度, int 下界, int 上界) {
+        扩展层数上限 = Math.min(最大扩展深度, 深度 + 2);
         GomokuEvaluator.Move 最佳着法 = null;
         int 最佳分数 = -无穷大;
 
@@ -233,67 +243,99 @@ public class EnhancedMinimaxSearch {
             候选着法 = 候选着法.subList(0, 最大宽度);
         }
 
-        for (GomokuEvaluator.Move 着法 : 候选着法) {
-            if (超时) break;
-
-            棋盘.makeMove(着法.x, 着法.y, 玩家);
+        if (使用根节点拆分() && 候选着法.size() > 1) {
+            RootSplitter.拆分结果 拆分 = 根节点拆分器.搜索(棋盘, 候选着法, 深度, 下界,
+                    创建根着法搜索(玩家, 深度, 下界, 上界));
+            节点评估数 += 拆分.节点数;
+            return new 增强搜索结果(拆分.最佳着法, 拆分.最佳分数, 深度, 节点评估数, 置换表.getHitRate(),
+                                 排序表.首着截断率(), 剪枝次数, 空步裁剪次数, 威胁扩展次数, "");
+        }
 
-            int 分数 = -增强alphabeta(棋盘, GomokuBoard.getOpponent(玩家), 深度 - 1,
-                                   -无穷大, 无穷大, false, false);
+        for (GomokuEvaluator.Move 着法 : 候选着法) {
+            if (已停止()) break;
 
-            棋盘.undoMove(着法.x, 着法.y);
+            int 分数 = 搜索根着法(棋盘, 玩家, 着法, 深度, Math.max(下界, 最佳分数), 下界, 上界);
 
-            if (分数 > 最佳分数 && !超时) {
+            if (分数 > 最佳分数 && !已停止()) {
                 最佳分数 = 分数;
                 最佳着法 = 着法;
             }
+
+            if (最佳分数 >= 上界) {
+                break; // 失败高，交给渴望窗口放大上界
+            }
         }
 
         return new 增强搜索结果(最佳着法, 最佳分数, 深度, 节点评估数, 置换表.getHitRate(),
-                             剪枝次数, 空步裁剪次数, 威胁扩展次数, "");
+                             排序表.首着截断率(), 剪枝次数, 空步裁剪次数, 威胁扩展次数, "");
+    }
+
+    /**
+     * 当前玩家视角的静态评估，先查评估缓存
+     */
+    private int 静态评估(GomokuBoard 棋盘, int 当前玩家) {
+        long 哈希 = 棋盘.getZobristHash();
+        int 分数 = 评估缓存.probe(哈希, 当前玩家, false);
+        if (分数 == EvaluationCache.MISS) {
+            分数 = PatternEvaluator.评估局面(棋盘, 当前玩家);
+            评估缓存.store(哈希, 当前玩家, false, 分数);
+        }
+        return 分数;
+    }
+
+    /**
+     * 玩家视角的静态评估：静态评估按走棋方打分，极小化层由对手走棋，取相反数
+     */
+    private int 玩家视角评估(GomokuBoard 棋盘, int 玩家, boolean 最大化) {
+        return 最大化 ? 静态评估(棋盘, 玩家) : -静态评估(棋盘, GomokuBoard.getOpponent(玩家));
     }
 
     /**
      * 增强版Alpha-Beta搜索 - 支持空步裁剪
+     * 分数始终是玩家（根节点走棋方）视角；最大化层由玩家落子，极小化层由对手落子
      */
     private int 增强alphabeta(GomokuBoard 棋盘, int 玩家, int 深度, int alpha, int beta,
                           boolean 最大化, boolean 允许空步) {
-        // 时间检查
-        if (System.currentTimeMillis() - 开始时间 > 时间限制) {
-            超时 = true;
+        // 停止检查：停止标志每个节点都看，时钟和节点预算每检查间隔个节点看一次
+        if (已停止()) {
             return 0;
         }
-
         节点评估数++;
+        if ((节点评估数 & TimeManager.检查掩码) == 0 && 计时器.应当停止(TimeManager.检查间隔)) {
+            停止标志.set(true);
+            return 0;
+        }
 
         // 置换表查询
-        long zobrist = 棋盘.getZobristHash();
-        TranspositionTable.Entry 缓存条目 = 置换表.lookup(zobrist);
+        long zobrist = 空步中 ? 棋盘.getZobristHash() ^ 空步哈希 : 棋盘.getZobristHash();
+        long 缓存条目 = 置换表.probe(zobrist);
 
-        if (缓存条目 != null && 缓存条目.depth >= 深度) {
-            switch (缓存条目.flag) {
+        if (缓存条目 != TranspositionTable.MISS && TranspositionTable.depthOf(缓存条目) >= 深度) {
+            int 缓存分数 = TranspositionTable.scoreOf(缓存条目);
+            switch (TranspositionTable.flagOf(缓存条目)) {
                 case TranspositionTable.EXACT:
-                    return 缓存条目.score;
+                    return 缓存分数;
                 case TranspositionTable.LOWER_BOUND:
-                    alpha = Math.max(alpha, 缓存条目.score);
+                    alpha = Math.max(alpha, 缓存分数);
                     break;
                 case TranspositionTable.UPPER_BOUND:
-                    beta = Math.min(beta, 缓存条目.score);
+                    beta = Math.min(beta, 缓存分数);
                     break;
             }
 
             if (alpha >= beta) {
                 剪枝次数++;
-                return 缓存条目.score;
+                return 缓存分数;
             }
         }
 
-        // 威胁扩展检查
-        boolean 需要威胁扩展 = 检测到关键威胁(棋盘, 玩家) || 检测到关键威胁(棋盘, GomokuBoard.getOpponent(玩家));
+        // 威胁扩展检查 - 距根节点达到扩展层数上限后不再扩展，否则持续存在的威胁会无限延伸
+        boolean 需要威胁扩展 = 棋盘.getMoveCount() - 根步数 < 扩展层数上限
+                && (检测到关键威胁(棋盘, 玩家) || 检测到关键威胁(棋盘, GomokuBoard.getOpponent(玩家)));
 
         // 终端节点检查
         if ((深度 == 0 && !需要威胁扩展) || 棋盘.isFull()) {
-            int 分数 = PatternEvaluator.评估局面(棋盘, 最大化 ? 玩家 : GomokuBoard.getOpponent(玩家));
+            int 分数 = 玩家视角评估(棋盘, 玩家, 最大化);
             置换表.store(zobrist, 0, 分数, TranspositionTable.EXACT, null);
             return 分数;
         }
@@ -304,56 +346,80 @@ public class EnhancedMinimaxSearch {
             威胁扩展次数++;
         }
 
-        // 空步裁剪 (Null Move Pruning)
+        // 空步裁剪 (Null Move Pruning)：本方放弃一手由另一方接着走，仍越过窗口就剪枝
         if (允许空步 && 深度 >= 3 && !需要威胁扩展 && beta - alpha == 1) {
             int 简化深度 = 深度 - 3; // R=2的空步裁剪
-            int 空步分数 = -增强alphabeta(棋盘, GomokuBoard.getOpponent(玩家), 简化深度,
-                                      -beta, -beta + 1, !最大化, false);
+            空步中 = true;
+            int 空步分数 = 增强alphabeta(棋盘, 玩家, 简化深度, alpha, beta, !最大化, false);
+            空步中 = false;
 
-            if (空步分数 >= beta) {
+            if ((最大化 ? 空步分数 >= beta : 空步分数 <= alpha) && !已停止()) {
                 空步裁剪次数++;
-                return beta; // 空步剪枝
+                return 最大化 ? beta : alpha; // 空步剪枝
             }
         }
 
-        // 生成有序着法列表
+        // 生成有序着法列表，叠加杀手、应手、历史奖励后再截断宽度
         int 当前玩家 = 最大化 ? 玩家 : GomokuBoard.getOpponent(玩家);
-        List<GomokuEvaluator.Move> 着法列表 = GomokuEvaluator.generateOrderedMoves(棋盘, 当前玩家, 基础深度 - 深度);
+        int 层数 = 棋盘.getMoveCount() - 根步数;
+        int 上一着 = 层数 > 0 ? 路径着法[MoveOrderingTables.限制层数(层数 - 1)] : MoveOrderingTables.无着法;
+        int[] 着法列表 = 取着法缓冲(层数);
+        int 着法数 = GomokuEvaluator.生成有序着法(棋盘, 当前玩家, 基础深度 - 深度, 着法列表);
+        排序表.排序(着法列表, 着法数, 层数, 当前玩家, 上一着);
 
         // 动态搜索宽度控制
         int 搜索宽度 = 计算搜索宽度(深度, 需要威胁扩展);
-        if (着法列表.size() > 搜索宽度) {
-            着法列表 = 着法列表.subList(0, 搜索宽度);
-        }
+        着法数 = Math.min(着法数, 搜索宽度);
 
         int 原始alpha = alpha;
-        GomokuEvaluator.Move 最佳着法 = null;
+        int 原始beta = beta;  // 极小层在循环中收紧beta，判断边界类型要用进入时的窗口
+        int 最佳着法 = TranspositionTable.NO_MOVE;
 
         if (最大化) {
             int 最大评估 = -无穷大;
 
-            for (GomokuEvaluator.Move 着法 : 着法列表) {
-                if (超时) break;
-
-                棋盘.makeMove(着法.x, 着法.y, 玩家);
-
-                int 评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, false, 允许空步);
+            for (int i = 0; i < 着法数; i++) {
+                if (已停止()) break;
+
+                int 着法 = 着法列表[i];
+                int 格子 = GomokuEvaluator.打包格子(着法);
+                int x = 格子 / GomokuBoard.BOARD_SIZE;
+                int y = 格子 % GomokuBoard.BOARD_SIZE;
+                棋盘.makeMove(x, y, 玩家);
+                路径着法[MoveOrderingTables.限制层数(层数)] = 格子;
+
+                // PVS：首个着法完整窗口，其余零窗口，超出alpha时再完整重搜
+                int 评估值;
+                if (i == 0) {
+                    评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, false, 允许空步);
+                } else {
+                    评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, alpha + 1, false, 允许空步);
+                    if (评估值 > alpha && 评估值 < beta && !已停止()) {
+                        评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, false, 允许空步);
+                    }
+                }
 
-                棋盘.undoMove(着法.x, 着法.y);
+                棋盘.undoMove(x, y);
+                if (已停止()) break;  // 子节点被打断时返回的0不是分数
 
                 if (评估值 > 最大评估) {
                     最大评估 = 评估值;
-                    最佳着法 = 着法;
+                    最佳着法 = 格子;
                 }
 
                 alpha = Math.max(alpha, 评估值);
 
                 if (beta <= alpha) {
                     剪枝次数++;
+                    排序表.记录截断(着法, i, 层数, 当前玩家, 上一着, 深度);
                     break;
                 }
             }
 
+            if (已停止()) {
+                return 0;  // 不完整的结果不写入置换表
+            }
+
             // 存储到置换表
             int 标志 = 最大评估 <= 原始alpha ? TranspositionTable.UPPER_BOUND :
                       最大评估 >= beta ? TranspositionTable.LOWER_BOUND :
@@ -365,30 +431,49 @@ public class EnhancedMinimaxSearch {
         } else {
             int 最小评估 = 无穷大;
 
-            for (GomokuEvaluator.Move 着法 : 着法列表) {
-                if (超时) break;
-
-                棋盘.makeMove(着法.x, 着法.y, GomokuBoard.getOpponent(玩家));
-
-                int 评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, true, 允许空步);
+            for (int i = 0; i < 着法数; i++) {
+                if (已停止()) break;
+
+                int 着法 = 着法列表[i];
+                int 格子 = GomokuEvaluator.打包格子(着法);
+                int x = 格子 / GomokuBoard.BOARD_SIZE;
+                int y = 格子 % GomokuBoard.BOARD_SIZE;
+                棋盘.makeMove(x, y, GomokuBoard.getOpponent(玩家));
+                路径着法[MoveOrderingTables.限制层数(层数)] = 格子;
+
+                int 评估值;
+                if (i == 0) {
+                    评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, true, 允许空步);
+                } else {
+                    评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, beta - 1, beta, true, 允许空步);
+                    if (评估值 > alpha && 评估值 < beta && !已停止()) {
+                        评估值 = 增强alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, true, 允许空步);
+                    }
+                }
 
-                棋盘.undoMove(着法.x, 着法.y);
+                棋盘.undoMove(x, y);
+                if (已停止()) break;
 
                 if (评估值 < 最小评估) {
                     最小评估 = 评估值;
-                    最佳着法 = 着法;
+                    最佳着法 = 格子;
                 }
 
                 beta = Math.min(beta, 评估值);
 
                 if (beta <= alpha) {
                     剪枝次数++;
+                    排序表.记录截断(着法, i, 层数, 当前玩家, 上一着, 深度);
                     break;
                 }
             }
 
+            if (已停止()) {
+                return 0;
+            }
+
             int 标志 = 最小评估 <= 原始alpha ? TranspositionTable.UPPER_BOUND :
-                      最小评估 >= beta ? TranspositionTable.LOWER_BOUND :
+                      最小评估 >= 原始beta ? TranspositionTable.LOWER_BOUND :
                       TranspositionTable.EXACT;
 
             置换表.store(zobrist, 深度, 最小评估, 标志, 最佳着法);
@@ -396,6 +481,83 @@ public class EnhancedMinimaxSearch {
         }
     }
 
+    private boolean 已停止() {
+        return 停止标志.get();
+    }
+
+    /**
+     * 本层的着法缓冲区 - 子节点用下一层，空步搜索在本节点生成着法之前返回，不会覆盖正在遍历的列表
+     */
+    private int[] 取着法缓冲(int 层数) {
+        int 层 = MoveOrderingTables.限制层数(层数);
+        int[] 缓冲 = 着法缓冲[层];
+        if (缓冲 == null) {
+            缓冲 = new int[GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE];
+            着法缓冲[层] = 缓冲;
+        }
+        return 缓冲;
+    }
+
+    private boolean 使用根节点拆分() {
+        if (线程数 <= 1) {
+            return false;
+        }
+        if (根节点拆分器 == null) {
+            根节点拆分器 = new RootSplitter<>(线程数, () -> new EnhancedMinimaxSearch(this));
+        }
+        return true;
+    }
+
+    /**
+     * 根节点拆分的单个任务：在拆分器复用的任务实例上搜索，实例共享置换表和停止标志
+     */
+    private RootSplitter.根着法搜索<EnhancedMinimaxSearch> 创建根着法搜索(int 玩家, int 深度, int 下界, int 上界) {
+        return new RootSplitter.根着法搜索<EnhancedMinimaxSearch>() {
+            @Override
+            public int 搜索(EnhancedMinimaxSearch 实例, GomokuBoard 棋盘, GomokuEvaluator.Move 着法, int 当前最佳) {
+                return 实例.搜索拆分着法(EnhancedMinimaxSearch.this, 棋盘, 玩家, 着法, 深度, 当前最佳, 下界, 上界);
+            }
+
+            @Override
+            public int 节点数(EnhancedMinimaxSearch 实例) {
+                return 实例.节点评估数;
+            }
+        };
+    }
+
+    /**
+     * 在复用的任务实例上搜索一个根着法：先同步主搜索本次搜索和本层的设置，节点计数从0开始
+     */
+    private int 搜索拆分着法(EnhancedMinimaxSearch 主搜索, GomokuBoard 棋盘, int 玩家, GomokuEvaluator.Move 着法,
+                         int 深度, int 当前最佳, int 下界, int 上界) {
+        根步数 = 主搜索.根步数;
+        基础深度 = 主搜索.基础深度;  // 排序深度按距基础深度的层数计算
+        扩展层数上限 = 主搜索.扩展层数上限;
+        节点评估数 = 0;
+        return 搜索根着法(棋盘, 玩家, 着法, 深度, 当前最佳, 下界, 上界);
+    }
+
+    /**
+     * 搜索单个根着法，根玩家视角的窗口为(当前最佳, 上界)
+     * 已有着法超过下界时先用零窗口验证，只有可能更好时才用完整窗口重搜
+     */
+    private int 搜索根着法(GomokuBoard 棋盘, int 玩家, GomokuEvaluator.Move 着法, int 深度,
+                       int 当前最佳, int 下界, int 上界) {
+        棋盘.makeMove(着法.x, 着法.y, 玩家);
+        路径着法[0] = MoveOrderingTables.格子(着法);
+        int 分数;
+        if (当前最佳 > 下界) {
+            分数 = 增强alphabeta(棋盘, 玩家, 深度 - 1, 当前最佳, 当前最佳 + 1, false, false);
+            if (分数 > 当前最佳 && 分数 < 上界 && !已停止()) {
+                分数 = 增强alphabeta(棋盘, 玩家, 深度 - 1, 当前最佳, 上界, false, false);
+            }
+        } else {
+            分数 = 增强alphabeta(棋盘, 玩家, 深度 - 1, 当前最佳, 上界, false, false);
+        }
+        棋盘.undoMove(着法.x, 着法.y);
+        return 分数;
+    }
+
     /**
      * 检测关键威胁 - 判断是否需要威胁扩展
      */
@@ -429,16 +591,17 @@ public class EnhancedMinimaxSearch {
         if (基础着法 == null) return null;
 
         int 扩展深度 = Math.min(基础深度 + 4, 最大扩展深度);
+        扩展层数上限 = 最大扩展深度;
 
         棋盘.makeMove(基础着法.x, 基础着法.y, 玩家);
+        路径着法[0] = MoveOrderingTables.格子(基础着法);
 
-        int 扩展分数 = -增强alphabeta(棋盘, GomokuBoard.getOpponent(玩家), 扩展深度,
-                                -无穷大, 无穷大, false, true);
+        int 扩展分数 = 增强alphabeta(棋盘, 玩家, 扩展深度, -无穷大, 无穷大, false, true);
 
         棋盘.undoMove(基础着法.x, 基础着法.y);
 
         return new 增强搜索结果(基础着法, 扩展分数, 扩展深度, 节点评估数, 置换表.getHitRate(),
-                             剪枝次数, 空步裁剪次数, 威胁扩展次数, "威胁扩展");
+                             排序表.首着截断率(), 剪枝次数, 空步裁剪次数, 威胁扩展次数, "威胁扩展");
     }
 
     /**
@@ -455,7 +618,7 @@ public class EnhancedMinimaxSearch {
     /**
      * 生成增强版分析
      */
-    private String 生成增强分析(int 分数, int 深度, int 节点数, int 剪枝数, int 空步数, int 威胁数) {
+    private String 生成增强分析(int 分数, int 深度, int 节点数, int 剪枝数, int 空步数, int 威胁数, int 重搜数) {
         StringBuilder 分析 = new StringBuilder();
 
         if (分数 > PatternEvaluator.连五 / 2) {
@@ -472,16 +635,68 @@ public class EnhancedMinimaxSearch {
             分析.append("均势局面");
         }
 
-        分析.append(String.format(" (深度:%d 节点:%d 剪枝:%d 空步:%d 威胁:%d)",
-                深度, 节点数, 剪枝数, 空步数, 威胁数));
+        分析.append(String.format(" (深度:%d 节点:%d 剪枝:%d 空步:%d 威胁:%d 窗口重搜:%d)",
+                深度, 节点数, 剪枝数, 空步数, 威胁数, 重搜数));
         return 分析.toString();
     }
 
     // Getters and Setters
-    public void 清空缓存() { 置换表.clear(); }
+    public void 清空缓存() {
+        置换表.clear();
+        评估缓存.clear();
+        排序表.清空();
+        威胁求解器.清空();
+    }
     public void 设置时间限制(long 时间限制) { this.时间限制 = 时间限制; }
+    public void 设置节点预算(long 节点预算) { this.节点预算 = 节点预算; }
     public void 设置基础深度(int 基础深度) { this.基础深度 = 基础深度; }
 
+    /**
+     * 从其他线程请求停止：正在进行的搜索在下一个节点返回已完成迭代的结果，
+     * 之后开始的搜索也立即结束，直到调用清除取消()
+     */
+    public void 取消搜索() {
+        已取消 = true;
+        停止标志.set(true);
+        威胁求解器.取消搜索();
+    }
+
+    /**
+     * 复位取消请求，应在开始新搜索之前、由发起搜索的线程调用
+     */
+    public void 清除取消() {
+        已取消 = false;
+        威胁求解器.清除取消();
+    }
+
+    /**
+     * 设置搜索线程数，大于1时启用根节点并行拆分
+     */
+    public void 设置线程数(int 线程数) {
+        int 新线程数 = Math.max(1, 线程数);
+        if (新线程数 != this.线程数) {
+            关闭();
+            this.线程数 = 新线程数;
+        }
+    }
+
+    /**
+     * 最近一次搜索的逐层线程利用率
+     */
+    public String 获取线程利用率报告() {
+        return 根节点拆分器 == null ? "" : 根节点拆分器.获取利用率报告();
+    }
+
+    /**
+     * 释放并行搜索线程
+     */
+    public void 关闭() {
+        if (根节点拆分器 != null) {
+            根节点拆分器.关闭();
+            根节点拆分器 = null;
+        }
+    }
+
     /**
      * 增强版搜索结果
      */
@@ -491,18 +706,29 @@ public class EnhancedMinimaxSearch {
         public final int 达到深度;
         public final int 节点评估数;
         public final double 缓存命中率;
+        public final double 评估缓存命中率;
+        public final double 首着截断率;  // 发生截断的节点中第一个着法就截断的比例
         public final int 剪枝次数;
         public final int 空步裁剪次数;
         public final int 威胁扩展次数;
         public final String 分析;
 
         public 增强搜索结果(GomokuEvaluator.Move 最佳着法, int 分数, int 达到深度, int 节点评估数,
-                        double 缓存命中率, int 剪枝次数, int 空步裁剪次数, int 威胁扩展次数, String 分析) {
+                        double 缓存命中率, double 首着截断率, int 剪枝次数, int 空步裁剪次数, int 威胁扩展次数,
+                        String 分析) {
+            this(最佳着法, 分数, 达到深度, 节点评估数, 缓存命中率, 0.0, 首着截断率, 剪枝次数, 空步裁剪次数, 威胁扩展次数, 分析);
+        }
+
+        public 增强搜索结果(GomokuEvaluator.Move 最佳着法, int 分数, int 达到深度, int 节点评估数,
+                        double 缓存命中率, double 评估缓存命中率, double 首着截断率, int 剪枝次数,
+                        int 空步裁剪次数, int 威胁扩展次数, String 分析) {
             this.最佳着法 = 最佳着法;
             this.分数 = 分数;
             this.达到深度 = 达到深度;
             this.节点评估数 = 节点评估数;
             this.缓存命中率 = 缓存命中率;
+            this.评估缓存命中率 = 评估缓存命中率;
+            this.首着截断率 = 首着截断率;
             this.剪枝次数 = 剪枝次数;
             this.空步裁剪次数 = 空步裁剪次数;
             this.威胁扩展次数 = 威胁扩展次数;
@@ -511,8 +737,9 @@ public class EnhancedMinimaxSearch {
 
         @Override
         public String toString() {
-            return String.format("着法: %s, 分数: %d, 深度: %d, 节点: %d, 缓存: %.1f%%, 剪枝: %d, 空步: %d, 威胁: %d, 分析: %s",
-                    最佳着法, 分数, 达到深度, 节点评估数, 缓存命中率 * 100, 剪枝次数, 空步裁剪次数, 威胁扩展次数, 分析);
+            return String.format("着法: %s, 分数: %d, 深度: %d, 节点: %d, 缓存: %.1f%%, 评估缓存: %.1f%%, 首着截断: %.1f%%, 剪枝: %d, 空步: %d, 威胁: %d, 分析: %s",
+                    最佳着法, 分数, 达到深度, 节点评估数, 缓存命中率 * 100, 评估缓存命中率 * 100, 首着截断率 * 100,
+                    剪枝次数, 空步裁剪次数, 威胁扩展次数, 分析);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.example.myfirstapp.ai;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct-mapped cache of static evaluation scores keyed by Zobrist hash
+ *
+ * Leaf positions come back through transpositions and on every iteration of
+ * iterative deepening, and the depth-0 transposition entries that would
+ * remember them are the first to be replaced. This table keeps only scores,
+ * so it stays small enough to live in the CPU cache.
+ *
+ * Each slot is one long in an AtomicLongArray: {check bits of the key, score}.
+ * A long is read and written as a unit, so a reader sees either a whole entry
+ * or a different position's entry that fails the check; no locks and no
+ * allocation, and one cache can be shared by all search threads.
+ *
+ * The key mixes in the side to move and the evaluator, because the same
+ * position scores differently for each side and under AdaptiveEvaluator.
+ * clear() swaps the salt, which invalidates every entry in O(1).
+ *
+ * slot layout (low to high):
+ *   bits  0-31  score
+ *   bits 32-63  high half of the key, lowest bit forced to 1 so an empty slot never matches
+ */
+public class EvaluationCache {
+
+    private static final int DEFAULT_SIZE = 1 << 16; // 64K entries, 512 KB
+
+    /** probe() result for a missing entry */
+    public static final int MISS = Integer.MIN_VALUE;
+
+    private static final long[] SIDE_KEY = new long[3];
+    private static final long ADAPTIVE_KEY;
+
+    static {
+        Random random = new Random(54321); // Fixed seed for reproducibility
+        SIDE_KEY[GomokuBoard.BLACK] = random.nextLong();
+        SIDE_KEY[GomokuBoard.WHITE] = random.nextLong();
+        ADAPTIVE_KEY = random.nextLong();
+    }
+
+    private final AtomicLongArray table;
+    private final int indexMask;
+    private final Random saltSource = new Random();
+    private volatile long salt;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public EvaluationCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public EvaluationCache(int size) {
+        // Ensure size is power of 2
+        int actualSize = 1;
+        while (actualSize < size) {
+            actualSize <<= 1;
+        }
+        table = new AtomicLongArray(actualSize);
+        indexMask = actualSize - 1;
+        salt = saltSource.nextLong();
+    }
+
+    /**
+     * Start a new root search: resets the hit statistics, entries stay valid
+     */
+    public void newSearch() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Cached score of the position for the side to move, or MISS
+     */
+    public int probe(long zobristHash, int player, boolean adaptive) {
+        long key = key(zobristHash, player, adaptive);
+        long entry = table.get((int) key & indexMask);
+        if ((entry & 0xFFFFFFFF00000000L) == check(key)) {
+            hits.increment();
+            return (int) entry;
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    /**
+     * Store a score, replacing whatever the slot held
+     */
+    public void store(long zobristHash, int player, boolean adaptive, int score) {
+        long key = key(zobristHash, player, adaptive);
+        table.set((int) key & indexMask, check(key) | (score & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Clear evaluation cache
+     */
+    public void clear() {
+        salt = saltSource.nextLong();
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Get hit rate for performance monitoring
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    private long key(long zobristHash, int player, boolean adaptive) {
+        return zobristHash ^ SIDE_KEY[player] ^ (adaptive ? ADAPTIVE_KEY : 0) ^ salt;
+    }
+
+    private static long check(long key) {
+        return (key | 1L << 32) & 0xFFFFFFFF00000000L;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.myfirstapp.ai;
 
+import java.util.BitSet;
+
 /**
  * 五子棋禁手规则检测器
  * 实现标准五子棋规则中的三三禁手、四四禁手、长连禁手
@@ -9,9 +11,14 @@ package com.example.myfirstapp.ai;
  * 2. 四四禁手：黑棋不能同时形成两个或多个冲四或活四
  * 3. 长连禁手：黑棋不能形成六个或六个以上的连子
  * 4. 白棋（后手）不受禁手限制
+ *
+ * 三种禁手都只取决于经过落子点的四条线，GomokuBoard按线缓存黑棋在每个空位落子后的结果（禁手图），
+ * 只重算变化过的线，所以是否禁手的查询不需要模拟落子
  */
 public class ForbiddenMoveDetector {
 
+    private static final int 四型类别 = (1 << LinePatternTable.类_冲四) | (1 << LinePatternTable.类_活四);
+
     /**
      * 检查指定位置是否为禁手
      * @param 棋盘 当前棋盘状态
@@ -31,67 +38,74 @@ public class ForbiddenMoveDetector {
             return true;
         }
 
-        // 模拟落子检查禁手
-        棋盘.makeMove(x, y, 玩家);
-        boolean 结果 = 检查所有禁手(棋盘, x, y, 玩家);
-        棋盘.undoMove(x, y);
-
-        return 结果;
+        return 棋盘.isForbiddenPoint(x, y);
     }
 
     /**
-     * 检查所有类型的禁手
+     * 获取玩家的全部禁手点，位编号为 x * BOARD_SIZE + y；白棋返回空集
      */
-    private static boolean 检查所有禁手(GomokuBoard 棋盘, int x, int y, int 玩家) {
-        // 1. 检查长连禁手
-        if (检查长连禁手(棋盘, x, y, 玩家)) {
-            return true;
+    public static BitSet 获取所有禁手点(GomokuBoard 棋盘, int 玩家) {
+        BitSet 禁手点 = new BitSet(GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE);
+        if (玩家 != GomokuBoard.BLACK) {
+            return 禁手点;
         }
-
-        // 2. 检查四四禁手
-        if (检查四四禁手(棋盘, x, y, 玩家)) {
-            return true;
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                if (棋盘.isForbiddenPoint(x, y)) {
+                    禁手点.set(x * GomokuBoard.BOARD_SIZE + y);
+                }
+            }
         }
+        return 禁手点;
+    }
 
-        // 3. 检查三三禁手
-        if (检查三三禁手(棋盘, x, y, 玩家)) {
-            return true;
+    /**
+     * 分析黑棋在一条线上的禁手要素：逐个空位试落子，返回落子后在本线形成长连、四、真活三的空位
+     * 三个位掩码打包为 长连位 | 成四位 << 16 | 成三位 << 32，由GomokuBoard按线缓存
+     */
+    static long 分析线禁手(int 黑, int 空位) {
+        int 棋子数 = Integer.bitCount(黑);
+        if (棋子数 < 2) {
+            return 0;
         }
 
-        return false;
+        // 四和活三的窗口不超过6格，离黑子5格以外的空位落子不会与之成型
+        int 邻近 = 黑;
+        for (int i = 1; i < LinePatternTable.窗口长度; i++) {
+            邻近 |= 黑 << i | 黑 >>> i;
+        }
+        int 候选 = 邻近 & 空位;
+        long 长连位 = 0;
+        long 成四位 = 0;
+        long 成三位 = 0;
+        while (候选 != 0) {
+            int 位 = Integer.numberOfTrailingZeros(候选);
+            int 落子位 = 候选 & -候选;
+            候选 &= 候选 - 1;
+            int 落子后 = 黑 | 落子位;
+            int 落子后空位 = 空位 & ~落子位;
+            if (棋子数 >= 5 && 形成长连(落子后, 位)) {
+                长连位 |= 落子位;
+            }
+            if (形成四型(落子后, 落子后空位, 位)) {
+                成四位 |= 落子位;
+            }
+            if (形成真活三(落子后, 落子后空位, 位)) {
+                成三位 |= 落子位;
+            }
+        }
+        return 长连位 | 成四位 << 16 | 成三位 << 32;
     }
 
     /**
      * 检查长连禁手 - 六个或以上连子
      */
     private static boolean 检查长连禁手(GomokuBoard 棋盘, int x, int y, int 玩家) {
-        int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        for (int[] 方向向量 : 方向) {
-            int 连子数 = 1; // 包含当前落子
-
-            // 正方向计算连子
-            for (int i = 1; i < GomokuBoard.BOARD_SIZE; i++) {
-                int nx = x + 方向向量[0] * i;
-                int ny = y + 方向向量[1] * i;
-                if (!棋盘.isInBounds(nx, ny) || 棋盘.getStone(nx, ny) != 玩家) {
-                    break;
-                }
-                连子数++;
-            }
-
-            // 负方向计算连子
-            for (int i = 1; i < GomokuBoard.BOARD_SIZE; i++) {
-                int nx = x - 方向向量[0] * i;
-                int ny = y - 方向向量[1] * i;
-                if (!棋盘.isInBounds(nx, ny) || 棋盘.getStone(nx, ny) != 玩家) {
-                    break;
-                }
-                连子数++;
-            }
+        for (int 方向 = 0; 方向 < GomokuBoard.DIRECTIONS.length; 方向++) {
+            int 线 = GomokuBoard.lineIndex(方向, x, y);
 
             // 长连禁手：6个或以上连子
-            if (连子数 >= 6) {
+            if (形成长连(棋盘.getLineBits(玩家, 线), GomokuBoard.bitIndex(方向, x, y))) {
                 return true;
             }
         }
@@ -106,9 +120,7 @@ public class ForbiddenMoveDetector {
         int 四的数量 = 0;
 
         // 检查所有方向的四型
-        int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        for (int[] 方向向量 : 方向) {
+        for (int[] 方向向量 : GomokuBoard.DIRECTIONS) {
             if (检查单方向四型(棋盘, x, y, 方向向量[0], 方向向量[1], 玩家)) {
                 四的数量++;
             }
@@ -119,98 +131,13 @@ public class ForbiddenMoveDetector {
     }
 
     /**
-     * 检查单方向四型（活四或冲四）
+     * 检查单方向四型（活四或冲四，含跳冲四）- 棋型定义来自LinePatternTable
      */
     private static boolean 检查单方向四型(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 检查以(x,y)为中心的各种四型模式
-
-        // 活四模式：_XXXX_ (两端都开放)
-        if (检查活四模式(棋盘, x, y, dx, dy, 玩家)) {
-            return true;
-        }
+        int 方向 = GomokuBoard.directionIndex(dx, dy);
+        int 线 = GomokuBoard.lineIndex(方向, x, y);
 
-        // 冲四模式：XXXX_ 或 _XXXX (一端开放)
-        if (检查冲四模式(棋盘, x, y, dx, dy, 玩家)) {
-            return true;
-        }
-
-        return false;
-    }
-
-    /**
-     * 检查活四模式：_XXXX_
-     */
-    private static boolean 检查活四模式(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 寻找连续4个己方棋子，两端都是空位的模式
-        for (int 起始偏移 = -3; 起始偏移 <= 0; 起始偏移++) {
-            boolean 模式匹配 = true;
-
-            // 检查前置空位
-            int 前位x = x + (起始偏移 - 1) * dx;
-            int 前位y = y + (起始偏移 - 1) * dy;
-            if (!棋盘.isInBounds(前位x, 前位y) || 棋盘.getStone(前位x, 前位y) != GomokuBoard.EMPTY) {
-                continue;
-            }
-
-            // 检查4个连续棋子
-            for (int i = 0; i < 4; i++) {
-                int 检查x = x + (起始偏移 + i) * dx;
-                int 检查y = y + (起始偏移 + i) * dy;
-                if (!棋盘.isInBounds(检查x, 检查y) || 棋盘.getStone(检查x, 检查y) != 玩家) {
-                    模式匹配 = false;
-                    break;
-                }
-            }
-
-            if (!模式匹配) continue;
-
-            // 检查后置空位
-            int 后位x = x + (起始偏移 + 4) * dx;
-            int 后位y = y + (起始偏移 + 4) * dy;
-            if (棋盘.isInBounds(后位x, 后位y) && 棋盘.getStone(后位x, 后位y) == GomokuBoard.EMPTY) {
-                return true; // 找到活四
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * 检查冲四模式：XXXX_ 或 _XXXX
-     */
-    private static boolean 检查冲四模式(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 寻找连续4个己方棋子，一端开放的模式
-        for (int 起始偏移 = -3; 起始偏移 <= 0; 起始偏移++) {
-            boolean 模式匹配 = true;
-
-            // 检查4个连续棋子
-            for (int i = 0; i < 4; i++) {
-                int 检查x = x + (起始偏移 + i) * dx;
-                int 检查y = y + (起始偏移 + i) * dy;
-                if (!棋盘.isInBounds(检查x, 检查y) || 棋盘.getStone(检查x, 检查y) != 玩家) {
-                    模式匹配 = false;
-                    break;
-                }
-            }
-
-            if (!模式匹配) continue;
-
-            // 检查是否至少一端开放
-            int 前位x = x + (起始偏移 - 1) * dx;
-            int 前位y = y + (起始偏移 - 1) * dy;
-            int 后位x = x + (起始偏移 + 4) * dx;
-            int 后位y = y + (起始偏移 + 4) * dy;
-
-            boolean 前端开放 = 棋盘.isInBounds(前位x, 前位y) && 棋盘.getStone(前位x, 前位y) == GomokuBoard.EMPTY;
-            boolean 后端开放 = 棋盘.isInBounds(后位x, 后位y) && 棋盘.getStone(后位x, 后位y) == GomokuBoard.EMPTY;
-
-            // 冲四：至少一端开放，但不能两端都开放（那是活四）
-            if ((前端开放 && !后端开放) || (!前端开放 && 后端开放)) {
-                return true;
-            }
-        }
-
-        return false;
+        return 形成四型(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线), GomokuBoard.bitIndex(方向, x, y));
     }
 
     /**
@@ -220,9 +147,7 @@ public class ForbiddenMoveDetector {
         int 活三数量 = 0;
 
         // 检查所有方向的活三
-        int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        for (int[] 方向向量 : 方向) {
+        for (int[] 方向向量 : GomokuBoard.DIRECTIONS) {
             if (检查单方向活三(棋盘, x, y, 方向向量[0], 方向向量[1], 玩家)) {
                 活三数量++;
             }
@@ -233,41 +158,42 @@ public class ForbiddenMoveDetector {
     }
 
     /**
-     * 检查单方向活三：_XXX_
+     * 检查单方向活三（含跳活三）
      */
     private static boolean 检查单方向活三(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 寻找连续3个己方棋子，两端都是空位的模式
-        for (int 起始偏移 = -2; 起始偏移 <= 0; 起始偏移++) {
-            boolean 模式匹配 = true;
-
-            // 检查前置空位
-            int 前位x = x + (起始偏移 - 1) * dx;
-            int 前位y = y + (起始偏移 - 1) * dy;
-            if (!棋盘.isInBounds(前位x, 前位y) || 棋盘.getStone(前位x, 前位y) != GomokuBoard.EMPTY) {
-                continue;
-            }
+        int 方向 = GomokuBoard.directionIndex(dx, dy);
+        int 线 = GomokuBoard.lineIndex(方向, x, y);
 
-            // 检查3个连续棋子
-            for (int i = 0; i < 3; i++) {
-                int 检查x = x + (起始偏移 + i) * dx;
-                int 检查y = y + (起始偏移 + i) * dy;
-                if (!棋盘.isInBounds(检查x, 检查y) || 棋盘.getStone(检查x, 检查y) != 玩家) {
-                    模式匹配 = false;
-                    break;
-                }
-            }
+        return 形成真活三(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线), GomokuBoard.bitIndex(方向, x, y));
+    }
 
-            if (!模式匹配) continue;
+    /**
+     * 以下判断都针对落子后的线：己方已包含位上的棋子
+     */
+    private static boolean 形成长连(int 己方, int 位) {
+        return GomokuBoard.runCovers(己方, 位, 6);
+    }
 
-            // 检查后置空位
-            int 后位x = x + (起始偏移 + 3) * dx;
-            int 后位y = y + (起始偏移 + 3) * dy;
-            if (棋盘.isInBounds(后位x, 后位y) && 棋盘.getStone(后位x, 后位y) == GomokuBoard.EMPTY) {
-                // 进一步检查是否能形成活四（确保是真正的活三）
-                if (能形成活四(棋盘, 前位x, 前位y, dx, dy, 玩家) ||
-                    能形成活四(棋盘, 后位x, 后位y, dx, dy, 玩家)) {
-                    return true;
-                }
+    private static boolean 形成四型(int 己方, int 空位, int 位) {
+        return LinePatternTable.存在覆盖棋型(己方, 空位, 位, 四型类别);
+    }
+
+    /**
+     * 查表判定为活三，且再下一手能形成活四（真活三）
+     */
+    private static boolean 形成真活三(int 己方, int 空位, int 位) {
+        if (!LinePatternTable.存在覆盖棋型(己方, 空位, 位, 1 << LinePatternTable.类_活三)) {
+            return false;
+        }
+
+        // 进一步检查是否能形成活四（确保是真正的活三）
+        int 候选 = 空位 & 邻近掩码(位);
+        while (候选 != 0) {
+            int 补位 = Integer.numberOfTrailingZeros(候选);
+            候选 &= 候选 - 1;
+
+            if (能形成活四(己方 | (1 << 补位), 空位 & ~(1 << 补位), 位, 补位)) {
+                return true;
             }
         }
 
@@ -275,19 +201,19 @@ public class ForbiddenMoveDetector {
     }
 
     /**
-     * 检查在指定位置落子后是否能形成活四
+     * 检查在补位落子后是否形成同时经过原落子点和补位的活四
      */
-    private static boolean 能形成活四(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        if (!棋盘.isInBounds(x, y) || 棋盘.getStone(x, y) != GomokuBoard.EMPTY) {
-            return false;
-        }
-
-        // 模拟落子
-        棋盘.makeMove(x, y, 玩家);
-        boolean 结果 = 检查活四模式(棋盘, x, y, dx, dy, 玩家);
-        棋盘.undoMove(x, y);
+    private static boolean 能形成活四(int 己方, int 空位, int 位, int 补位) {
+        return LinePatternTable.存在覆盖棋型(己方, 空位, 位, 1 << LinePatternTable.类_活四) &&
+               LinePatternTable.存在覆盖棋型(己方, 空位, 补位, 1 << LinePatternTable.类_活四);
+    }
 
-        return 结果;
+    /**
+     * 与指定位距离不超过3的位（活四跨度内）
+     */
+    private static int 邻近掩码(int 位) {
+        int 低位 = Math.max(0, 位 - 3);
+        return ((1 << (位 + 4 - 低位)) - 1) << 低位;
     }
 
     /**
@@ -323,13 +249,12 @@ public class ForbiddenMoveDetector {
     public static void 显示所有禁手点(GomokuBoard 棋盘, int 玩家) {
         System.out.println("当前" + (玩家 == GomokuBoard.BLACK ? "黑棋" : "白棋") + "的禁手点：");
 
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (是否禁手(棋盘, x, y, 玩家)) {
-                    String 类型 = 获取禁手类型(棋盘, x, y, 玩家);
-                    System.out.println("(" + x + "," + y + ") - " + 类型);
-                }
-            }
+        BitSet 禁手点 = 获取所有禁手点(棋盘, 玩家);
+        for (int 格子 = 禁手点.nextSetBit(0); 格子 >= 0; 格子 = 禁手点.nextSetBit(格子 + 1)) {
+            int x = 格子 / GomokuBoard.BOARD_SIZE;
+            int y = 格子 % GomokuBoard.BOARD_SIZE;
+            String 类型 = 获取禁手类型(棋盘, x, y, 玩家);
+            System.out.println("(" + x + "," + y + ") - " + 类型);
         }
     }
-}
\ No newline at end of file
+}
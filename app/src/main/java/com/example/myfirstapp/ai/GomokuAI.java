@@ -1,5 +1,14 @@
 package com.example.myfirstapp.ai;
 
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * 高性能五子棋AI引擎
  * 协调所有AI组件：棋盘、评估器、模式识别和搜索
@@ -7,29 +16,107 @@ package com.example.myfirstapp.ai;
  */
 public class GomokuAI {
 
-    private final GomokuBoard 棋盘;
+    private final GomokuBoard 棋盘;        // 对局棋盘，只由调用方线程修改
+    private final GomokuBoard 搜索棋盘;    // 每次搜索开始前在调用方线程上复制，之后只由搜索线程使用
     private final MinimaxSearch 搜索引擎;
+    private final ThreatSpaceSolver 威胁求解器;
+    private final ProofNumberSolver 证明数求解器;
+    private final ThreatIndex 威胁索引;  // 建立在搜索棋盘上，搜索前的威胁检查直接查询；跨搜索保留各线结果
+    private final int[] 威胁格子 = new int[GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE];
+    private long 证明截止纳秒;  // 本步所有证明数搜索共用的截止时间
+    private long 证明剩余节点;  // 有节点预算的难度下代替截止时间：本步所有证明数搜索共用的节点数
+    private int 请求线程数;      // setThreadCount的设置；有节点预算的难度下实际只用一个线程
+    private MCTSSearch 蒙特卡洛引擎;  // 切换到蒙特卡洛引擎时才创建
+    private 引擎类型 当前引擎 = 引擎类型.极小化极大;
     private 难度等级 难度;
+    private final TimeAllocator 时间分配器;  // 整局时间预算，新对局和改难度时重置
+    private boolean 启用自适应时间;
     private boolean 启用日志;
     private boolean 启用自适应评估; // 新增: 自适应评估模式开关
+    private ExecutorService 后台线程;  // getBestMoveAsync的搜索线程，首次使用时创建
+    private volatile 搜索任务 当前任务;
+    private volatile boolean 已请求停止;  // 与搜索引擎、求解器的取消标志同时设置，供后台思考和创造威胁的候选循环使用
+
+    // 每次证明数搜索最多占用难度时间限制的几分之一
+    private static final int 证明时间比例 = 30;
+    // 一步之内所有证明数搜索（必胜证明和逐个候选的必败检查）合计最多占用本步时间限制的几分之一
+    private static final int 证明总时间比例 = 10;
+    // 不限时间也没有节点预算的难度下，证明数搜索和蒙特卡洛引擎仍按时间停止，使用这些限制（毫秒）
+    private static final long 不限时证明时间 = 100;
+    private static final long 不限时证明总时间 = 300;
+    private static final long 不限时蒙特卡洛时间 = 3000;
+    // 有节点预算的难度下，蒙特卡洛引擎每步的模拟次数为节点预算的几分之一（一次模拟远比一个节点贵）
+    private static final int 蒙特卡洛模拟比例 = 4;
+    // 后台思考最多假设的对方应手数
+    private static final int 后台思考应手数 = 6;
+
+    /**
+     * 主搜索引擎：alpha-beta（默认）或蒙特卡洛树搜索，两者返回相同的搜索结果类型
+     */
+    public enum 引擎类型 { 极小化极大, 蒙特卡洛 }
 
     // 难度设置
     public enum 难度等级 {
         简单(3, 1000),      // 3层深度，1秒
         中等(4, 2000),      // 4层深度，2秒
         困难(6, 3000),      // 6层深度，3秒（默认）
-        大师(8, 5000);      // 8层深度，5秒
+        大师(8, 5000),      // 8层深度，5秒
+        // 8层深度，不限时间，每步10万节点；证明搜索按节点、蒙特卡洛按模拟次数计，强制单线程、不做后台思考，
+        // 着法与设备快慢无关，同样的对局过程得到同样的着法
+        固定节点(8, 0, 100_000);
 
         private final int 最大深度;
-        private final long 时间限制;
+        private final long 时间限制;  // 毫秒，0为不限
+        private final long 节点预算;  // 0为不限
 
         难度等级(int 最大深度, long 时间限制) {
+            this(最大深度, 时间限制, 0);
+        }
+
+        难度等级(int 最大深度, long 时间限制, long 节点预算) {
             this.最大深度 = 最大深度;
             this.时间限制 = 时间限制;
+            this.节点预算 = 节点预算;
         }
 
         public int 获取最大深度() { return 最大深度; }
         public long 获取时间限制() { return 时间限制; }
+        public long 获取节点预算() { return 节点预算; }
+
+        /**
+         * 单次证明数搜索的时间上限（毫秒）；有节点预算时为0，只按节点停止
+         */
+        long 证明时间限制() {
+            if (节点预算 > 0) {
+                return 0;
+            }
+            return 时间限制 > 0 ? 时间限制 / 证明时间比例 : 不限时证明时间;
+        }
+
+        /**
+         * 单次证明数搜索的节点上限，与证明时间限制的比例相同
+         */
+        int 证明节点上限() {
+            return 节点预算 > 0 ? (int) Math.max(1, 节点预算 / 证明时间比例) : ProofNumberSolver.默认节点上限;
+        }
+
+        /**
+         * 一步之内所有证明数搜索合计的节点数，0为不按节点计（按证明截止时间）
+         */
+        long 证明总节点预算() {
+            return 节点预算 > 0 ? Math.max(1, 节点预算 / 证明总时间比例) : 0;
+        }
+
+        long 蒙特卡洛时间限制() {
+            if (时间限制 > 0) {
+                return 时间限制;
+            }
+            return 节点预算 > 0 ? 0 : 不限时蒙特卡洛时间;
+        }
+
+        long 蒙特卡洛模拟预算() {
+            return 节点预算 > 0 ? Math.max(1, 节点预算 / 蒙特卡洛模拟比例) : 0;
+        }
     }
 
     public GomokuAI() {
@@ -38,17 +125,40 @@ public class GomokuAI {
 
     public GomokuAI(难度等级 难度) {
         this.棋盘 = new GomokuBoard();
+        this.搜索棋盘 = new GomokuBoard();
+        this.威胁索引 = new ThreatIndex(搜索棋盘);
         this.难度 = 难度;
         this.搜索引擎 = new MinimaxSearch(难度.获取时间限制(), 难度.获取最大深度());
+        this.搜索引擎.设置节点预算(难度.获取节点预算());
+        this.请求线程数 = Runtime.getRuntime().availableProcessors(); // 默认使用全部核心
+        应用线程数();
+        this.威胁求解器 = new ThreatSpaceSolver();
+        this.证明数求解器 = new ProofNumberSolver();
+        this.证明数求解器.设置时间限制(难度.证明时间限制());
+        this.证明数求解器.设置节点上限(难度.证明节点上限());
+        this.时间分配器 = new TimeAllocator(难度.获取时间限制());
+        this.启用自适应时间 = true;
         this.启用日志 = false;
         this.启用自适应评估 = false; // 默认关闭自适应评估
+        this.搜索引擎.开始对局();
     }
 
     /**
      * 用当前游戏状态初始化AI
+     * 游戏棋盘只比AI棋盘多出一些棋子时只补上这些棋子，搜索状态（置换表、着法排序表）按同一局延续；
+     * 否则（悔棋、换了局面）重建棋盘，之后的搜索不再沿用上一局面的主变例
+     * 界面每次落子都调用makeMove时不需要再调用本方法
      */
     public void initializeFromBoard(int[][] 游戏棋盘) {
+        if (补齐新增棋子(游戏棋盘)) {
+            return;
+        }
+        cancelSearch();
         棋盘.initFromArray(游戏棋盘);
+        搜索引擎.开始对局();
+        if (棋盘.getMoveCount() == 0) {
+            时间分配器.新对局(难度.获取时间限制());
+        }
 
         if (启用日志) {
             System.out.println("AI已初始化，棋盘状态：");
@@ -58,14 +168,305 @@ public class GomokuAI {
     }
 
     /**
-     * 获取AI的最佳着法
+     * AI棋盘上的每颗棋子都与游戏棋盘相同时，把游戏棋盘上多出的棋子落到AI棋盘上
+     * 没有新增棋子时不打断后台思考
+     * @return false表示两者不一致，需要重建
+     */
+    private boolean 补齐新增棋子(int[][] 游戏棋盘) {
+        int 新增 = 0;
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                int 棋子 = 棋盘.getStone(x, y);
+                if (棋子 != GomokuBoard.EMPTY && 棋子 != 游戏棋盘[x][y]) {
+                    return false;
+                }
+                if (棋子 == GomokuBoard.EMPTY && 游戏棋盘[x][y] != GomokuBoard.EMPTY) {
+                    新增++;
+                }
+            }
+        }
+        if (新增 == 0) {
+            return true;
+        }
+        cancelSearch();
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                if (棋盘.getStone(x, y) == GomokuBoard.EMPTY && 游戏棋盘[x][y] != GomokuBoard.EMPTY) {
+                    棋盘.makeMove(x, y, 游戏棋盘[x][y]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 搜索完成时在后台搜索线程上调用；Android中应post到主线程再更新界面
+     */
+    public interface 着法回调 {
+        void 完成(AI着法 着法);
+    }
+
+    /**
+     * 获取AI的最佳着法（在调用线程上搜索，阻塞直到完成）
      */
     public AI着法 getBestMove(int AI玩家) {
-        if (棋盘.isFull()) {
+        cancelSearch();
+        准备搜索棋盘();
+        清除取消();
+        return 按分配时间计算(AI玩家);
+    }
+
+    /**
+     * 搜索和后台思考都在对局棋盘的副本上落子、悔棋，调用方线程可以随时读取对局棋盘（如界面计算禁手点），
+     * 不会看到搜索中的假设局面；副本在调用方线程上复制，提交任务保证搜索线程看到完整的副本
+     * 调用前已经用cancelSearch()等待上一个任务退出，同一时刻只有一个搜索使用副本
+     * 副本和建立在它上面的威胁索引整局复用：复制后索引只重算与上次查询相比变化过的线，
+     * 通常是双方新下的两手经过的几条线
+     */
+    private void 准备搜索棋盘() {
+        搜索棋盘.copyFrom(棋盘);
+    }
+
+    /**
+     * 在后台搜索线程上寻找最佳着法，立即返回可取消的任务
+     * 之前未完成的任务会先被取消；搜索在提交时的棋盘副本上进行，调用makeMove等会先取消它
+     * @param 回调 搜索正常完成时调用，被取消的任务不会回调；可以为null
+     */
+    public 搜索任务 getBestMoveAsync(int AI玩家, 着法回调 回调) {
+        cancelSearch();
+        准备搜索棋盘();
+        搜索任务 任务 = new 搜索任务(AI玩家, 回调, false);
+        当前任务 = 任务;
+        获取后台线程().execute(任务.任务);
+        return 任务;
+    }
+
+    /**
+     * 后台思考：AI走完后，在对方思考期间按排序依次假设对方走出各个候选应手，
+     * 在其后做一次与正式回合相同的搜索（不限时间），结果留在共享的置换表中
+     * 对方落子时makeMove会先停止思考；若实际应手已思考过，随后的搜索几乎立即达到最大深度，
+     * 相当于延长了思考时间而不增加等待
+     * 只有极小化极大引擎使用置换表，蒙特卡洛引擎下返回null；
+     * 有节点预算的难度下也返回null：思考多久取决于对方，留在置换表里的结果会让着法不可复现
+     * @param 对手 即将走棋的一方
+     * @return 任务完成时的结果是预测的对方着法（排序第一的应手）
+     */
+    public 搜索任务 ponder(int 对手) {
+        if (当前引擎 != 引擎类型.极小化极大 || 难度.获取节点预算() > 0 || 棋盘.isFull()) {
+            return null;
+        }
+        cancelSearch();
+        准备搜索棋盘();
+        搜索任务 任务 = new 搜索任务(对手, null, true);
+        当前任务 = 任务;
+        获取后台线程().execute(任务.任务);
+        return 任务;
+    }
+
+    private AI着法 思考对方着法(int 对手) {
+        List<GomokuEvaluator.Move> 应手 = GomokuEvaluator.generateOrderedMoves(搜索棋盘, 对手, 0);
+        if (应手.isEmpty()) {
+            return null;
+        }
+        int AI玩家 = GomokuBoard.getOpponent(对手);
+        int 数量 = Math.min(应手.size(), 后台思考应手数);
+        // 逐轮加深，每轮把所有候选应手搜一遍：对方提前落子时各应手都已有结果，而不是只有第一个
+        int 最大深度 = 难度.获取最大深度();
+        搜索引擎.设置时间限制(0);
+        搜索引擎.设置节点预算(0);
+        // 正式回合已经淡化过历史表，后台思考的各次搜索都接着用，不再逐次减半
+        搜索引擎.设置延续排序表(true);
+        try {
+            for (int 深度 = Math.max(1, 最大深度 - 2); 深度 <= 最大深度 && !已请求停止; 深度++) {
+                搜索引擎.设置最大深度(深度);
+                for (int i = 0; i < 数量 && !已请求停止; i++) {
+                    GomokuEvaluator.Move 着法 = 应手.get(i);
+                    搜索棋盘.makeMove(着法.x, 着法.y, 对手);
+                    try {
+                        AI着法 应对 = 计算最佳着法(AI玩家, 0);
+                        if (启用日志) {
+                            System.out.println("后台思考: 深度" + 深度 + " 对方(" + 着法.x + "," + 着法.y + ") → " + 应对);
+                        }
+                    } finally {
+                        搜索棋盘.undoMove(着法.x, 着法.y);
+                    }
+                }
+            }
+        } finally {
+            搜索引擎.设置延续排序表(false);
+            搜索引擎.设置时间限制(难度.获取时间限制());
+            搜索引擎.设置节点预算(难度.获取节点预算());
+            搜索引擎.设置最大深度(最大深度);
+        }
+        GomokuEvaluator.Move 预测 = 应手.get(0);
+        return new AI着法(预测.x, 预测.y, "预测对方着法", null);
+    }
+
+    /**
+     * 取消正在进行的后台搜索，并等待搜索线程退出，返回后可以安全修改棋盘
+     * 取消是协作式的：搜索在下一个节点检查停止标志后返回，不会中断线程
+     * 不能在着法回调中调用
+     */
+    public void cancelSearch() {
+        搜索任务 任务 = 当前任务;
+        if (任务 == null) {
+            return;
+        }
+        任务.cancel(false);
+        等待后台线程空闲();
+        当前任务 = null;
+    }
+
+    /**
+     * 后台搜索是否正在进行
+     */
+    public boolean isSearching() {
+        搜索任务 任务 = 当前任务;
+        return 任务 != null && !任务.isDone();
+    }
+
+    private ExecutorService 获取后台线程() {
+        if (后台线程 == null || 后台线程.isShutdown()) {
+            后台线程 = Executors.newSingleThreadExecutor(任务 -> {
+                Thread 线程 = new Thread(任务, "GomokuAI-search");
+                线程.setDaemon(true);
+                return 线程;
+            });
+        }
+        return 后台线程;
+    }
+
+    /**
+     * 单线程执行器按顺序执行，排在后面的空任务完成时之前的搜索已经退出
+     */
+    private void 等待后台线程空闲() {
+        if (后台线程 == null || 后台线程.isShutdown()) {
+            return;
+        }
+        try {
+            后台线程.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 空任务不会失败
+        }
+    }
+
+    private void 清除取消() {
+        已请求停止 = false;
+        搜索引擎.清除取消();
+        威胁求解器.清除取消();
+        证明数求解器.清除取消();
+        if (蒙特卡洛引擎 != null) {
+            蒙特卡洛引擎.清除取消();
+        }
+    }
+
+    private void 停止引擎() {
+        已请求停止 = true;
+        搜索引擎.取消搜索();
+        威胁求解器.取消搜索();
+        证明数求解器.取消搜索();
+        if (蒙特卡洛引擎 != null) {
+            蒙特卡洛引擎.取消搜索();
+        }
+    }
+
+    /**
+     * 后台搜索任务 - cancel不中断线程，而是设置搜索引擎的停止标志
+     */
+    public final class 搜索任务 implements Future<AI着法> {
+        private final FutureTask<AI着法> 任务;
+        private volatile boolean 已取消;
+
+        /**
+         * @param 后台思考 true时为对方回合的思考，结果是预测的对方着法，不调用回调
+         */
+        private 搜索任务(int 玩家, 着法回调 回调, boolean 后台思考) {
+            this.任务 = new FutureTask<>(() -> {
+                // 先复位引擎再检查取消标志：取消发生在复位之前会被这里看到，之后则留在引擎的停止标志里
+                清除取消();
+                if (已取消) {
+                    return null;
+                }
+                if (后台思考) {
+                    return 思考对方着法(玩家);
+                }
+                AI着法 着法 = 按分配时间计算(玩家);
+                if (!已取消 && 回调 != null) {
+                    回调.完成(着法);
+                }
+                return 着法;
+            });
+        }
+
+        @Override
+        public boolean cancel(boolean 允许中断) {
+            if (任务.isDone()) {
+                return false;
+            }
+            // 忽略允许中断：中断可能打断搜索线程池的等待，停止标志足以让搜索很快返回
+            已取消 = true;
+            停止引擎();
+            return 任务.cancel(false);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return 已取消;
+        }
+
+        @Override
+        public boolean isDone() {
+            return 任务.isDone();
+        }
+
+        @Override
+        public AI着法 get() throws InterruptedException, ExecutionException {
+            return 任务.get();
+        }
+
+        @Override
+        public AI着法 get(long 超时, TimeUnit 单位)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return 任务.get(超时, 单位);
+        }
+    }
+
+    /**
+     * 正式回合：极小化极大引擎按整局时间分配器给出的限制搜索，并把实际用时记入预算
+     * 蒙特卡洛引擎总是用满时间限制，仍按难度的固定时间
+     */
+    private AI着法 按分配时间计算(int AI玩家) {
+        if (!启用自适应时间 || 当前引擎 != 引擎类型.极小化极大 || 难度.获取时间限制() <= 0) {
+            return 计算最佳着法(AI玩家, 难度.获取时间限制());
+        }
+        long 限制 = 时间分配器.分配(搜索棋盘);
+        long 开始 = System.nanoTime();
+        try {
+            AI着法 着法 = 计算最佳着法(AI玩家, 限制);
+            if (启用日志) {
+                System.out.println("本步时间限制: " + 限制 + "ms，整局剩余: " + 时间分配器.获取剩余时间() + "ms");
+            }
+            return 着法;
+        } finally {
+            时间分配器.记录((System.nanoTime() - 开始) / 1_000_000L);
+        }
+    }
+
+    /**
+     * @param 本步限制 本步的总时间（毫秒），0为不限；搜索前的威胁检查与证明先从中扣除，
+     *                 极小化极大引擎只用剩下的时间
+     */
+    private AI着法 计算最佳着法(int AI玩家, long 本步限制) {
+        if (搜索棋盘.isFull()) {
             return new AI着法(-1, -1, "棋盘已满", null);
         }
 
         long 开始时间 = System.currentTimeMillis();
+        证明截止纳秒 = System.nanoTime()
+                + (本步限制 > 0 ? Math.max(1, 本步限制 / 证明总时间比例) : 不限时证明总时间) * 1_000_000L;
+        证明剩余节点 = 难度.证明总节点预算();
 
         // 快速威胁检测，立即响应
         AI着法 紧急着法 = 检查紧急威胁(AI玩家);
@@ -77,7 +478,21 @@ public class GomokuAI {
         }
 
         // 使用完整minimax搜索寻找最佳着法
-        MinimaxSearch.搜索结果 结果 = 搜索引擎.寻找最佳下法(棋盘, AI玩家);
+        MinimaxSearch.搜索结果 结果;
+        if (当前引擎 == 引擎类型.蒙特卡洛) {
+            结果 = 获取蒙特卡洛引擎().寻找最佳下法(搜索棋盘, AI玩家);
+        } else {
+            if (本步限制 > 0) {
+                搜索引擎.设置时间限制(Math.max(1, 本步限制 - (System.currentTimeMillis() - 开始时间)));
+            }
+            try {
+                结果 = 搜索引擎.寻找最佳下法(搜索棋盘, AI玩家);
+            } finally {
+                if (本步限制 > 0) {
+                    搜索引擎.设置时间限制(难度.获取时间限制());
+                }
+            }
+        }
         long 思考时间 = System.currentTimeMillis() - 开始时间;
 
         if (结果.最佳着法 == null) {
@@ -102,63 +517,109 @@ public class GomokuAI {
         int 对手 = GomokuBoard.getOpponent(玩家);
 
         // 第一优先级：立即获胜
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.isValidMove(x, y) &&
-                    PatternEvaluator.是否获胜手(棋盘, x, y, 玩家)) {
-                    return new AI着法(x, y, "获胜着法！", null);
-                }
-            }
+        if (威胁索引.成五点(玩家, 威胁格子) > 0) {
+            return 格子着法(威胁格子[0], "获胜着法！");
         }
 
         // 第二优先级：阻止对手获胜
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.isValidMove(x, y) &&
-                    PatternEvaluator.是否获胜手(棋盘, x, y, 对手)) {
-                    return new AI着法(x, y, "阻止对手获胜", null);
-                }
-            }
+        if (威胁索引.成五点(对手, 威胁格子) > 0) {
+            return 格子着法(威胁格子[0], "阻止对手获胜");
         }
 
-        // 第三优先级：强制防守活三威胁
-        if (PatternEvaluator.检查玩家活三威胁(棋盘, 对手)) {
-            for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-                for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                    if (棋盘.isValidMove(x, y)) {
-                        // 测试此着法是否能阻止活三威胁
-                        棋盘.makeMove(x, y, 玩家);
-                        boolean 阻止成功 = !PatternEvaluator.检查玩家活三威胁(棋盘, 对手);
-                        棋盘.undoMove(x, y);
+        // 第三优先级：连续冲四必胜，先于对手的活三
+        ThreatSpaceSolver.求解结果 VCF = 威胁求解器.求解VCF(搜索棋盘, 玩家);
+        if (VCF != null) {
+            return new AI着法(VCF.着法.x, VCF.着法.y, String.format("VCF必胜序列（%d步）", VCF.步数), null);
+        }
 
-                        if (阻止成功) {
-                            return new AI着法(x, y, "强制防守活三", null);
-                        }
-                    }
-                }
-            }
+        // 第四优先级：强制防守活三威胁
+        if (威胁索引.活三破解点(对手, 威胁格子) > 0) {
+            return 格子着法(威胁格子[0], "强制防守活三");
         }
 
-        // 第四优先级：创造威胁
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.isValidMove(x, y) &&
-                    PatternEvaluator.是否创造威胁(棋盘, x, y, 玩家)) {
-                    return new AI着法(x, y, "创造威胁", null);
-                }
+        // 第五优先级：连续活三、冲四必胜
+        ThreatSpaceSolver.求解结果 VCT = 威胁求解器.求解VCT(搜索棋盘, 玩家);
+        if (VCT != null) {
+            return new AI着法(VCT.着法.x, VCT.着法.y, String.format("VCT必胜序列（%d步）", VCT.步数), null);
+        }
+
+        // 第六优先级：证明数搜索，证明超出VCT步数的长序列必胜
+        ProofNumberSolver.证明结果 证明 = 限时证明必胜(玩家);
+        if (证明 != null && 证明.结论 == ProofNumberSolver.结论.必胜) {
+            return new AI着法(证明.着法.x, 证明.着法.y, String.format("证明必胜（%d步）", 证明.序列.size()), null);
+        }
+
+        // 第七优先级：创造威胁，跳过走完后对手可证明必胜的着法
+        int 威胁数 = 威胁索引.威胁点(玩家, 威胁格子);
+        // 证明预算用完后无法排除候选，交给主搜索
+        for (int i = 0; i < 威胁数 && !已请求停止; i++) {
+            int x = 威胁格子[i] / GomokuBoard.BOARD_SIZE;
+            int y = 威胁格子[i] % GomokuBoard.BOARD_SIZE;
+            if (!PatternEvaluator.是否创造威胁(搜索棋盘, x, y, 玩家)) {
+                continue;
+            }
+            Boolean 必败 = 导致必败(x, y, 玩家);
+            if (必败 == null) {
+                break;
+            }
+            if (!必败) {
+                return new AI着法(x, y, "创造威胁", null);
             }
         }
 
         return null; // 未发现紧急威胁
     }
 
+    private AI着法 格子着法(int 格子, String 说明) {
+        return new AI着法(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE, 说明, null);
+    }
+
+    /**
+     * 走这一手之后，对手能否在威胁空间内证明必胜
+     * @return 本步的证明预算已用完时为null
+     */
+    private Boolean 导致必败(int x, int y, int 玩家) {
+        搜索棋盘.makeMove(x, y, 玩家);
+        try {
+            ProofNumberSolver.证明结果 证明 = 限时证明必胜(GomokuBoard.getOpponent(玩家));
+            return 证明 == null ? null : 证明.结论 == ProofNumberSolver.结论.必胜;
+        } finally {
+            搜索棋盘.undoMove(x, y);
+        }
+    }
+
+    /**
+     * 在搜索棋盘上证明攻击方必胜，单次不超过难度的证明时间，且不超过本步证明预算的剩余部分
+     * 有节点预算的难度下两者都按节点计，结果与机器快慢无关
+     * @return 预算已用完时为null
+     */
+    private ProofNumberSolver.证明结果 限时证明必胜(int 攻击方) {
+        if (难度.获取节点预算() > 0) {
+            if (证明剩余节点 <= 0) {
+                return null;
+            }
+            证明数求解器.设置时间限制(0);
+            证明数求解器.设置节点上限((int) Math.min(难度.证明节点上限(), 证明剩余节点));
+            ProofNumberSolver.证明结果 证明 = 证明数求解器.证明必胜(搜索棋盘, 攻击方);
+            证明剩余节点 -= 证明.节点数;
+            return 证明;
+        }
+        long 剩余毫秒 = (证明截止纳秒 - System.nanoTime()) / 1_000_000L;
+        if (剩余毫秒 <= 0) {
+            return null;
+        }
+        证明数求解器.设置节点上限(难度.证明节点上限());
+        证明数求解器.设置时间限制(Math.min(难度.证明时间限制(), 剩余毫秒));
+        return 证明数求解器.证明必胜(搜索棋盘, 攻击方);
+    }
+
     /**
      * 搜索失败时的回退着法
      */
     private AI着法 获取回退着法() {
         // 优先尝试天元位置
         int 天元 = GomokuBoard.BOARD_SIZE / 2;
-        if (棋盘.isValidMove(天元, 天元)) {
+        if (搜索棋盘.isValidMove(天元, 天元)) {
             return new AI着法(天元, 天元, "天元着法（回退）", null);
         }
 
@@ -168,7 +629,7 @@ public class GomokuAI {
                 for (int dy = -半径; dy <= 半径; dy++) {
                     int x = 天元 + dx;
                     int y = 天元 + dy;
-                    if (棋盘.isValidMove(x, y)) {
+                    if (搜索棋盘.isValidMove(x, y)) {
                         return new AI着法(x, y, "天元附近（回退）", null);
                     }
                 }
@@ -210,9 +671,11 @@ public class GomokuAI {
     }
 
     /**
-     * 更新棋盘状态
+     * 更新棋盘状态，正在进行的后台思考会先停止
+     * 界面应在双方每次落子时调用，AI保留上一次搜索的置换表、着法排序表和主变例，下一次搜索直接延续
      */
     public boolean makeMove(int x, int y, int 玩家) {
+        cancelSearch();
         return 棋盘.makeMove(x, y, 玩家);
     }
 
@@ -220,17 +683,109 @@ public class GomokuAI {
      * 清空棋盘
      */
     public void clearBoard() {
+        cancelSearch();
         棋盘.clear();
+        时间分配器.新对局(难度.获取时间限制());
         搜索引擎.清空缓存();
+        搜索引擎.开始对局();
+        威胁求解器.清空();
+        证明数求解器.清空();
     }
 
     /**
      * 设置难度等级
      */
     public void setDifficulty(难度等级 难度) {
+        cancelSearch();
         this.难度 = 难度;
+        时间分配器.新对局(难度.获取时间限制());
         搜索引擎.设置最大深度(难度.获取最大深度());
         搜索引擎.设置时间限制(难度.获取时间限制());
+        搜索引擎.设置节点预算(难度.获取节点预算());
+        证明数求解器.设置时间限制(难度.证明时间限制());
+        证明数求解器.设置节点上限(难度.证明节点上限());
+        应用线程数();
+        if (蒙特卡洛引擎 != null) {
+            蒙特卡洛引擎.设置时间限制(难度.蒙特卡洛时间限制());
+            蒙特卡洛引擎.设置模拟预算(难度.蒙特卡洛模拟预算());
+        }
+    }
+
+    /**
+     * 选择主搜索引擎，紧急威胁与证明搜索对两种引擎都先执行
+     */
+    public void setEngineType(引擎类型 类型) {
+        cancelSearch();
+        this.当前引擎 = 类型;
+        if (类型 == 引擎类型.蒙特卡洛) {
+            获取蒙特卡洛引擎();  // 在调用线程上创建，取消后台搜索时能看到它
+        }
+    }
+
+    public 引擎类型 getEngineType() {
+        return 当前引擎;
+    }
+
+    private MCTSSearch 获取蒙特卡洛引擎() {
+        if (蒙特卡洛引擎 == null) {
+            蒙特卡洛引擎 = new MCTSSearch(难度.蒙特卡洛时间限制());
+            蒙特卡洛引擎.设置模拟预算(难度.蒙特卡洛模拟预算());
+            蒙特卡洛引擎.设置线程数(搜索引擎.获取线程数());
+            蒙特卡洛引擎.设置自适应评估(启用自适应评估);
+        }
+        return 蒙特卡洛引擎;
+    }
+
+    /**
+     * 设置搜索线程数（Lazy SMP，蒙特卡洛引擎为树并行），1为单线程搜索
+     * 有节点预算的难度下仍只用一个线程（多线程的搜索结果取决于调度），换到其他难度后恢复为这里的设置
+     */
+    public void setThreadCount(int 线程数) {
+        cancelSearch();  // 重建线程池前先等后台搜索退出
+        请求线程数 = 线程数;
+        应用线程数();
+    }
+
+    private void 应用线程数() {
+        int 线程数 = 难度.获取节点预算() > 0 ? 1 : 请求线程数;
+        搜索引擎.设置线程数(线程数);
+        if (蒙特卡洛引擎 != null) {
+            蒙特卡洛引擎.设置线程数(线程数);
+        }
+    }
+
+    /**
+     * 获取实际使用的搜索线程数
+     */
+    public int getThreadCount() {
+        return 搜索引擎.获取线程数();
+    }
+
+    /**
+     * 选择多线程方式：Lazy SMP（默认）或根节点并行拆分
+     */
+    public void setParallelMode(MinimaxSearch.并行模式 模式) {
+        cancelSearch();
+        搜索引擎.设置并行模式(模式);
+    }
+
+    public MinimaxSearch.并行模式 getParallelMode() {
+        return 搜索引擎.获取并行模式();
+    }
+
+    /**
+     * 释放搜索线程，之后调用getBestMove会按需重建
+     */
+    public void shutdown() {
+        cancelSearch();
+        if (后台线程 != null) {
+            后台线程.shutdown();
+            后台线程 = null;
+        }
+        搜索引擎.关闭();
+        if (蒙特卡洛引擎 != null) {
+            蒙特卡洛引擎.关闭();
+        }
     }
 
     /**
@@ -244,7 +799,12 @@ public class GomokuAI {
      * 启用/禁用自适应评估模式
      */
     public void setAdaptiveEvaluationEnabled(boolean 启用自适应) {
+        cancelSearch();  // 切换评估会清空置换表，不能与后台搜索同时进行
         this.启用自适应评估 = 启用自适应;
+        搜索引擎.设置自适应评估(启用自适应);
+        if (蒙特卡洛引擎 != null) {
+            蒙特卡洛引擎.设置自适应评估(启用自适应);
+        }
 
         if (启用日志) {
             System.out.println("自适应评估模式: " + (启用自适应 ? "启用" : "禁用"));
@@ -258,6 +818,27 @@ public class GomokuAI {
         return 启用自适应评估;
     }
 
+    /**
+     * 设置NNUE评估网络（null恢复棋型评估），网络优先于自适应评估；
+     * 两种评估的分数不可比，切换时清空搜索缓存
+     */
+    public void setNeuralNetwork(NNUENetwork 网络) {
+        cancelSearch();  // 清空缓存不能与后台搜索同时进行，后台的搜索棋盘也还带着旧网络
+        棋盘.setNetwork(网络);
+        搜索引擎.清空缓存();
+
+        if (启用日志) {
+            System.out.println("NNUE评估: " + (网络 != null ? "启用，隐藏层宽度 " + 网络.获取隐藏层宽度() : "禁用"));
+        }
+    }
+
+    /**
+     * 获取当前使用的NNUE网络，未使用时为null
+     */
+    public NNUENetwork getNeuralNetwork() {
+        return 棋盘.getNetwork();
+    }
+
     /**
      * 获取当前棋盘状态，用于调试
      */
@@ -299,6 +880,25 @@ public class GomokuAI {
         }
     }
 
+    /**
+     * 启用/禁用按整局预算分配每步时间；禁用时每步都用难度的固定时间
+     */
+    public void setAdaptiveTimeEnabled(boolean 启用) {
+        cancelSearch();
+        this.启用自适应时间 = 启用;
+    }
+
+    public boolean isAdaptiveTimeEnabled() {
+        return 启用自适应时间;
+    }
+
+    /**
+     * 本局剩余的时间预算（毫秒），可能为负
+     */
+    public long getRemainingGameTime() {
+        return 时间分配器.获取剩余时间();
+    }
+
     /**
      * 获取难度等级
      */
@@ -308,6 +908,7 @@ public class GomokuAI {
 
     /**
      * 获取当前棋盘，用于外部访问
+     * 返回的是对局棋盘，后台搜索从不修改它；只应在调用makeMove的同一线程上使用
      */
     public GomokuBoard getBoard() {
         return 棋盘;
@@ -12,7 +12,50 @@ public class GomokuBoard {
     public static final int BLACK = 1;
     public static final int WHITE = 2;
 
+    /**
+     * Line directions shared by all pattern code: column, row, diagonal, anti-diagonal
+     */
+    public static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+    /**
+     * Bitboard layout: every row, column, diagonal and anti-diagonal is one line.
+     * Within a line, bit i is the cell reached after i steps along its direction,
+     * i.e. bit index = x for directions 0, 2, 3 and y for direction 1.
+     */
+    public static final int LINE_COUNT = BOARD_SIZE * 2 + (BOARD_SIZE * 2 - 1) * 2;
+    private static final int[] LINE_OFFSET = {0, BOARD_SIZE, BOARD_SIZE * 2, BOARD_SIZE * 2 + BOARD_SIZE * 2 - 1};
+    private static final int[] lineValidBits = new int[LINE_COUNT];
+
     private final int[][] board;
+    private final int[][] lineBits = new int[3][LINE_COUNT]; // indexed by player, slot 0 unused
+
+    // Incremental pattern state: per-line scores and shape counts for each player.
+    // Moves only mark the 4 lines through them dirty; dirty lines are re-analysed on the next query.
+    private final int[][] lineScore = new int[3][LINE_COUNT];
+    private final int[][][] lineCounts = new int[3][LinePatternTable.类别数][LINE_COUNT];
+    private final int[] patternScore = new int[3];
+    private final int[][] patternCounts = new int[3][LinePatternTable.类别数];
+    private final long[] dirtyLines = new long[2];
+    private final int[] scratchCounts = new int[LinePatternTable.类别数];
+
+    // Candidate frontier. For every row x, columnCounts[x] packs one 4-bit counter per column y holding the
+    // number of stones in column y within NEIGHBOUR_RADIUS rows of x (at most 2r+1 = 5), and columnRows[x] has
+    // bit y set while that counter is non-zero. A move adds or removes one counter on 2r+1 rows; the
+    // horizontal part of the radius is applied when a row is queried.
+    public static final int NEIGHBOUR_RADIUS = 2;
+    private final long[] columnCounts = new long[BOARD_SIZE];
+    private final int[] columnRows = new int[BOARD_SIZE];
+
+    // Renju forbidden-point map for Black: per line, the empty cells where a black stone would make an overline,
+    // a four or a true three on that line (packed by ForbiddenMoveDetector.分析线禁手). Refreshed lazily like the
+    // pattern state but with its own dirty set, so boards that are never asked about forbidden points pay nothing.
+    private final long[] forbiddenLines = new long[LINE_COUNT];
+    private final long[] forbiddenDirty = new long[2];
+
+    // Optional NNUE backend: first-layer sums of the attached network from each player's perspective,
+    // updated by every make/undo so that evaluating only needs the output layer (see NNUENetwork).
+    private NNUENetwork network;
+    private short[][] accumulator; // indexed by perspective player, slot 0 unused
     private int moveCount;
     private long zobristHash;
 
@@ -29,6 +72,15 @@ public class GomokuBoard {
                 }
             }
         }
+
+        // Precompute which bits of each line fall on the board
+        for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+            for (int i = 0; i < BOARD_SIZE; i++) {
+                for (int j = 0; j < BOARD_SIZE; j++) {
+                    lineValidBits[lineIndex(dir, i, j)] |= 1 << bitIndex(dir, i, j);
+                }
+            }
+        }
     }
 
     public GomokuBoard() {
@@ -38,10 +90,48 @@ public class GomokuBoard {
     }
 
     public GomokuBoard(GomokuBoard other) {
-        this.board = new int[BOARD_SIZE][BOARD_SIZE];
+        this();
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrite this board with the state of another one, reusing this board's arrays.
+     * Objects that keep per-line caches keyed on the line bits (ThreatIndex) stay bound to
+     * this board and only re-analyse the lines that differ.
+     */
+    public void copyFrom(GomokuBoard other) {
         for (int i = 0; i < BOARD_SIZE; i++) {
             System.arraycopy(other.board[i], 0, this.board[i], 0, BOARD_SIZE);
         }
+        for (int p = BLACK; p <= WHITE; p++) {
+            System.arraycopy(other.lineBits[p], 0, this.lineBits[p], 0, LINE_COUNT);
+            System.arraycopy(other.lineScore[p], 0, this.lineScore[p], 0, LINE_COUNT);
+            for (int k = 0; k < LinePatternTable.类别数; k++) {
+                System.arraycopy(other.lineCounts[p][k], 0, this.lineCounts[p][k], 0, LINE_COUNT);
+            }
+            System.arraycopy(other.patternCounts[p], 0, this.patternCounts[p], 0, LinePatternTable.类别数);
+        }
+        System.arraycopy(other.patternScore, 0, this.patternScore, 0, 3);
+        System.arraycopy(other.dirtyLines, 0, this.dirtyLines, 0, 2);
+        System.arraycopy(other.columnCounts, 0, this.columnCounts, 0, BOARD_SIZE);
+        System.arraycopy(other.columnRows, 0, this.columnRows, 0, BOARD_SIZE);
+        System.arraycopy(other.forbiddenLines, 0, this.forbiddenLines, 0, LINE_COUNT);
+        System.arraycopy(other.forbiddenDirty, 0, this.forbiddenDirty, 0, 2);
+        if (other.network == null) {
+            this.network = null;
+            this.accumulator = null;
+        } else {
+            if (this.network != other.network || this.accumulator == null) {
+                this.network = other.network;
+                this.accumulator = new short[3][];
+                for (int p = BLACK; p <= WHITE; p++) {
+                    this.accumulator[p] = new short[other.accumulator[p].length];
+                }
+            }
+            for (int p = BLACK; p <= WHITE; p++) {
+                System.arraycopy(other.accumulator[p], 0, this.accumulator[p], 0, other.accumulator[p].length);
+            }
+        }
         this.moveCount = other.moveCount;
         this.zobristHash = other.zobristHash;
     }
@@ -56,6 +146,11 @@ public class GomokuBoard {
 
         board[x][y] = player;
         moveCount++;
+        toggleLineBits(x, y, player);
+        updateNeighbours(x, y, 1);
+        if (network != null) {
+            updateAccumulator(x, y, player, true);
+        }
 
         // Update Zobrist hash
         zobristHash ^= zobristTable[x][y][player];
@@ -71,6 +166,11 @@ public class GomokuBoard {
             int player = board[x][y];
             board[x][y] = EMPTY;
             moveCount--;
+            toggleLineBits(x, y, player);
+            updateNeighbours(x, y, -1);
+            if (network != null) {
+                updateAccumulator(x, y, player, false);
+            }
 
             // Update Zobrist hash
             zobristHash ^= zobristTable[x][y][player];
@@ -92,38 +192,221 @@ public class GomokuBoard {
     public boolean isWinningMove(int x, int y, int player) {
         if (board[x][y] != player) return false;
 
-        int[][] directions = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+        for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+            if (runCovers(lineBits[player][lineIndex(dir, x, y)], bitIndex(dir, x, y), 5)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the bits of a line contain a run of at least length stones covering bit
+     */
+    public static boolean runCovers(int bits, int bit, int length) {
+        int runs = bits;
+        for (int i = 1; i < length; i++) {
+            runs &= bits >>> i;
+        }
+        // runs has bit s set for every run starting at s; a run covers bit if s in [bit-length+1, bit]
+        int low = Math.max(0, bit - length + 1);
+        return ((runs >>> low) & ((1 << (bit - low + 1)) - 1)) != 0;
+    }
+
+    /**
+     * Line index of the line through (x, y) in the given direction
+     */
+    public static int lineIndex(int dir, int x, int y) {
+        switch (dir) {
+            case 0: return LINE_OFFSET[0] + y;
+            case 1: return LINE_OFFSET[1] + x;
+            case 2: return LINE_OFFSET[2] + x - y + BOARD_SIZE - 1;
+            default: return LINE_OFFSET[3] + x + y;
+        }
+    }
+
+    /**
+     * Bit position of (x, y) inside its line in the given direction
+     */
+    public static int bitIndex(int dir, int x, int y) {
+        return dir == 1 ? y : x;
+    }
+
+    /**
+     * Direction index for a direction vector from DIRECTIONS
+     */
+    public static int directionIndex(int dx, int dy) {
+        if (dx == 0) return 1;
+        if (dy == 0) return 0;
+        return dx == dy ? 2 : 3;
+    }
+
+    /**
+     * Stones of a player on a line as a bit mask
+     */
+    public int getLineBits(int player, int line) {
+        return lineBits[player][line];
+    }
 
-        for (int[] dir : directions) {
-            int count = 1; // Count the current stone
+    /**
+     * Empty on-board cells of a line as a bit mask
+     */
+    public int getEmptyBits(int line) {
+        return lineValidBits[line] & ~(lineBits[BLACK][line] | lineBits[WHITE][line]);
+    }
+
+    /**
+     * On-board cells of a line as a bit mask
+     */
+    public static int getValidBits(int line) {
+        return lineValidBits[line];
+    }
 
-            // Count stones in positive direction
-            for (int i = 1; i < 5; i++) {
-                int nextX = x + dir[0] * i;
-                int nextY = y + dir[1] * i;
-                if (isInBounds(nextX, nextY) && board[nextX][nextY] == player) {
-                    count++;
-                } else {
-                    break;
+    private void toggleLineBits(int x, int y, int player) {
+        int[] bits = lineBits[player];
+        for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+            int line = lineIndex(dir, x, y);
+            bits[line] ^= 1 << bitIndex(dir, x, y);
+            dirtyLines[line >>> 6] |= 1L << (line & 63);
+            forbiddenDirty[line >>> 6] |= 1L << (line & 63);
+        }
+    }
+
+    private void updateNeighbours(int x, int y, int delta) {
+        int shift = y * 4;
+        long step = (long) delta << shift;
+        for (int i = Math.max(0, x - NEIGHBOUR_RADIUS); i <= Math.min(BOARD_SIZE - 1, x + NEIGHBOUR_RADIUS); i++) {
+            long counts = columnCounts[i] + step;
+            columnCounts[i] = counts;
+            int nonZero = ((int) (counts >>> shift) & 0xF) + 0xF >>> 4; // counters stay below 16
+            columnRows[i] = (columnRows[i] & ~(1 << y)) | (nonZero << y);
+        }
+    }
+
+    /**
+     * Empty cells of row x within NEIGHBOUR_RADIUS of some stone; bit y stands for (x, y)
+     */
+    public int getFrontierRow(int x) {
+        int columns = columnRows[x];
+        int near = columns | columns << 1 | columns << 2 | columns >>> 1 | columns >>> 2;
+        return near & getEmptyBits(LINE_OFFSET[1] + x);
+    }
+
+    /**
+     * Sum of the pattern scores of all lines for a player (see PatternEvaluator)
+     */
+    public int getPatternScore(int player) {
+        refreshPatternState();
+        return patternScore[player];
+    }
+
+    /**
+     * Number of shapes of a pattern class for a player, e.g. LinePatternTable.类_活三
+     */
+    public int getPatternCount(int player, int patternClass) {
+        refreshPatternState();
+        return patternCounts[player][patternClass];
+    }
+
+    /**
+     * Re-analyse lines touched since the last query and fold the differences into the totals
+     */
+    private void refreshPatternState() {
+        for (int word = 0; word < dirtyLines.length; word++) {
+            long dirty = dirtyLines[word];
+            dirtyLines[word] = 0;
+            while (dirty != 0) {
+                int line = (word << 6) + Long.numberOfTrailingZeros(dirty);
+                dirty &= dirty - 1;
+
+                int empty = getEmptyBits(line);
+                for (int p = BLACK; p <= WHITE; p++) {
+                    int score = PatternEvaluator.分析线棋型(lineBits[p][line], empty, lineValidBits[line], scratchCounts);
+                    patternScore[p] += score - lineScore[p][line];
+                    lineScore[p][line] = score;
+                    for (int k = 0; k < LinePatternTable.类别数; k++) {
+                        patternCounts[p][k] += scratchCounts[k] - lineCounts[p][k][line];
+                        lineCounts[p][k][line] = scratchCounts[k];
+                    }
                 }
             }
+        }
+    }
 
-            // Count stones in negative direction
-            for (int i = 1; i < 5; i++) {
-                int nextX = x - dir[0] * i;
-                int nextY = y - dir[1] * i;
-                if (isInBounds(nextX, nextY) && board[nextX][nextY] == player) {
-                    count++;
-                } else {
-                    break;
+    /**
+     * Attach an NNUE network as the evaluation backend (null detaches it). The accumulator is rebuilt
+     * from the current stones once and then follows every move; copies of this board keep the network.
+     */
+    public void setNetwork(NNUENetwork network) {
+        this.network = network;
+        if (network == null) {
+            accumulator = null;
+            return;
+        }
+        accumulator = new short[3][network.获取隐藏层宽度()];
+        resetAccumulator();
+        for (int x = 0; x < BOARD_SIZE; x++) {
+            for (int y = 0; y < BOARD_SIZE; y++) {
+                if (board[x][y] != EMPTY) {
+                    updateAccumulator(x, y, board[x][y], true);
                 }
             }
+        }
+    }
 
-            if (count >= 5) {
+    public NNUENetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Network score from the given player's perspective; requires an attached network
+     */
+    public int evaluateNetwork(int player) {
+        return network.评估(accumulator[player], accumulator[getOpponent(player)]);
+    }
+
+    private void resetAccumulator() {
+        for (int p = BLACK; p <= WHITE; p++) {
+            network.重置累加器(accumulator[p]);
+        }
+    }
+
+    private void updateAccumulator(int x, int y, int player, boolean add) {
+        int cell = x * BOARD_SIZE + y;
+        for (int p = BLACK; p <= WHITE; p++) {
+            network.更新累加器(accumulator[p], NNUENetwork.特征(p, player, cell), add);
+        }
+    }
+
+    /**
+     * Whether a black stone on the empty cell (x, y) would be a renju forbidden move (overline, double four or
+     * double three). Occupied cells return false; see ForbiddenMoveDetector for the rules.
+     */
+    public boolean isForbiddenPoint(int x, int y) {
+        refreshForbiddenState();
+        int fours = 0;
+        int threes = 0;
+        for (int dir = 0; dir < DIRECTIONS.length; dir++) {
+            long masks = forbiddenLines[lineIndex(dir, x, y)] >>> bitIndex(dir, x, y);
+            if ((masks & 1) != 0) {
                 return true;
             }
+            fours += (int) (masks >>> 16) & 1;
+            threes += (int) (masks >>> 32) & 1;
+        }
+        return fours >= 2 || threes >= 2;
+    }
+
+    private void refreshForbiddenState() {
+        for (int word = 0; word < forbiddenDirty.length; word++) {
+            long dirty = forbiddenDirty[word];
+            forbiddenDirty[word] = 0;
+            while (dirty != 0) {
+                int line = (word << 6) + Long.numberOfTrailingZeros(dirty);
+                dirty &= dirty - 1;
+                forbiddenLines[line] = ForbiddenMoveDetector.分析线禁手(lineBits[BLACK][line], getEmptyBits(line));
+            }
         }
-        return false;
     }
 
     /**
@@ -164,6 +447,13 @@ public class GomokuBoard {
         return zobristHash;
     }
 
+    /**
+     * Zobrist key of a single stone, lets callers derive a child position's hash without making the move
+     */
+    public static long zobristKey(int x, int y, int player) {
+        return zobristTable[x][y][player];
+    }
+
     /**
      * Get copy of board state
      */
@@ -181,6 +471,7 @@ public class GomokuBoard {
     public void initFromArray(int[][] sourceBoard) {
         moveCount = 0;
         zobristHash = 0;
+        clearLineBits();
 
         for (int i = 0; i < BOARD_SIZE; i++) {
             for (int j = 0; j < BOARD_SIZE; j++) {
@@ -188,6 +479,11 @@ public class GomokuBoard {
                 if (board[i][j] != EMPTY) {
                     moveCount++;
                     zobristHash ^= zobristTable[i][j][board[i][j]];
+                    toggleLineBits(i, j, board[i][j]);
+                    updateNeighbours(i, j, 1);
+                    if (network != null) {
+                        updateAccumulator(i, j, board[i][j], true);
+                    }
                 }
             }
         }
@@ -202,6 +498,27 @@ public class GomokuBoard {
         }
         moveCount = 0;
         zobristHash = 0;
+        clearLineBits();
+    }
+
+    private void clearLineBits() {
+        for (int p = BLACK; p <= WHITE; p++) {
+            Arrays.fill(lineBits[p], 0);
+            Arrays.fill(lineScore[p], 0);
+            for (int k = 0; k < LinePatternTable.类别数; k++) {
+                Arrays.fill(lineCounts[p][k], 0);
+            }
+            Arrays.fill(patternCounts[p], 0);
+        }
+        Arrays.fill(patternScore, 0);
+        Arrays.fill(dirtyLines, 0);
+        Arrays.fill(columnCounts, 0);
+        Arrays.fill(columnRows, 0);
+        Arrays.fill(forbiddenLines, 0);
+        Arrays.fill(forbiddenDirty, 0);
+        if (network != null) {
+            resetAccumulator();
+        }
     }
 
     /**
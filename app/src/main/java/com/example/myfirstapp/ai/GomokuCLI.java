@@ -170,6 +170,8 @@ public class GomokuCLI {
                 System.out.println("搜索深度: " + ai着法.搜索结果.达到深度);
                 System.out.println("评估节点: " + ai着法.搜索结果.节点评估数);
                 System.out.printf("缓存命中率: %.1f%%\n", ai着法.搜索结果.缓存命中率 * 100);
+                System.out.printf("评估缓存命中率: %.1f%%\n", ai着法.搜索结果.评估缓存命中率 * 100);
+                System.out.printf("首着截断率: %.1f%%\n", ai着法.搜索结果.首着截断率 * 100);
             }
         } else {
             System.out.println("AI无法找到合适着法！");
@@ -183,6 +185,7 @@ public class GomokuCLI {
         System.out.println("2. 中等   (4层深度, 2秒)");
         System.out.println("3. 困难   (6层深度, 3秒)");
         System.out.println("4. 大师   (8层深度, 5秒)");
+        System.out.println("5. 固定节点 (8层深度, 每步10万节点)");
         System.out.print("请选择: ");
 
         String 选择 = 输入.nextLine().trim();
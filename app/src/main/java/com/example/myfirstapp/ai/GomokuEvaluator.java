@@ -13,6 +13,9 @@ public class GomokuEvaluator {
 
     private static final int 无穷大 = Integer.MAX_VALUE;
     private static final int 胜利门槛 = PatternEvaluator.连五 / 2;
+    private static final int 对手威胁类别 = (1 << LinePatternTable.类_活三) | (1 << LinePatternTable.类_冲四)
+            | (1 << LinePatternTable.类_活四);
+    private static final int 窗口掩码 = (1 << LinePatternTable.窗口长度) - 1;
 
     /**
      * 从当前玩家角度评估棋盘位置
@@ -33,6 +36,7 @@ public class GomokuEvaluator {
 
     /**
      * 生成并排序候选着法，用于搜索优化
+     * 根节点、MCTS展开等非热路径使用；alphabeta内部使用无分配的生成有序着法
      */
     public static List<Move> generateOrderedMoves(GomokuBoard 棋盘, int 玩家, int 深度) {
         List<Move> 着法列表 = new ArrayList<>();
@@ -44,30 +48,16 @@ public class GomokuEvaluator {
             return 着法列表;
         }
 
-        // 生成有子周围的候选位置
-        boolean[][] 已考虑 = new boolean[GomokuBoard.BOARD_SIZE][GomokuBoard.BOARD_SIZE];
-
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.getStone(x, y) != GomokuBoard.EMPTY) {
-                    // 在现有棋子周围添加空位
-                    添加周围着法(棋盘, x, y, 着法列表, 已考虑);
-                }
-            }
-        }
-
         // 评估并给每个着法打分 - 增强版优先级系统 + 禁手检查
         int 对手 = GomokuBoard.getOpponent(玩家);
 
-        for (Move 着法 : 着法列表) {
-            // 禁手检查 - 如果是黑棋的禁手，设置极低分数
-            if (ForbiddenMoveDetector.是否禁手(棋盘, 着法.x, 着法.y, 玩家)) {
-                着法.score = -无穷大; // 禁手着法绝对不能选择
-                continue;
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            int 候选 = 棋盘.getFrontierRow(x);
+            while (候选 != 0) {
+                int y = Integer.numberOfTrailingZeros(候选);
+                候选 &= 候选 - 1;
+                着法列表.add(new Move(x, y, 候选分数(棋盘, x, y, 玩家, 对手, 深度)));
             }
-
-            int 分数 = 计算增强优先级分数(棋盘, 着法.x, 着法.y, 玩家, 对手, 深度);
-            着法.score = 分数;
         }
 
         // 按分数降序排列
@@ -79,7 +69,7 @@ public class GomokuEvaluator {
         });
 
         // 限制着法数量以控制分支因子
-        int 最大着法数 = Math.max(10, 30 - 深度 * 2);
+        int 最大着法数 = 最大着法数(深度);
         if (着法列表.size() > 最大着法数) {
             着法列表 = 着法列表.subList(0, 最大着法数);
         }
@@ -88,27 +78,105 @@ public class GomokuEvaluator {
     }
 
     /**
-     * 在现有棋子周围添加候选着法
+     * 无分配版本的着法生成 - 与generateOrderedMoves相同的候选、打分和截断规则
+     * 着法打包成int写入调用方提供的缓冲区并原地降序排序，供搜索每层复用同一块缓冲
+     *
+     * @param 输出 至少能容纳棋盘格子数的缓冲区
+     * @return 写入的着法数量（已按最大着法数截断）
      */
-    private static void 添加周围着法(GomokuBoard 棋盘, int 中心x, int 中心y,
-                                   List<Move> 着法列表, boolean[][] 已考虑) {
-        // 搜索半径
-        int 半径 = 2;
-
-        for (int dx = -半径; dx <= 半径; dx++) {
-            for (int dy = -半径; dy <= 半径; dy++) {
-                int x = 中心x + dx;
-                int y = 中心y + dy;
-
-                if (棋盘.isInBounds(x, y) &&
-                    棋盘.getStone(x, y) == GomokuBoard.EMPTY &&
-                    !已考虑[x][y]) {
-
-                    着法列表.add(new Move(x, y, 0));
-                    已考虑[x][y] = true;
-                }
+    public static int 生成有序着法(GomokuBoard 棋盘, int 玩家, int 深度, int[] 输出) {
+        if (棋盘.getMoveCount() == 0) {
+            int 天元 = GomokuBoard.BOARD_SIZE / 2;
+            输出[0] = 打包着法(天元 * GomokuBoard.BOARD_SIZE + 天元, PatternEvaluator.活一);
+            return 1;
+        }
+
+        int 对手 = GomokuBoard.getOpponent(玩家);
+        int 数量 = 0;
+
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            int 候选 = 棋盘.getFrontierRow(x);
+            while (候选 != 0) {
+                int y = Integer.numberOfTrailingZeros(候选);
+                候选 &= 候选 - 1;
+                int 分数 = 压缩分数(候选分数(棋盘, x, y, 玩家, 对手, 深度));
+                输出[数量++] = 打包着法(x * GomokuBoard.BOARD_SIZE + y, 分数);
             }
         }
+
+        降序排序(输出, 数量);
+        return Math.min(数量, 最大着法数(深度));
+    }
+
+    // ---- 打包着法：高24位为有符号排序分数，低8位为格子编号的反码 ----
+    // 整数越大排序越靠前；同分时格子编号小的在前，与generateOrderedMoves的稳定排序一致
+
+    private static final int 格子位数 = 8;
+    private static final int 格子掩码 = (1 << 格子位数) - 1;
+    private static final int 打包分数上限 = (1 << (31 - 格子位数)) - 1;
+
+    /** 打包分数达到此值的是直接获胜或必须封堵的着法 */
+    static final int 打包强制分数 = 打包分数上限 - 1;
+
+    /** 黑棋禁手着法的打包分数，排在最后 */
+    static final int 打包禁手分数 = -打包分数上限;
+
+    static int 打包着法(int 格子, int 分数) {
+        分数 = Math.max(-打包分数上限, Math.min(打包分数上限, 分数));
+        return (分数 << 格子位数) | (格子掩码 - 格子);
+    }
+
+    static int 打包格子(int 着法) {
+        return 格子掩码 - (着法 & 格子掩码);
+    }
+
+    static int 打包分数(int 着法) {
+        return 着法 >> 格子位数;
+    }
+
+    /**
+     * 原地插入排序（降序）- 候选数不过百余个，且排序表重排时大部分已有序
+     */
+    static void 降序排序(int[] 着法, int 数量) {
+        for (int i = 1; i < 数量; i++) {
+            int 当前 = 着法[i];
+            int j = i - 1;
+            while (j >= 0 && 着法[j] < 当前) {
+                着法[j + 1] = 着法[j];
+                j--;
+            }
+            着法[j + 1] = 当前;
+        }
+    }
+
+    /**
+     * 把优先级分数压进打包分数的范围：获胜、封堵、禁手各占一档，其余截断
+     */
+    private static int 压缩分数(int 分数) {
+        if (分数 >= 无穷大 / 2 + 无穷大 / 4) {
+            return 打包分数上限;          // 立即获胜
+        }
+        if (分数 >= 无穷大 / 4) {
+            return 打包强制分数;          // 必须封堵
+        }
+        if (分数 == -无穷大) {
+            return 打包禁手分数;          // 禁手
+        }
+        return Math.max(-打包强制分数 + 1, Math.min(打包强制分数 - 1, 分数));
+    }
+
+    /**
+     * 单个候选的优先级分数，黑棋禁手为-无穷大
+     */
+    private static int 候选分数(GomokuBoard 棋盘, int x, int y, int 玩家, int 对手, int 深度) {
+        if (ForbiddenMoveDetector.是否禁手(棋盘, x, y, 玩家)) {
+            return -无穷大; // 禁手着法绝对不能选择
+        }
+        return 计算增强优先级分数(棋盘, x, y, 玩家, 对手, 深度);
+    }
+
+    private static int 最大着法数(int 深度) {
+        return Math.max(10, 30 - 深度 * 2);
     }
 
     /**
@@ -127,16 +195,8 @@ public class GomokuEvaluator {
      * 检查游戏是否结束（有人获胜）
      */
     private static boolean 是否游戏结束(GomokuBoard 棋盘, int 玩家) {
-        // 快速检查 - 寻找任何五连珠
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                if (棋盘.getStone(x, y) == 玩家 &&
-                    棋盘.isWinningMove(x, y, 玩家)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        // 快速检查 - 棋盘按线维护的连五计数
+        return 棋盘.getPatternCount(玩家, LinePatternTable.类_连五) > 0;
     }
 
     /**
@@ -205,76 +265,113 @@ public class GomokuEvaluator {
     }
 
     /**
-     * 增强版优先级计算 - 多层次威胁分析
+     * 局部优先级计算 - 只看经过候选格的4条线
+     * 棋型只可能在覆盖该格的窗口里变化，所以落子前后的差别由这些窗口查表得到，
+     * 不落子、不做全盘扫描；双方的线状态直接取自棋盘按线维护的位棋盘
      */
     private static int 计算增强优先级分数(GomokuBoard 棋盘, int x, int y, int 玩家, int 对手, int 深度) {
-        int 基础分数 = 0;
-
-        // 第1优先级: 立即获胜 (绝对最高优先级) - Win-First Logic 修复
-        if (PatternEvaluator.是否获胜手(棋盘, x, y, 玩家)) {
-            // 确保获胜分数绝对是最高的，远超任何防御分数
-            return 无穷大 - 深度; // 浅层获胜更优，但确保绝对优先级
-        }
-
-        // 第2优先级: 阻止对手立即获胜 (防御优先级)
-        if (PatternEvaluator.是否获胜手(棋盘, x, y, 对手)) {
-            return 无穷大 / 2 - 深度 * 100; // 必须防御，但低于己方获胜
-        }
-
-        // 模拟落子进行威胁分析
-        棋盘.makeMove(x, y, 玩家);
-
-        try {
-            // 第3优先级: 创造活四威胁 (强攻击)
-            if (PatternEvaluator.检查玩家活四威胁(棋盘, 玩家)) {
-                基础分数 += PatternEvaluator.活四 * 2;
+        boolean 对手成五 = false;
+        boolean 成活四 = false;
+        boolean 成四 = false;
+        boolean 成活三 = false;
+        boolean 对手成威胁 = false;
+        int 威胁线数 = 0;
+        int 己方分差 = 0, 己方活四差 = 0, 己方冲四差 = 0, 己方活三差 = 0;
+        int 对方分差 = 0, 对方活四差 = 0, 对方冲四差 = 0, 对方活三差 = 0;
+
+        for (int dir = 0; dir < GomokuBoard.DIRECTIONS.length; dir++) {
+            int 线 = GomokuBoard.lineIndex(dir, x, y);
+            int 位 = GomokuBoard.bitIndex(dir, x, y);
+            int 落子位 = 1 << 位;
+            int 己方 = 棋盘.getLineBits(玩家, 线);
+            int 对方 = 棋盘.getLineBits(对手, 线);
+            int 空位 = 棋盘.getEmptyBits(线);
+            int 落子后空位 = 空位 & ~落子位;
+
+            // 第1优先级: 立即获胜 (绝对最高优先级) - Win-First Logic 修复
+            if (GomokuBoard.runCovers(己方 | 落子位, 位, 5)) {
+                return 无穷大 - 深度; // 浅层获胜更优，但确保绝对优先级
             }
-
-            // 第4优先级: 创造冲四威胁 (中攻击)
-            if (PatternEvaluator.检查玩家冲四威胁(棋盘, 玩家)) {
-                基础分数 += PatternEvaluator.冲四;
-            }
-
-            // 第5优先级: 创造活三威胁 (威胁建立)
-            if (PatternEvaluator.检查玩家活三威胁(棋盘, 玩家)) {
-                基础分数 += PatternEvaluator.活三;
-            }
-
-            // 第6优先级: 整体局面评估
-            int 局面分数 = PatternEvaluator.评估局面(棋盘, 玩家);
-            基础分数 += 局面分数 / 2; // 降权处理
-
-            // 第7优先级: 双重威胁检测 (组合攻击)
-            int 威胁数量 = 统计威胁数量(棋盘, 玩家);
-            if (威胁数量 >= 2) {
-                基础分数 += PatternEvaluator.活四 / 2 * 威胁数量; // 双三、三四等组合
+            对手成五 |= GomokuBoard.runCovers(对方 | 落子位, 位, 5);
+
+            // 第3-5优先级: 本手在这条线上形成的活四、冲四、活三
+            boolean 本线活四 = LinePatternTable.存在覆盖棋型(己方 | 落子位, 落子后空位, 位, 1 << LinePatternTable.类_活四);
+            boolean 本线冲四 = LinePatternTable.存在覆盖棋型(己方 | 落子位, 落子后空位, 位, 1 << LinePatternTable.类_冲四);
+            boolean 本线活三 = LinePatternTable.存在覆盖棋型(己方 | 落子位, 落子后空位, 位, 1 << LinePatternTable.类_活三);
+            成活四 |= 本线活四;
+            成四 |= 本线活四 || 本线冲四;
+            成活三 |= 本线活三;
+            if (本线活四 || 本线冲四 || 本线活三) {
+                威胁线数++;
             }
 
-            // 第8优先级: 破坏对手威胁 (防御加分)
-            棋盘.undoMove(x, y);
-            棋盘.makeMove(x, y, 对手);
+            // 第8优先级: 对手在此落子能形成的威胁
+            对手成威胁 |= LinePatternTable.存在覆盖棋型(对方 | 落子位, 落子后空位, 位, 对手威胁类别);
 
-            boolean 破坏对手威胁 = false;
-            if (PatternEvaluator.检查玩家活三威胁(棋盘, 对手) ||
-                PatternEvaluator.检查玩家冲四威胁(棋盘, 对手)) {
-                破坏对手威胁 = true;
+            // 第6优先级: 覆盖该格的窗口的棋型变化 - 己方所得与对手所失，连同活三、冲四、活四的数量变化
+            int 有效位 = GomokuBoard.getValidBits(线);
+            for (int 起始 = Math.max(0, 位 - LinePatternTable.窗口长度 + 1); 起始 <= 位; 起始++) {
+                if (((有效位 >>> 起始) & 1) == 0) {
+                    continue;
+                }
+                int 己方前 = LinePatternTable.类别(己方 >>> 起始, 空位 >>> 起始);
+                int 己方后 = LinePatternTable.类别((己方 | 落子位) >>> 起始, 落子后空位 >>> 起始);
+                己方分差 += LinePatternTable.类别分数(己方后) - LinePatternTable.类别分数(己方前);
+                己方活四差 += 计数差(己方前, 己方后, LinePatternTable.类_活四);
+                己方冲四差 += 计数差(己方前, 己方后, LinePatternTable.类_冲四);
+                己方活三差 += 计数差(己方前, 己方后, LinePatternTable.类_活三);
+
+                if (((对方 >>> 起始) & 窗口掩码) == 0) {
+                    continue; // 窗口内没有对手棋子，落子前后都不成棋型
+                }
+                int 对方前 = LinePatternTable.类别(对方 >>> 起始, 空位 >>> 起始);
+                int 对方后 = LinePatternTable.类别(对方 >>> 起始, 落子后空位 >>> 起始);
+                对方分差 += LinePatternTable.类别分数(对方后) - LinePatternTable.类别分数(对方前);
+                对方活四差 += 计数差(对方前, 对方后, LinePatternTable.类_活四);
+                对方冲四差 += 计数差(对方前, 对方后, LinePatternTable.类_冲四);
+                对方活三差 += 计数差(对方前, 对方后, LinePatternTable.类_活三);
             }
+        }
 
-            棋盘.undoMove(x, y);
-            棋盘.makeMove(x, y, 玩家); // 恢复原状态
+        // 第2优先级: 阻止对手立即获胜 (防御优先级)
+        if (对手成五) {
+            return 无穷大 / 2 - 深度 * 100; // 必须防御，但低于己方获胜
+        }
 
-            if (破坏对手威胁) {
-                基础分数 += PatternEvaluator.活三 / 3; // 破坏威胁奖励
-            }
+        int 基础分数 = 0;
+        if (成活四) {
+            基础分数 += PatternEvaluator.活四 * 2;
+        }
+        if (成四) {
+            基础分数 += PatternEvaluator.冲四;
+        }
+        if (成活三) {
+            基础分数 += PatternEvaluator.活三;
+        }
 
-            // 第8.5优先级: 利用对手禁手 (仅对黑棋对手有效)
-            if (对手 == GomokuBoard.BLACK) {
-                int 禁手战术分数 = 评估禁手战术价值(棋盘, x, y, 玩家, 对手);
-                基础分数 += 禁手战术分数;
-            }
+        // 全盘评估的变化量：棋型分、组合加分都只在被改动的窗口里变化，数量由棋盘的全局计数加上窗口差得到
+        int 己方活四 = 棋盘.getPatternCount(玩家, LinePatternTable.类_活四);
+        int 己方冲四 = 棋盘.getPatternCount(玩家, LinePatternTable.类_冲四);
+        int 己方活三 = 棋盘.getPatternCount(玩家, LinePatternTable.类_活三);
+        int 对方活四 = 棋盘.getPatternCount(对手, LinePatternTable.类_活四);
+        int 对方冲四 = 棋盘.getPatternCount(对手, LinePatternTable.类_冲四);
+        int 对方活三 = 棋盘.getPatternCount(对手, LinePatternTable.类_活三);
+        int 己方组合差 = PatternEvaluator.战术组合分数(己方活四 + 己方活四差, 己方冲四 + 己方冲四差, 己方活三 + 己方活三差)
+                - PatternEvaluator.战术组合分数(己方活四, 己方冲四, 己方活三);
+        int 对方组合差 = PatternEvaluator.战术组合分数(对方活四 + 对方活四差, 对方冲四 + 对方冲四差, 对方活三 + 对方活三差)
+                - PatternEvaluator.战术组合分数(对方活四, 对方冲四, 对方活三);
+        int 威胁差 = PatternEvaluator.关键威胁分数(对方活四 + 对方活四差, 对方冲四 + 对方冲四差, 对方活三 + 对方活三差)
+                - PatternEvaluator.关键威胁分数(对方活四, 对方冲四, 对方活三);
+        int 局面增量 = 己方分差 + 己方组合差 - (int) ((对方分差 + 对方组合差) * PatternEvaluator.防御权重) + 威胁差;
+        基础分数 += 局面增量 / 2; // 降权处理
+
+        // 第7优先级: 双重威胁检测 (组合攻击) - 两条以上的线同时成威胁，即双三、四三、双四
+        if (威胁线数 >= 2) {
+            基础分数 += PatternEvaluator.活四 / 2 * 威胁线数;
+        }
 
-        } finally {
-            棋盘.undoMove(x, y);
+        if (对手成威胁) {
+            基础分数 += PatternEvaluator.活三 / 3; // 破坏威胁奖励
         }
 
         // 第9优先级: 位置价值 (棋盘控制)
@@ -286,19 +383,8 @@ public class GomokuEvaluator {
         return 基础分数;
     }
 
-    /**
-     * 统计指定玩家的威胁数量
-     */
-    private static int 统计威胁数量(GomokuBoard 棋盘, int 玩家) {
-        int 威胁计数 = 0;
-
-        // 简化威胁统计 - 检查关键模式
-        if (PatternEvaluator.检查玩家活三威胁(棋盘, 玩家)) 威胁计数++;
-        if (PatternEvaluator.检查玩家冲四威胁(棋盘, 玩家)) 威胁计数++;
-
-        // 可扩展: 添加更多威胁类型检测
-
-        return 威胁计数;
+    private static int 计数差(int 类别前, int 类别后, int 类别) {
+        return (类别后 == 类别 ? 1 : 0) - (类别前 == 类别 ? 1 : 0);
     }
 
     /**
@@ -323,57 +409,4 @@ public class GomokuEvaluator {
 
         return 价值;
     }
-
-    /**
-     * 评估禁手战术价值 - 检测能否利用对手禁手获得优势
-     * 仅对黑棋对手有效，白棋无禁手规则
-     */
-    private static int 评估禁手战术价值(GomokuBoard 棋盘, int x, int y, int 玩家, int 对手) {
-        int 战术分数 = 0;
-
-        // 检查周围8个方向是否能创造对手禁手局面
-        int[][] 方向 = {{-1,-1}, {-1,0}, {-1,1}, {0,-1}, {0,1}, {1,-1}, {1,0}, {1,1}};
-
-        for (int[] 方向向量 : 方向) {
-            int 邻位x = x + 方向向量[0];
-            int 邻位y = y + 方向向量[1];
-
-            if (棋盘.isInBounds(邻位x, 邻位y) && 棋盘.getStone(邻位x, 邻位y) == GomokuBoard.EMPTY) {
-                // 检查对手在该邻位落子是否会形成禁手
-                if (ForbiddenMoveDetector.是否禁手(棋盘, 邻位x, 邻位y, 对手)) {
-                    String 禁手类型 = ForbiddenMoveDetector.获取禁手类型(棋盘, 邻位x, 邻位y, 对手);
-
-                    // 根据禁手类型给予不同战术分数
-                    switch (禁手类型) {
-                        case "三三禁手":
-                            战术分数 += PatternEvaluator.活三 / 5; // 适中奖励
-                            break;
-                        case "四四禁手":
-                            战术分数 += PatternEvaluator.冲四 / 8; // 较高奖励
-                            break;
-                        case "长连禁手":
-                            战术分数 += PatternEvaluator.活四 / 10; // 最高奖励
-                            break;
-                    }
-                }
-            }
-        }
-
-        // 特殊战术：双重威胁+禁手组合
-        // 如果本手既能创造威胁，又能限制对手因禁手无法有效反击
-        棋盘.undoMove(x, y);
-        棋盘.makeMove(x, y, 玩家);
-
-        boolean 我方有威胁 = PatternEvaluator.检查玩家活三威胁(棋盘, 玩家) ||
-                         PatternEvaluator.检查玩家冲四威胁(棋盘, 玩家);
-
-        if (我方有威胁 && 战术分数 > 0) {
-            战术分数 = (int)(战术分数 * 1.5); // 组合战术奖励
-        }
-
-        棋盘.undoMove(x, y);
-        棋盘.makeMove(x, y, 玩家); // 恢复状态
-
-        return 战术分数;
-    }
 }
\ No newline at end of file
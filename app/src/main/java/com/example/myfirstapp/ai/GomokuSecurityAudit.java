@@ -421,43 +421,11 @@ public class GomokuSecurityAudit {
     }
 
     private boolean 检查活三模式(GomokuBoard 棋盘, int x, int y, int 玩家) {
-        // 简化实现 - 实际应该使用PatternEvaluator
-        int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-        for (int[] 方向向量 : 方向) {
-            int 连子数 = 1;
-            boolean 左开放 = false, 右开放 = false;
-
-            // 检查正方向
-            for (int i = 1; i < 5; i++) {
-                int nx = x + 方向向量[0] * i;
-                int ny = y + 方向向量[1] * i;
-                if (!棋盘.isInBounds(nx, ny)) break;
-                if (棋盘.getStone(nx, ny) == 玩家) {
-                    连子数++;
-                } else if (棋盘.getStone(nx, ny) == 0) {
-                    右开放 = true;
-                    break;
-                } else {
-                    break;
-                }
-            }
-
-            // 检查负方向
-            for (int i = 1; i < 5; i++) {
-                int nx = x - 方向向量[0] * i;
-                int ny = y - 方向向量[1] * i;
-                if (!棋盘.isInBounds(nx, ny)) break;
-                if (棋盘.getStone(nx, ny) == 玩家) {
-                    连子数++;
-                } else if (棋盘.getStone(nx, ny) == 0) {
-                    左开放 = true;
-                    break;
-                } else {
-                    break;
-                }
-            }
-
-            if (连子数 == 3 && 左开放 && 右开放) {
+        // 与PatternEvaluator共用LinePatternTable的活三定义（含跳活三）
+        for (int 方向 = 0; 方向 < GomokuBoard.DIRECTIONS.length; 方向++) {
+            int 线 = GomokuBoard.lineIndex(方向, x, y);
+            if (LinePatternTable.存在覆盖棋型(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线),
+                    GomokuBoard.bitIndex(方向, x, y), 1 << LinePatternTable.类_活三)) {
                 return true;
             }
         }
@@ -0,0 +1,154 @@
+package com.example.myfirstapp.ai;
+
+/**
+ * 线棋型查找表
+ * 以一条线上6格窗口的编码（己方6位 + 空位6位）为键，类初始化时一次性算出棋型类别和分数
+ * PatternEvaluator、ForbiddenMoveDetector、GomokuSecurityAudit共用此表，保证"活三"等定义一致
+ *
+ * 窗口约定：第0位为起点，沿方向依次递增；越出棋盘的格子既不是己方也不是空位
+ */
+public final class LinePatternTable {
+
+    public static final int 窗口长度 = 6;
+
+    // 棋型类别 - 数值越大棋型越强
+    public static final int 类_无 = 0;
+    public static final int 类_眠一 = 1;
+    public static final int 类_活一 = 2;
+    public static final int 类_眠二 = 3;
+    public static final int 类_活二 = 4;
+    public static final int 类_眠三 = 5;
+    public static final int 类_活三 = 6;
+    public static final int 类_冲四 = 7;
+    public static final int 类_活四 = 8;
+    public static final int 类_连五 = 9;
+    public static final int 类别数 = 10;
+
+    private static final int[] 分数表 = {
+        0,
+        PatternEvaluator.眠一, PatternEvaluator.活一,
+        PatternEvaluator.眠二, PatternEvaluator.活二,
+        PatternEvaluator.眠三, PatternEvaluator.活三,
+        PatternEvaluator.冲四, PatternEvaluator.活四,
+        PatternEvaluator.连五
+    };
+
+    private static final int 窗口掩码 = (1 << 窗口长度) - 1;
+
+    private static final byte[] 类别表 = new byte[1 << (窗口长度 * 2)];
+    private static final byte[] 棋子表 = new byte[1 << (窗口长度 * 2)]; // 构成该棋型的己方棋子
+
+    /**
+     * 按优先级排列的棋型模式：1表示己方棋子，0表示空位，首个匹配即为该窗口的棋型
+     */
+    private static final int[][] 模式列表 = {
+        {1, 1, 1, 1, 1},        // 连五
+        {0, 1, 1, 1, 1, 0},     // 活四：_XXXX_
+        {1, 1, 1, 1, 0},        // 冲四：XXXX_
+        {0, 1, 1, 1, 1},        // 冲四：_XXXX
+        {1, 1, 1, 0, 1},        // 跳冲四：XXX_X
+        {1, 0, 1, 1, 1},        // 跳冲四：X_XXX
+        {0, 1, 1, 1, 0},        // 活三：_XXX_
+        {0, 1, 1, 0, 1, 0},     // 跳活三：_XX_X_
+        {0, 1, 0, 1, 1, 0},     // 跳活三：_X_XX_
+        {1, 1, 1, 0},           // 眠三：XXX_
+        {0, 1, 1, 1},           // 眠三：_XXX
+        {1, 1, 0, 1},           // 跳眠三：XX_X
+        {1, 0, 1, 1},           // 跳眠三：X_XX
+        {0, 1, 1, 0},           // 活二：_XX_
+        {0, 1, 0, 1, 0},        // 跳活二：_X_X_
+        {1, 1, 0},              // 眠二：XX_
+        {0, 1, 1},              // 眠二：_XX
+        {0, 1, 0},              // 活一
+        {1, 0},                 // 眠一：X_
+        {0, 1}                  // 眠一：_X
+    };
+
+    private static final int[] 模式类别 = {
+        类_连五,
+        类_活四,
+        类_冲四, 类_冲四, 类_冲四, 类_冲四,
+        类_活三, 类_活三, 类_活三,
+        类_眠三, 类_眠三, 类_眠三, 类_眠三,
+        类_活二, 类_活二,
+        类_眠二, 类_眠二,
+        类_活一,
+        类_眠一, 类_眠一
+    };
+
+    static {
+        for (int 己方 = 0; 己方 <= 窗口掩码; 己方++) {
+            for (int 空位 = 0; 空位 <= 窗口掩码; 空位++) {
+                if ((己方 & 空位) != 0) {
+                    continue; // 同一格不可能既有棋子又为空
+                }
+                int 键 = 键(己方, 空位);
+                for (int i = 0; i < 模式列表.length; i++) {
+                    int[] 模式 = 模式列表[i];
+                    int 模式己方 = 0;
+                    int 模式空位 = 0;
+                    for (int j = 0; j < 模式.length; j++) {
+                        if (模式[j] == 0) {
+                            模式空位 |= 1 << j;
+                        } else {
+                            模式己方 |= 1 << j;
+                        }
+                    }
+                    int 模式掩码 = (1 << 模式.length) - 1;
+                    if ((己方 & 模式掩码) == 模式己方 && (空位 & 模式掩码) == 模式空位) {
+                        类别表[键] = (byte) 模式类别[i];
+                        棋子表[键] = (byte) 模式己方;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private LinePatternTable() {
+    }
+
+    /**
+     * 窗口编码：己方与空位掩码各取低6位
+     */
+    public static int 键(int 己方, int 空位) {
+        return ((己方 & 窗口掩码) << 窗口长度) | (空位 & 窗口掩码);
+    }
+
+    /**
+     * 以窗口起点开头的棋型类别
+     */
+    public static int 类别(int 己方, int 空位) {
+        return 类别表[键(己方, 空位)];
+    }
+
+    /**
+     * 以窗口起点开头的棋型分数
+     */
+    public static int 分数(int 己方, int 空位) {
+        return 分数表[类别表[键(己方, 空位)]];
+    }
+
+    /**
+     * 棋型类别对应的分数
+     */
+    public static int 类别分数(int 类别) {
+        return 分数表[类别];
+    }
+
+    /**
+     * 线上是否存在覆盖指定位的棋型（该位必须是构成棋型的己方棋子）
+     * @param 己方 整条线的己方棋子掩码
+     * @param 空位 整条线的空位掩码
+     * @param 类别掩码 按类别编号置位，例如 (1 << 类_冲四) | (1 << 类_活四)
+     */
+    public static boolean 存在覆盖棋型(int 己方, int 空位, int 位, int 类别掩码) {
+        for (int 起始 = Math.max(0, 位 - 窗口长度 + 1); 起始 <= 位; 起始++) {
+            int 键 = 键(己方 >>> 起始, 空位 >>> 起始);
+            if ((类别掩码 & (1 << 类别表[键])) != 0 && ((棋子表[键] >>> (位 - 起始)) & 1) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
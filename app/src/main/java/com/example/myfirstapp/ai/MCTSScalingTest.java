@@ -0,0 +1,43 @@
+package com.example.myfirstapp.ai;
+
+/**
+ * 蒙特卡洛引擎多线程扩展测试 - 同一局面下按线程数对比每秒模拟次数
+ */
+public class MCTSScalingTest {
+
+    public static void 测试扩展性(long 每次毫秒) {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        int[][] 开局 = {{7, 7}, {7, 8}, {8, 8}, {6, 6}, {8, 7}, {8, 6}, {9, 8}, {10, 9}};
+        int 玩家 = GomokuBoard.BLACK;
+        for (int[] 着法 : 开局) {
+            棋盘.makeMove(着法[0], 着法[1], 玩家);
+            玩家 = GomokuBoard.getOpponent(玩家);
+        }
+
+        int 核心数 = Runtime.getRuntime().availableProcessors();
+        System.out.println("CPU核心数: " + 核心数);
+
+        // 预热，避免第一轮包含JIT编译时间
+        MCTSSearch 预热 = new MCTSSearch(每次毫秒);
+        预热.寻找最佳下法(棋盘, 玩家);
+
+        double 单线程 = 0;
+        for (int 线程数 = 1; 线程数 <= Math.max(2, 核心数); 线程数 *= 2) {
+            MCTSSearch 搜索 = new MCTSSearch(每次毫秒);
+            搜索.设置线程数(线程数);
+            MinimaxSearch.搜索结果 结果 = 搜索.寻找最佳下法(棋盘, 玩家);
+            搜索.关闭();
+
+            double 每秒 = 搜索.获取每秒模拟数();
+            if (线程数 == 1) {
+                单线程 = 每秒;
+            }
+            System.out.printf("线程:%d 每秒模拟:%.0f 加速比:%.2fx 着法:(%d,%d)%n",
+                    线程数, 每秒, 单线程 > 0 ? 每秒 / 单线程 : 1.0, 结果.最佳着法.x, 结果.最佳着法.y);
+        }
+    }
+
+    public static void main(String[] args) {
+        测试扩展性(args.length > 0 ? Long.parseLong(args[0]) : 2000);
+    }
+}
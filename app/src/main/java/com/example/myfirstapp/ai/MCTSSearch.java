@@ -0,0 +1,515 @@
+package com.example.myfirstapp.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 蒙特卡洛树搜索引擎 - PUCT选择 + 树并行 + 虚拟损失
+ *
+ * 节点存放在预先分配的基本类型数组里（节点池），不为每个节点创建对象；
+ * 一个节点的子节点在池中连续存放，展开时一次性分配。
+ * 展开用GomokuEvaluator.生成有序着法写入工作线程自己的缓冲区排序，按名次给出先验概率；
+ * 模拟走子使用廉价策略：能成五就成五，必须堵就堵，否则随机选冲四、活三或邻近空位，
+ * 走到步数上限后用PatternEvaluator的静态评估折算胜率。模拟中不判断禁手。
+ *
+ * 多线程时所有线程共享同一棵树，各自在棋盘副本上走子；
+ * 经过的节点先记上虚拟损失，让其他线程倾向于选择别的分支。
+ * 返回与MinimaxSearch相同的搜索结果类型，GomokuAI可以切换引擎
+ */
+public class MCTSSearch {
+
+    private static final int 默认节点池大小 = 1 << 19;
+    private static final double 探索常数 = 1.5;
+    private static final int 虚拟损失值 = 3;
+    private static final double 首次访问价值 = 0.45;  // 未访问子节点的估计胜率
+    private static final int 最大子节点数 = 24;
+    private static final double 先验衰减 = 0.8;     // 第k名的先验 ∝ 先验衰减^k
+    private static final int 模拟步数 = 24;
+    private static final long 价值刻度 = 1000;       // 价值和以千分之一局为单位
+    private static final double 评估刻度 = PatternEvaluator.活三 * 2.0;
+    private static final int 格子数 = GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE;
+
+    // 节点状态
+    private static final int 未展开 = 0;
+    private static final int 展开中 = 1;
+    private static final int 已展开 = 2;
+    private static final int 终局 = 3;  // 走入该节点的一方已成五
+
+    // 节点池：下标即节点编号，0号为根
+    private final int 容量;
+    private final int[] 着法;            // 走入该节点的格子编号，根为-1
+    private final int[] 首子;
+    private final int[] 子数;
+    private final float[] 先验;
+    private final AtomicIntegerArray 访问数;
+    private final AtomicIntegerArray 虚拟损失;
+    private final AtomicLongArray 价值和;  // 从走入该节点一方的角度累计
+    private final AtomicIntegerArray 状态;
+    private final AtomicInteger 已用节点 = new AtomicInteger();
+
+    private long 时间限制;  // 不大于0为不限，只按模拟预算停止
+    private long 模拟预算;  // 每次搜索的模拟次数上限，0为不限
+    private int 线程数 = 1;
+    private boolean 使用自适应评估;  // 模拟结束时使用AdaptiveEvaluator
+    private ExecutorService 线程池;
+
+    // 单次搜索的共享状态
+    private final AtomicBoolean 停止标志 = new AtomicBoolean();
+    private volatile boolean 已取消;  // 取消搜索()设置，由清除取消()复位
+    private final AtomicInteger 模拟总数 = new AtomicInteger();
+    private final AtomicInteger 最大深度 = new AtomicInteger();
+    private volatile long 截止时间;
+    private double 上次每秒模拟数;
+
+    public MCTSSearch() {
+        this(3000);
+    }
+
+    public MCTSSearch(long 时间限制) {
+        this(时间限制, 默认节点池大小);
+    }
+
+    /**
+     * @param 节点池大小 预分配的节点数，用尽后提前结束本次搜索
+     */
+    public MCTSSearch(long 时间限制, int 节点池大小) {
+        this.时间限制 = 时间限制;
+        this.容量 = Math.max(最大子节点数 + 1, 节点池大小);
+        着法 = new int[容量];
+        首子 = new int[容量];
+        子数 = new int[容量];
+        先验 = new float[容量];
+        访问数 = new AtomicIntegerArray(容量);
+        虚拟损失 = new AtomicIntegerArray(容量);
+        价值和 = new AtomicLongArray(容量);
+        状态 = new AtomicIntegerArray(容量);
+    }
+
+    /**
+     * 在时间限制和模拟预算内反复模拟，返回访问次数最多的根着法
+     */
+    public MinimaxSearch.搜索结果 寻找最佳下法(GomokuBoard 棋盘, int 玩家) {
+        long 开始 = System.nanoTime();
+        截止时间 = 时间限制 > 0 ? 开始 + 时间限制 * 1_000_000L : Long.MAX_VALUE;
+        停止标志.set(已取消);
+        模拟总数.set(0);
+        最大深度.set(0);
+
+        已用节点.set(1);
+        初始化节点(0, -1, 1.0f);
+
+        // 先在主线程展开根节点；只有一个候选时不必模拟
+        new 工作线程(new GomokuBoard(棋盘), 玩家, 0).展开(0, 玩家);
+        if (子数[0] == 0) {
+            return new MinimaxSearch.搜索结果(null, 0, 0, 0, 0.0, 0.0, "MCTS 无候选着法");
+        }
+        if (子数[0] == 1) {
+            return 生成结果(开始);
+        }
+
+        List<Future<?>> 辅助任务 = new ArrayList<>();
+        if (线程数 > 1) {
+            if (线程池 == null || 线程池.isShutdown()) {
+                线程池 = Executors.newFixedThreadPool(线程数 - 1, 任务 -> {
+                    Thread 线程 = new Thread(任务, "MCTSSearch-worker");
+                    线程.setDaemon(true);
+                    return 线程;
+                });
+            }
+            for (int i = 1; i < 线程数; i++) {
+                工作线程 辅助 = new 工作线程(new GomokuBoard(棋盘), 玩家, i);
+                辅助任务.add(线程池.submit(辅助::运行));
+            }
+        }
+
+        new 工作线程(new GomokuBoard(棋盘), 玩家, 0).运行();
+        停止标志.set(true);
+        for (Future<?> 任务 : 辅助任务) {
+            try {
+                任务.get();
+            } catch (Exception e) {
+                // 辅助线程失败不影响主线程结果
+            }
+        }
+
+        return 生成结果(开始);
+    }
+
+    private MinimaxSearch.搜索结果 生成结果(long 开始) {
+        int 最佳 = -1;
+        for (int i = 首子[0], 末 = 首子[0] + 子数[0]; i < 末; i++) {
+            if (状态.get(i) == 终局) {
+                最佳 = i;
+                break;
+            }
+            if (最佳 < 0 || 访问数.get(i) > 访问数.get(最佳)
+                    || 访问数.get(i) == 访问数.get(最佳) && 胜率(i) > 胜率(最佳)) {
+                最佳 = i;
+            }
+        }
+
+        long 耗时 = Math.max(1, System.nanoTime() - 开始);
+        int 模拟 = 模拟总数.get();
+        上次每秒模拟数 = 模拟 * 1e9 / 耗时;
+
+        double 胜率 = 状态.get(最佳) == 终局 ? 1.0 : 胜率(最佳);
+        int 分数 = 状态.get(最佳) == 终局
+                ? PatternEvaluator.连五
+                : (int) ((胜率 - 0.5) * 2 * PatternEvaluator.活四);
+        int 格子 = 着法[最佳];
+        GomokuEvaluator.Move 最佳着法 = new GomokuEvaluator.Move(
+                格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE, 分数);
+        String 分析 = String.format("MCTS 模拟:%d 每秒:%.0f 胜率:%.1f%% 节点:%d 线程:%d",
+                模拟, 上次每秒模拟数, 胜率 * 100, 已用节点.get(), 线程数);
+        return new MinimaxSearch.搜索结果(最佳着法, 分数, 最大深度.get(), 模拟, 0.0, 0.0, 分析);
+    }
+
+    private double 胜率(int 节点) {
+        int n = 访问数.get(节点);
+        return n > 0 ? (double) 价值和.get(节点) / (n * 价值刻度) : 首次访问价值;
+    }
+
+    private void 初始化节点(int 节点, int 格子, float 先验概率) {
+        着法[节点] = 格子;
+        首子[节点] = -1;
+        子数[节点] = 0;
+        先验[节点] = 先验概率;
+        访问数.set(节点, 0);
+        虚拟损失.set(节点, 0);
+        价值和.set(节点, 0);
+        状态.set(节点, 未展开);
+    }
+
+    /**
+     * 单个线程的搜索循环，持有自己的棋盘副本、随机数与走子记录
+     */
+    private class 工作线程 {
+        private final GomokuBoard 棋盘;
+        private final int 根玩家;
+        private final ThreatMoveGenerator 生成器 = new ThreatMoveGenerator();
+        private final int[] 路径 = new int[格子数 + 1];
+        private final int[] 已走 = new int[格子数];
+        private final int[] 棋子格 = new int[格子数];
+        private final int[] 候选 = new int[格子数];
+        private final int[] 模拟已走 = new int[模拟步数];
+        private int 棋子数;
+        private long 随机状态;
+
+        工作线程(GomokuBoard 棋盘, int 根玩家, int 编号) {
+            this.棋盘 = 棋盘;
+            this.根玩家 = 根玩家;
+            this.生成器.设置棋盘(棋盘);
+            // 有模拟预算时用固定种子，单线程搜索可以复现
+            long 种子 = 模拟预算 > 0 ? 0 : System.nanoTime();
+            this.随机状态 = 种子 ^ (0x9E3779B97F4A7C15L * (编号 + 1));
+            for (int 格子 = 0; 格子 < 格子数; 格子++) {
+                if (棋盘.getStone(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE) != GomokuBoard.EMPTY) {
+                    棋子格[棋子数++] = 格子;
+                }
+            }
+        }
+
+        void 运行() {
+            int 计数 = 0;
+            while (!停止标志.get()) {
+                if (已用节点.get() + 最大子节点数 > 容量
+                        || 模拟预算 > 0 && 模拟总数.get() >= 模拟预算
+                        || ((++计数 & 15) == 0 && System.nanoTime() > 截止时间)) {
+                    停止标志.set(true);
+                    break;
+                }
+                一次迭代();
+            }
+        }
+
+        /**
+         * 选择 → 展开 → 模拟 → 回传
+         */
+        private void 一次迭代() {
+            int 节点 = 0;
+            int 玩家 = 根玩家;  // 轮到在该节点走棋的一方
+            int 深度 = 0;
+            int 走子数 = 0;
+            路径[深度] = 0;
+            虚拟损失.addAndGet(0, 虚拟损失值);
+
+            double 价值;  // 从走入叶节点一方的角度
+            while (true) {
+                int 当前状态 = 状态.get(节点);
+                if (当前状态 == 终局) {
+                    价值 = 1.0;
+                    break;
+                }
+                if (当前状态 != 已展开) {
+                    // 叶节点第一次访问只做模拟，第二次访问才展开；正在被别的线程展开时也直接模拟
+                    if (访问数.get(节点) == 0 || !状态.compareAndSet(节点, 未展开, 展开中)) {
+                        价值 = 模拟(玩家);
+                        break;
+                    }
+                    展开(节点, 玩家);
+                }
+                if (子数[节点] == 0) {
+                    价值 = 0.5; // 无处可下
+                    break;
+                }
+
+                int 子节点 = 选择(节点);
+                int 格子 = 着法[子节点];
+                棋盘.makeMove(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE, 玩家);
+                已走[走子数++] = 格子;
+                棋子格[棋子数++] = 格子;
+                虚拟损失.addAndGet(子节点, 虚拟损失值);
+                路径[++深度] = 子节点;
+                节点 = 子节点;
+                if (成五(格子, 玩家)) {
+                    状态.set(节点, 终局);
+                    价值 = 1.0;
+                    break;
+                }
+                玩家 = GomokuBoard.getOpponent(玩家);
+            }
+
+            // 回传：每上一层换一次视角
+            long 增量 = Math.round(价值 * 价值刻度);
+            for (int i = 深度; i >= 0; i--) {
+                int n = 路径[i];
+                价值和.addAndGet(n, 增量);
+                访问数.incrementAndGet(n);
+                虚拟损失.addAndGet(n, -虚拟损失值);
+                增量 = 价值刻度 - 增量;
+            }
+            模拟总数.incrementAndGet();
+            最大深度.accumulateAndGet(深度, Math::max);
+
+            while (走子数 > 0) {
+                int 格子 = 已走[--走子数];
+                棋盘.undoMove(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE);
+                棋子数--;
+            }
+        }
+
+        /**
+         * PUCT：Q + c·P·√N父 / (1 + N子)，虚拟损失计入访问数但不计入价值
+         */
+        private int 选择(int 节点) {
+            int 首 = 首子[节点];
+            int 末 = 首 + 子数[节点];
+            double 根号父访问 = Math.sqrt(Math.max(1, 访问数.get(节点) + 虚拟损失.get(节点)));
+            int 最佳 = 首;
+            double 最佳值 = Double.NEGATIVE_INFINITY;
+            for (int i = 首; i < 末; i++) {
+                if (状态.get(i) == 终局) {
+                    return i;
+                }
+                int n = 访问数.get(i) + 虚拟损失.get(i);
+                double q = n > 0 ? (double) 价值和.get(i) / (n * 价值刻度) : 首次访问价值;
+                double 值 = q + 探索常数 * 先验[i] * 根号父访问 / (1 + n);
+                if (值 > 最佳值) {
+                    最佳值 = 值;
+                    最佳 = i;
+                }
+            }
+            return 最佳;
+        }
+
+        /**
+         * 用生成有序着法生成子节点：有直接获胜或必须封堵的着法时只保留这些着法，
+         * 否则取前若干名，先验按名次几何衰减
+         * 打包着法写入候选缓冲区后原地换成格子编号，每次展开不分配对象
+         */
+        void 展开(int 节点, int 玩家) {
+            int 生成数 = GomokuEvaluator.生成有序着法(棋盘, 玩家, 1, 候选);
+            boolean 有强制 = 生成数 > 0 && GomokuEvaluator.打包分数(候选[0]) >= GomokuEvaluator.打包强制分数;
+            int 数量 = 0;
+            while (数量 < 生成数 && 数量 < 最大子节点数) {
+                int 分数 = GomokuEvaluator.打包分数(候选[数量]);
+                if (分数 == GomokuEvaluator.打包禁手分数 || 有强制 && 分数 < GomokuEvaluator.打包强制分数) {
+                    break;
+                }
+                候选[数量] = GomokuEvaluator.打包格子(候选[数量]);
+                数量++;
+            }
+
+            int 起点 = 已用节点.getAndAdd(数量);
+            if (起点 + 数量 > 容量) {
+                停止标志.set(true);
+                状态.set(节点, 未展开);
+                return;
+            }
+            double 总和 = 0;
+            double 权重 = 1;
+            for (int i = 0; i < 数量; i++) {
+                总和 += 权重;
+                权重 *= 先验衰减;
+            }
+            权重 = 1;
+            for (int i = 0; i < 数量; i++) {
+                初始化节点(起点 + i, 候选[i], (float) (权重 / 总和));
+                权重 *= 先验衰减;
+            }
+            首子[节点] = 起点;
+            子数[节点] = 数量;
+            状态.set(节点, 已展开);  // volatile写，之后读到已展开的线程能看到上面写入的子节点
+        }
+
+        /**
+         * 廉价模拟：返回走入当前局面一方（即轮到走棋方的对手）的胜率
+         */
+        private double 模拟(int 玩家) {
+            int 叶玩家 = GomokuBoard.getOpponent(玩家);
+            int 当前 = 玩家;
+            int 步数 = 0;
+            double 结果 = -1;
+            while (步数 < 模拟步数) {
+                int 对手 = GomokuBoard.getOpponent(当前);
+                if (生成器.查找任一成五点(当前) >= 0) {
+                    结果 = 当前 == 叶玩家 ? 1.0 : 0.0;
+                    break;
+                }
+                int 格子 = 生成器.查找成五点(对手);
+                if (格子 == -2) {
+                    结果 = 对手 == 叶玩家 ? 1.0 : 0.0;
+                    break;
+                }
+                if (格子 < 0) {
+                    格子 = 随机着法(当前);
+                    if (格子 < 0) {
+                        结果 = 0.5;
+                        break;
+                    }
+                }
+                棋盘.makeMove(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE, 当前);
+                模拟已走[步数++] = 格子;
+                棋子格[棋子数++] = 格子;
+                当前 = 对手;
+            }
+
+            if (结果 < 0) {
+                int 评估 = PatternEvaluator.评估局面(棋盘, 叶玩家, 使用自适应评估);
+                结果 = 1.0 / (1.0 + Math.exp(-评估 / 评估刻度));
+            }
+            while (步数 > 0) {
+                int 格子 = 模拟已走[--步数];
+                棋盘.undoMove(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE);
+                棋子数--;
+            }
+            return 结果;
+        }
+
+        /**
+         * 一半概率从冲四、活三着法中取（冲四在前，取前几个之一），否则在随机棋子周围取空位
+         */
+        private int 随机着法(int 玩家) {
+            if ((下一个随机() & 1) == 0) {
+                int 数量 = 生成器.生成攻击着法(候选, 玩家, true);
+                if (数量 > 0) {
+                    return 候选[(int) ((下一个随机() >>> 1) % Math.min(数量, 4))];
+                }
+            }
+            for (int 尝试 = 0; 尝试 < 16 && 棋子数 > 0; 尝试++) {
+                long r = 下一个随机();
+                int 中心 = 棋子格[(int) ((r >>> 1) % 棋子数)];
+                int x = 中心 / GomokuBoard.BOARD_SIZE + (int) ((r >>> 40) % 5) - 2;
+                int y = 中心 % GomokuBoard.BOARD_SIZE + (int) ((r >>> 50) % 5) - 2;
+                if (棋盘.isValidMove(x, y)) {
+                    return x * GomokuBoard.BOARD_SIZE + y;
+                }
+            }
+            for (int 格子 = 0; 格子 < 格子数; 格子++) {
+                if (棋盘.isValidMove(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE)) {
+                    return 格子;
+                }
+            }
+            return -1;
+        }
+
+        private boolean 成五(int 格子, int 玩家) {
+            int x = 格子 / GomokuBoard.BOARD_SIZE;
+            int y = 格子 % GomokuBoard.BOARD_SIZE;
+            for (int dir = 0; dir < 4; dir++) {
+                if (GomokuBoard.runCovers(棋盘.getLineBits(玩家, GomokuBoard.lineIndex(dir, x, y)),
+                        GomokuBoard.bitIndex(dir, x, y), 5)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // xorshift64*
+        private long 下一个随机() {
+            随机状态 ^= 随机状态 >>> 12;
+            随机状态 ^= 随机状态 << 25;
+            随机状态 ^= 随机状态 >>> 27;
+            return (随机状态 * 0x2545F4914F6CDD1DL) & Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 上一次搜索的每秒模拟次数
+     */
+    public double 获取每秒模拟数() {
+        return 上次每秒模拟数;
+    }
+
+    public void 设置时间限制(long 时间限制) {
+        this.时间限制 = 时间限制;
+    }
+
+    /**
+     * 设置每次搜索的模拟次数上限（所有线程合计），0为不限；与时间限制同时设置时先到者为准
+     */
+    public void 设置模拟预算(long 模拟预算) {
+        this.模拟预算 = Math.max(0, 模拟预算);
+    }
+
+    /**
+     * 从其他线程请求停止，与MinimaxSearch.取消搜索()相同
+     */
+    public void 取消搜索() {
+        已取消 = true;
+        停止标志.set(true);
+    }
+
+    public void 清除取消() {
+        已取消 = false;
+    }
+
+    /**
+     * 模拟结束时改用自适应评估
+     */
+    public void 设置自适应评估(boolean 启用) {
+        this.使用自适应评估 = 启用;
+    }
+
+    /**
+     * 设置搜索线程数（1为单线程），线程数变化时重建线程池
+     */
+    public void 设置线程数(int 线程数) {
+        int 新线程数 = Math.max(1, 线程数);
+        if (新线程数 != this.线程数) {
+            关闭();
+            this.线程数 = 新线程数;
+        }
+    }
+
+    public int 获取线程数() {
+        return 线程数;
+    }
+
+    /**
+     * 释放工作线程，之后再次搜索时会按需重建
+     */
+    public void 关闭() {
+        if (线程池 != null) {
+            线程池.shutdownNow();
+            线程池 = null;
+        }
+    }
+}
@@ -1,45 +1,115 @@
 package com.example.myfirstapp.ai;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 五子棋专业搜索引擎 - Minimax算法 + Alpha-Beta剪枝
  * 优化版本：6步预测深度，3秒内快速响应
+ * 多线程：Lazy SMP（辅助线程各自迭代加深并共享置换表，由主线程汇总结果）
+ *        或根节点拆分（RootSplitter，长兄串行后其余根着法并行）
+ * 着法排序：静态优先级之上叠加杀手着法、历史表、应手表（MoveOrderingTables）
  */
 public class MinimaxSearch {
 
     private static final int 无穷大 = Integer.MAX_VALUE / 2;
     private static final int 默认最大深度 = 6;
     private static final long 默认时间限制 = 3000; // 3秒
+    private static final int 软限制比例 = 3;  // 用掉时间限制的1/3后不再加深
+    private static final double 着法变化延长 = 1.5;  // 最佳着法在相邻两层间变化时软限制的延长倍数
+
+    /**
+     * 多线程并行方式
+     */
+    public enum 并行模式 {
+        LazySMP,    // 多个完整搜索共享置换表
+        根节点拆分   // 单个搜索，根节点着法分给ForkJoinPool
+    }
 
     private final TranspositionTable 置换表;
+    private final EvaluationCache 评估缓存;  // 静态评估分数，与置换表一样由所有线程共享
+    private final MoveOrderingTables 排序表;  // 与置换表一样由所有线程共享
+    private final AtomicBoolean 停止标志;  // 主线程与辅助线程共享，alphabeta每个节点检查
+    private volatile boolean 已取消;       // 取消搜索()设置，搜索开始时不清除，由清除取消()复位
+    private final int 线程编号;            // 0为主线程
+    private final TimeManager 计时器;      // 主线程与辅助线程共享
     private long 时间限制;
-    private long 开始时间;
-    private boolean 超时;
+    private long 节点预算;  // 0为不限
     private int 节点评估数;
     private int 最大深度;
     private int 剪枝次数;  // Alpha-Beta剪枝统计
+    private int 根步数;  // 根局面的已下步数，用于计算当前节点距根的层数
+    private boolean 跟踪对局;      // 开始对局()之后，每次搜索视为同一局棋中上次搜索的延续
+    private final int[] 主变例 = new int[MoveOrderingTables.最大层数];        // 跟踪对局时上次搜索的主变例，按格子记录
+    private final long[] 主变例哈希 = new long[MoveOrderingTables.最大层数];  // 主变例第i步之前的局面哈希
+    private int 主变例长度;
+    private int 主变例根步数 = -1;  // 主变例起点局面的已下步数，-1为没有可用的主变例
+    private int 主变例深度;  // 记录主变例的那次搜索完成的迭代深度
+    private boolean 延续排序表;  // true时搜索不淡化历史表、不清空杀手着法、不记录主变例，见设置延续排序表()
+    private final int[] 路径着法 = new int[MoveOrderingTables.最大层数];  // 各层已走着法，供应手表查询
+    private final int[][] 着法缓冲 = new int[MoveOrderingTables.最大层数][];  // 各层打包着法列表，首次用到时分配
+    private int 线程数 = 1;
+    private boolean 使用自适应评估;  // 叶节点使用AdaptiveEvaluator
+    private 并行模式 模式 = 并行模式.LazySMP;
+    private ExecutorService 线程池;
+    private RootSplitter<MinimaxSearch> 根节点拆分器;
 
     public MinimaxSearch() {
-        this.置换表 = new TranspositionTable();
-        this.时间限制 = 默认时间限制;
-        this.最大深度 = 默认最大深度;
+        this(默认时间限制, 默认最大深度);
     }
 
     public MinimaxSearch(long 时间限制, int 最大深度) {
         this.置换表 = new TranspositionTable();
+        this.评估缓存 = new EvaluationCache();
+        this.排序表 = new MoveOrderingTables();
+        this.停止标志 = new AtomicBoolean();
+        this.计时器 = new TimeManager();
+        this.线程编号 = 0;
         this.时间限制 = 时间限制;
         this.最大深度 = 最大深度;
     }
 
+    /**
+     * 辅助线程搜索实例 - 与主搜索共享置换表、排序表和停止标志
+     */
+    private MinimaxSearch(MinimaxSearch 主搜索, int 线程编号) {
+        this.置换表 = 主搜索.置换表;
+        this.评估缓存 = 主搜索.评估缓存;
+        this.排序表 = 主搜索.排序表;
+        this.停止标志 = 主搜索.停止标志;
+        this.计时器 = 主搜索.计时器;
+        this.线程编号 = 线程编号;
+        this.时间限制 = 主搜索.时间限制;
+        this.最大深度 = 主搜索.最大深度;
+        this.使用自适应评估 = 主搜索.使用自适应评估;
+        this.根步数 = 主搜索.根步数;
+    }
+
     /**
      * 寻找最佳下法 - 迭代加深搜索，确保3秒内响应
      */
     public 搜索结果 寻找最佳下法(GomokuBoard 棋盘, int 玩家) {
-        开始时间 = System.currentTimeMillis();
-        超时 = false;
+        计时器.开始(时间限制 / 软限制比例, 时间限制, 节点预算);
+        停止标志.set(已取消);  // 开始前已取消的搜索立即结束
         节点评估数 = 0;
         剪枝次数 = 0;
+        根步数 = 棋盘.getMoveCount();
+        置换表.newSearch();
+        评估缓存.newSearch();
+        if (延续排序表) {
+            排序表.继续搜索();
+        } else {
+            排序表.新搜索();
+        }
+        int 续接到 = 跟踪对局 ? 续接深度(棋盘) : 0;
+        if (根节点拆分器 != null) {
+            根节点拆分器.开始新搜索();
+        }
 
         GomokuEvaluator.Move 最佳着法 = null;
         int 最佳分数 = -无穷大;
@@ -48,14 +118,25 @@ public class MinimaxSearch {
         // 强制防守检查 - 优先级最高
         GomokuEvaluator.Move 强制防守着法 = 检查强制防守(棋盘, 玩家);
         if (强制防守着法 != null) {
-            return new 搜索结果(强制防守着法, 0, 1, 1, 0.0, "强制防守");
+            return new 搜索结果(强制防守着法, 0, 1, 1, 0.0, 0.0, "强制防守");
         }
 
-        // 迭代加深搜索 - 确保在时间内找到最佳解
-        for (int 深度 = 1; 深度 <= 最大深度 && !超时; 深度++) {
+        List<Future<搜索结果>> 辅助任务 = 启动辅助线程(棋盘, 玩家);
+
+        // 迭代加深搜索 - 硬限制打断的迭代作废，结果总是最后一次完成的迭代
+        // 沿上次主变例续接时，第一层之后直接跳到续接深度：第一层保证被打断时也有着法可用
+        for (int 深度 = 1; 深度 <= 最大深度 && !已停止(); 深度 = 深度 < 续接到 ? 续接到 : 深度 + 1) {
+            int 迭代前节点数 = 节点评估数;
+            long 迭代开始 = System.nanoTime();
             搜索结果 结果 = 搜索指定深度(棋盘, 玩家, 深度);
 
-            if (!超时 && 结果.最佳着法 != null) {
+            if (已停止()) {
+                break;
+            }
+            if (结果.最佳着法 != null) {
+                if (最佳着法 != null && !最佳着法.equals(结果.最佳着法)) {
+                    计时器.延长软限制(着法变化延长);
+                }
                 最佳着法 = 结果.最佳着法;
                 最佳分数 = 结果.分数;
                 达到深度 = 深度;
@@ -66,15 +147,212 @@ public class MinimaxSearch {
                 }
             }
 
-            // 时间控制 - 预估下次迭代时间
-            long 已用时间 = System.currentTimeMillis() - 开始时间;
-            if (已用时间 > 时间限制 / 3) { // 如果已用1/3时间，停止更深搜索
+            if (深度 < 续接到) {
+                continue;  // 下一层跳过了中间几层，这一层不参与估计分支因子
+            }
+
+            // 时间控制 - 超过软限制，或按有效分支因子预计下一层在硬限制/节点预算内完成不了
+            if (!计时器.继续加深(节点评估数 - 迭代前节点数, System.nanoTime() - 迭代开始)) {
                 break;
             }
         }
 
-        String 分析 = 生成着法分析(最佳分数, 达到深度, 节点评估数, 剪枝次数);
-        return new 搜索结果(最佳着法, 最佳分数, 达到深度, 节点评估数, 置换表.getHitRate(), 分析);
+        // 主线程结束后通知辅助线程停止，并采用完成了更深迭代的辅助线程结果
+        停止标志.set(true);
+        int 总节点数 = 节点评估数;
+        for (Future<搜索结果> 任务 : 辅助任务) {
+            try {
+                搜索结果 辅助结果 = 任务.get();
+                总节点数 += 辅助结果.节点评估数;
+                if (辅助结果.最佳着法 != null && 辅助结果.达到深度 > 达到深度 && 最佳分数 <= 无穷大 / 2) {
+                    最佳着法 = 辅助结果.最佳着法;
+                    最佳分数 = 辅助结果.分数;
+                    达到深度 = 辅助结果.达到深度;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // 辅助线程失败不影响主线程结果
+            }
+        }
+
+        if (跟踪对局 && !延续排序表 && 最佳着法 != null) {
+            记录主变例(棋盘, 玩家, 最佳着法, 达到深度);
+        }
+
+        String 分析 = 生成着法分析(最佳分数, 达到深度, 总节点数, 剪枝次数);
+        if (使用根节点拆分()) {
+            分析 += " 线程利用率 " + 根节点拆分器.获取利用率报告();
+        }
+        return new 搜索结果(最佳着法, 最佳分数, 达到深度, 总节点数, 置换表.getHitRate(),
+                评估缓存.getHitRate(), 排序表.首着截断率(), 分析);
+    }
+
+    /**
+     * 启动Lazy SMP辅助线程，每个线程在棋盘副本上独立迭代加深
+     */
+    private List<Future<搜索结果>> 启动辅助线程(GomokuBoard 棋盘, int 玩家) {
+        List<Future<搜索结果>> 任务列表 = new ArrayList<>();
+        if (线程数 <= 1 || 模式 != 并行模式.LazySMP) {
+            return 任务列表;
+        }
+
+        if (线程池 == null || 线程池.isShutdown()) {
+            线程池 = Executors.newFixedThreadPool(线程数 - 1, 任务 -> {
+                Thread 线程 = new Thread(任务, "MinimaxSearch-helper");
+                线程.setDaemon(true);
+                return 线程;
+            });
+        }
+
+        for (int i = 1; i < 线程数; i++) {
+            MinimaxSearch 辅助搜索 = new MinimaxSearch(this, i);
+            GomokuBoard 棋盘副本 = new GomokuBoard(棋盘);
+            任务列表.add(线程池.submit(() -> 辅助搜索.辅助迭代加深(棋盘副本, 玩家)));
+        }
+        return 任务列表;
+    }
+
+    /**
+     * 辅助线程的迭代加深 - 奇数号线程从深度2起步，与主线程错开迭代，
+     * 根节点着法顺序按线程编号轮转，使各线程优先填充不同子树的置换表
+     */
+    private 搜索结果 辅助迭代加深(GomokuBoard 棋盘, int 玩家) {
+        GomokuEvaluator.Move 最佳着法 = null;
+        int 最佳分数 = -无穷大;
+        int 达到深度 = 0;
+
+        for (int 深度 = 1 + (线程编号 & 1); 深度 <= 最大深度 && !已停止(); 深度++) {
+            搜索结果 结果 = 搜索指定深度(棋盘, 玩家, 深度);
+
+            if (!已停止() && 结果.最佳着法 != null) {
+                最佳着法 = 结果.最佳着法;
+                最佳分数 = 结果.分数;
+                达到深度 = 深度;
+
+                if (最佳分数 > 无穷大 / 2) {
+                    break;
+                }
+            }
+        }
+
+        return new 搜索结果(最佳着法, 最佳分数, 达到深度, 节点评估数, 0.0, 0.0, "");
+    }
+
+    private boolean 已停止() {
+        return 停止标志.get();
+    }
+
+    /**
+     * 本层的着法缓冲区 - 子节点使用下一层，不会覆盖正在遍历的列表
+     */
+    private int[] 取着法缓冲(int 层数) {
+        int 层 = MoveOrderingTables.限制层数(层数);
+        int[] 缓冲 = 着法缓冲[层];
+        if (缓冲 == null) {
+            缓冲 = new int[GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE];
+            着法缓冲[层] = 缓冲;
+        }
+        return 缓冲;
+    }
+
+    private boolean 使用根节点拆分() {
+        if (线程数 <= 1 || 模式 != 并行模式.根节点拆分 || 线程编号 > 0) {
+            return false;
+        }
+        if (根节点拆分器 == null) {
+            根节点拆分器 = new RootSplitter<>(线程数, () -> new MinimaxSearch(this, 0));
+        }
+        return true;
+    }
+
+    /**
+     * 根节点拆分的单个任务：在拆分器复用的辅助实例上搜索，实例共享置换表和停止标志
+     */
+    private RootSplitter.根着法搜索<MinimaxSearch> 创建根着法搜索(int 玩家, int 深度) {
+        return new RootSplitter.根着法搜索<MinimaxSearch>() {
+            @Override
+            public int 搜索(MinimaxSearch 实例, GomokuBoard 棋盘, GomokuEvaluator.Move 着法, int 当前最佳) {
+                return 实例.搜索拆分着法(MinimaxSearch.this, 棋盘, 玩家, 着法, 深度, 当前最佳);
+            }
+
+            @Override
+            public int 节点数(MinimaxSearch 实例) {
+                return 实例.节点评估数;
+            }
+        };
+    }
+
+    /**
+     * 在复用的辅助实例上搜索一个根着法：先同步主搜索本次搜索的设置，节点计数从0开始
+     */
+    private int 搜索拆分着法(MinimaxSearch 主搜索, GomokuBoard 棋盘, int 玩家, GomokuEvaluator.Move 着法,
+                         int 深度, int 当前最佳) {
+        根步数 = 主搜索.根步数;
+        最大深度 = 主搜索.最大深度;  // 排序深度和搜索宽度都按距最大深度的层数计算
+        使用自适应评估 = 主搜索.使用自适应评估;
+        节点评估数 = 0;
+        return 搜索根着法(棋盘, 玩家, 着法, 深度, 当前最佳);
+    }
+
+    /**
+     * 搜索单个根着法 - 不超过当前最佳的分数无需精确，子节点窗口下界取当前最佳
+     */
+    private int 搜索根着法(GomokuBoard 棋盘, int 玩家, GomokuEvaluator.Move 着法, int 深度, int 当前最佳) {
+        棋盘.makeMove(着法.x, 着法.y, 玩家);
+        路径着法[0] = MoveOrderingTables.格子(着法);
+        int 分数 = alphabeta(棋盘, 玩家, 深度 - 1, 当前最佳, 无穷大, false);
+        棋盘.undoMove(着法.x, 着法.y);
+        return 分数;
+    }
+
+    /**
+     * 沿置换表中的最佳着法从根局面走出主变例，记下每步之前的局面哈希，供下一次搜索核对实际走法
+     */
+    private void 记录主变例(GomokuBoard 棋盘, int 玩家, GomokuEvaluator.Move 最佳着法, int 深度) {
+        int 长度 = 0;
+        int 格子 = MoveOrderingTables.格子(最佳着法);
+        int 走棋方 = 玩家;
+        while (长度 < Math.min(深度, 主变例.length)) {
+            int x = 格子 / GomokuBoard.BOARD_SIZE;
+            int y = 格子 % GomokuBoard.BOARD_SIZE;
+            主变例哈希[长度] = 棋盘.getZobristHash();
+            if (!棋盘.makeMove(x, y, 走棋方)) {
+                break;
+            }
+            主变例[长度++] = 格子;
+            走棋方 = GomokuBoard.getOpponent(走棋方);
+            long 条目 = 置换表.probe(棋盘.getZobristHash());
+            if (条目 == TranspositionTable.MISS || TranspositionTable.moveOf(条目) == TranspositionTable.NO_MOVE) {
+                break;
+            }
+            格子 = TranspositionTable.moveOf(条目);
+        }
+        for (int i = 长度 - 1; i >= 0; i--) {
+            棋盘.undoMove(主变例[i] / GomokuBoard.BOARD_SIZE, 主变例[i] % GomokuBoard.BOARD_SIZE);
+        }
+        主变例长度 = 长度;
+        主变例根步数 = 棋盘.getMoveCount();
+        主变例深度 = 深度;
+    }
+
+    /**
+     * 实际走法沿着上次的主变例前进了几步时，上次搜索已把本次的根局面搜到了（上次深度 - 前进步数）层，
+     * 迭代加深可以从这一层开始；用局面哈希核对，走法偏离主变例时返回0
+     * 之间的后台思考或清空缓存()可能已把那些条目挤出置换表，根局面的条目不够深时同样返回0，从第1层正常加深
+     */
+    int 续接深度(GomokuBoard 棋盘) {
+        long 哈希 = 棋盘.getZobristHash();
+        int 前进 = 棋盘.getMoveCount() - 主变例根步数;
+        if (主变例根步数 < 0 || 前进 <= 0 || 前进 >= 主变例长度 || 哈希 != 主变例哈希[前进]) {
+            return 0;
+        }
+        int 续接 = Math.min(最大深度, 主变例深度 - 前进);
+        long 条目 = 置换表.probe(哈希);
+        if (条目 == TranspositionTable.MISS || TranspositionTable.depthOf(条目) < 续接) {
+            return 0;
+        }
+        return 续接;
     }
 
     /**
@@ -129,69 +407,101 @@ public class MinimaxSearch {
             候选着法 = 候选着法.subList(0, 最大宽度);
         }
 
-        for (GomokuEvaluator.Move 着法 : 候选着法) {
-            if (超时) break;
+        if (线程编号 > 0 && !候选着法.isEmpty()) {
+            Collections.rotate(候选着法, -(线程编号 % 候选着法.size()));
+        }
 
-            棋盘.makeMove(着法.x, 着法.y, 玩家);
+        if (使用根节点拆分() && 候选着法.size() > 1) {
+            RootSplitter.拆分结果 拆分 = 根节点拆分器.搜索(棋盘, 候选着法, 深度, -无穷大,
+                    创建根着法搜索(玩家, 深度));
+            节点评估数 += 拆分.节点数;
+            return new 搜索结果(拆分.最佳着法, 拆分.最佳分数, 深度, 节点评估数, 置换表.getHitRate(),
+                    排序表.首着截断率(), "");
+        }
 
-            int 分数 = -alphabeta(棋盘, GomokuBoard.getOpponent(玩家), 深度 - 1,
-                                -无穷大, 无穷大, false);
+        for (GomokuEvaluator.Move 着法 : 候选着法) {
+            if (已停止()) break;
 
-            棋盘.undoMove(着法.x, 着法.y);
+            int 分数 = 搜索根着法(棋盘, 玩家, 着法, 深度, 最佳分数);
 
-            if (分数 > 最佳分数 && !超时) {
+            if (分数 > 最佳分数 && !已停止()) {
                 最佳分数 = 分数;
                 最佳着法 = 着法;
             }
         }
 
-        return new 搜索结果(最佳着法, 最佳分数, 深度, 节点评估数, 置换表.getHitRate(), "");
+        return new 搜索结果(最佳着法, 最佳分数, 深度, 节点评估数, 置换表.getHitRate(),
+                排序表.首着截断率(), "");
+    }
+
+    /**
+     * 当前玩家视角的静态评估，先查评估缓存
+     */
+    private int 静态评估(GomokuBoard 棋盘, int 当前玩家) {
+        long 哈希 = 棋盘.getZobristHash();
+        int 分数 = 评估缓存.probe(哈希, 当前玩家, 使用自适应评估);
+        if (分数 == EvaluationCache.MISS) {
+            分数 = PatternEvaluator.评估局面(棋盘, 当前玩家, 使用自适应评估);
+            评估缓存.store(哈希, 当前玩家, 使用自适应评估, 分数);
+        }
+        return 分数;
+    }
+
+    /**
+     * 玩家视角的静态评估：静态评估按走棋方打分，极小化层由对手走棋，取相反数
+     */
+    private int 玩家视角评估(GomokuBoard 棋盘, int 玩家, boolean 最大化) {
+        return 最大化 ? 静态评估(棋盘, 玩家) : -静态评估(棋盘, GomokuBoard.getOpponent(玩家));
     }
 
     /**
      * Alpha-Beta剪枝算法 - 强化版本
+     * 分数始终是玩家（根节点走棋方）视角；最大化层由玩家落子，极小化层由对手落子
      */
     private int alphabeta(GomokuBoard 棋盘, int 玩家, int 深度, int alpha, int beta, boolean 最大化) {
-        // 时间检查
-        if (System.currentTimeMillis() - 开始时间 > 时间限制) {
-            超时 = true;
+        // 停止检查：停止标志每个节点都看，时钟和节点预算每检查间隔个节点看一次
+        if (已停止()) {
             return 0;
         }
-
         节点评估数++;
+        if ((节点评估数 & TimeManager.检查掩码) == 0 && 计时器.应当停止(TimeManager.检查间隔)) {
+            停止标志.set(true);
+            return 0;
+        }
 
         // 置换表查询 - 优化性能
         long zobrist = 棋盘.getZobristHash();
-        TranspositionTable.Entry 缓存条目 = 置换表.lookup(zobrist);
+        long 缓存条目 = 置换表.probe(zobrist);
 
-        if (缓存条目 != null && 缓存条目.depth >= 深度) {
-            switch (缓存条目.flag) {
+        if (缓存条目 != TranspositionTable.MISS && TranspositionTable.depthOf(缓存条目) >= 深度) {
+            int 缓存分数 = TranspositionTable.scoreOf(缓存条目);
+            switch (TranspositionTable.flagOf(缓存条目)) {
                 case TranspositionTable.EXACT:
-                    return 缓存条目.score;
+                    return 缓存分数;
                 case TranspositionTable.LOWER_BOUND:
-                    alpha = Math.max(alpha, 缓存条目.score);
+                    alpha = Math.max(alpha, 缓存分数);
                     break;
                 case TranspositionTable.UPPER_BOUND:
-                    beta = Math.min(beta, 缓存条目.score);
+                    beta = Math.min(beta, 缓存分数);
                     break;
             }
 
             if (alpha >= beta) {
                 剪枝次数++;
-                return 缓存条目.score;
+                return 缓存分数;
             }
         }
 
         // 终端节点检查
+        int 当前玩家 = 最大化 ? 玩家 : GomokuBoard.getOpponent(玩家);
         if (深度 == 0 || 棋盘.isFull()) {
-            int 分数 = PatternEvaluator.评估局面(棋盘, 最大化 ? 玩家 : GomokuBoard.getOpponent(玩家));
+            int 分数 = 玩家视角评估(棋盘, 玩家, 最大化);
             置换表.store(zobrist, 0, 分数, TranspositionTable.EXACT, null);
             return 分数;
         }
 
         // 快速胜负判断
-        int 当前玩家 = 最大化 ? 玩家 : GomokuBoard.getOpponent(玩家);
-        int 评估 = PatternEvaluator.评估局面(棋盘, 当前玩家);
+        int 评估 = 玩家视角评估(棋盘, 玩家, 最大化);
 
         // 如果局面已经胜负已分，立即返回
         if (Math.abs(评估) > 无穷大 / 2) {
@@ -199,33 +509,42 @@ public class MinimaxSearch {
             return 评估;
         }
 
-        // 生成有序着法列表
-        List<GomokuEvaluator.Move> 着法列表 = GomokuEvaluator.generateOrderedMoves(棋盘, 当前玩家, 最大深度 - 深度);
+        // 生成有序着法列表，叠加杀手、应手、历史奖励后再截断宽度
+        int 层数 = 棋盘.getMoveCount() - 根步数;
+        int 上一着 = 层数 > 0 ? 路径着法[MoveOrderingTables.限制层数(层数 - 1)] : MoveOrderingTables.无着法;
+        int[] 着法列表 = 取着法缓冲(层数);
+        int 着法数 = GomokuEvaluator.生成有序着法(棋盘, 当前玩家, 最大深度 - 深度, 着法列表);
+        排序表.排序(着法列表, 着法数, 层数, 当前玩家, 上一着);
 
         // 动态剪枝：根据深度调整搜索宽度
         int 搜索宽度 = Math.max(6, 20 - (最大深度 - 深度) * 2);
-        if (着法列表.size() > 搜索宽度) {
-            着法列表 = 着法列表.subList(0, 搜索宽度);
-        }
+        着法数 = Math.min(着法数, 搜索宽度);
 
         int 原始alpha = alpha;
-        GomokuEvaluator.Move 最佳着法 = null;
+        int 原始beta = beta;  // 极小层在循环中收紧beta，判断边界类型要用进入时的窗口
+        int 最佳着法 = TranspositionTable.NO_MOVE;
 
         if (最大化) {
             int 最大评估 = -无穷大;
 
-            for (GomokuEvaluator.Move 着法 : 着法列表) {
-                if (超时) break;
+            for (int i = 0; i < 着法数; i++) {
+                if (已停止()) break;
 
-                棋盘.makeMove(着法.x, 着法.y, 玩家);
+                int 着法 = 着法列表[i];
+                int 格子 = GomokuEvaluator.打包格子(着法);
+                int x = 格子 / GomokuBoard.BOARD_SIZE;
+                int y = 格子 % GomokuBoard.BOARD_SIZE;
+                棋盘.makeMove(x, y, 玩家);
+                路径着法[MoveOrderingTables.限制层数(层数)] = 格子;
 
                 int 评估值 = alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, false);
 
-                棋盘.undoMove(着法.x, 着法.y);
+                棋盘.undoMove(x, y);
+                if (已停止()) break;  // 子节点被打断时返回的0不是分数
 
                 if (评估值 > 最大评估) {
                     最大评估 = 评估值;
-                    最佳着法 = 着法;
+                    最佳着法 = 格子;
                 }
 
                 alpha = Math.max(alpha, 评估值);
@@ -233,10 +552,15 @@ public class MinimaxSearch {
                 // Alpha-Beta剪枝
                 if (beta <= alpha) {
                     剪枝次数++;
+                    排序表.记录截断(着法, i, 层数, 当前玩家, 上一着, 深度);
                     break;
                 }
             }
 
+            if (已停止()) {
+                return 0;  // 不完整的结果不写入置换表
+            }
+
             // 存储到置换表
             int 标志 = 最大评估 <= 原始alpha ? TranspositionTable.UPPER_BOUND :
                       最大评估 >= beta ? TranspositionTable.LOWER_BOUND :
@@ -248,18 +572,24 @@ public class MinimaxSearch {
         } else {
             int 最小评估 = 无穷大;
 
-            for (GomokuEvaluator.Move 着法 : 着法列表) {
-                if (超时) break;
+            for (int i = 0; i < 着法数; i++) {
+                if (已停止()) break;
 
-                棋盘.makeMove(着法.x, 着法.y, GomokuBoard.getOpponent(玩家));
+                int 着法 = 着法列表[i];
+                int 格子 = GomokuEvaluator.打包格子(着法);
+                int x = 格子 / GomokuBoard.BOARD_SIZE;
+                int y = 格子 % GomokuBoard.BOARD_SIZE;
+                棋盘.makeMove(x, y, GomokuBoard.getOpponent(玩家));
+                路径着法[MoveOrderingTables.限制层数(层数)] = 格子;
 
                 int 评估值 = alphabeta(棋盘, 玩家, 深度 - 1, alpha, beta, true);
 
-                棋盘.undoMove(着法.x, 着法.y);
+                棋盘.undoMove(x, y);
+                if (已停止()) break;
 
                 if (评估值 < 最小评估) {
                     最小评估 = 评估值;
-                    最佳着法 = 着法;
+                    最佳着法 = 格子;
                 }
 
                 beta = Math.min(beta, 评估值);
@@ -267,13 +597,18 @@ public class MinimaxSearch {
                 // Alpha-Beta剪枝
                 if (beta <= alpha) {
                     剪枝次数++;
+                    排序表.记录截断(着法, i, 层数, 当前玩家, 上一着, 深度);
                     break;
                 }
             }
 
+            if (已停止()) {
+                return 0;
+            }
+
             // 存储到置换表
             int 标志 = 最小评估 <= 原始alpha ? TranspositionTable.UPPER_BOUND :
-                      最小评估 >= beta ? TranspositionTable.LOWER_BOUND :
+                      最小评估 >= 原始beta ? TranspositionTable.LOWER_BOUND :
                       TranspositionTable.EXACT;
 
             置换表.store(zobrist, 深度, 最小评估, 标志, 最佳着法);
@@ -305,20 +640,66 @@ public class MinimaxSearch {
         return 分析.toString();
     }
 
+    /**
+     * 开始跟踪一局棋：之后的搜索都视为同一局棋中上次搜索的延续，每次搜索后记下主变例，
+     * 实际走法沿主变例前进时，下一次搜索从上次已搜到的深度接着迭代加深；
+     * 置换表、历史表、应手表本来就跨搜索保留，杀手着法按层记录，每次搜索清空
+     * 棋盘被清空、重建或悔棋后应再次调用
+     */
+    public void 开始对局() {
+        跟踪对局 = true;
+        主变例长度 = 0;
+        主变例根步数 = -1;
+    }
+
+    /**
+     * 之后的搜索是否都视为上一次搜索的延续：杀手着法和历史表原样保留，不清空也不减半，
+     * 也不记录主变例，正式回合的主变例留给下一个正式回合
+     * 后台思考在对方回合连续搜索多个假设局面，应在期间打开，结束后关闭
+     */
+    public void 设置延续排序表(boolean 延续) {
+        延续排序表 = 延续;
+    }
+
     /**
      * 清空置换表
      */
     public void 清空缓存() {
         置换表.clear();
+        评估缓存.clear();
+        排序表.清空();
+    }
+
+    /**
+     * 从其他线程请求停止：正在进行的搜索在下一个节点返回已完成迭代的结果，
+     * 之后开始的搜索也立即结束，直到调用清除取消()
+     */
+    public void 取消搜索() {
+        已取消 = true;
+        停止标志.set(true);
     }
 
     /**
-     * 设置时间限制
+     * 复位取消请求，应在开始新搜索之前、由发起搜索的线程调用
+     */
+    public void 清除取消() {
+        已取消 = false;
+    }
+
+    /**
+     * 设置时间限制（硬限制，毫秒），不大于0为不限时间；软限制为它的1/3
      */
     public void 设置时间限制(long 时间限制) {
         this.时间限制 = 时间限制;
     }
 
+    /**
+     * 设置节点预算（所有线程合计），不大于0为不限；与时间限制同时设置时先到者为准
+     */
+    public void 设置节点预算(long 节点预算) {
+        this.节点预算 = 节点预算;
+    }
+
     /**
      * 设置最大搜索深度
      */
@@ -326,6 +707,63 @@ public class MinimaxSearch {
         this.最大深度 = 最大深度;
     }
 
+    /**
+     * 叶节点改用自适应评估；两种评估的分数不可比，切换时清空置换表
+     */
+    public void 设置自适应评估(boolean 启用) {
+        if (启用 != 使用自适应评估) {
+            使用自适应评估 = 启用;
+            置换表.clear();
+        }
+    }
+
+    /**
+     * 设置搜索线程数（1为单线程），线程数变化时重建线程池
+     */
+    public void 设置线程数(int 线程数) {
+        int 新线程数 = Math.max(1, 线程数);
+        if (新线程数 != this.线程数) {
+            关闭();
+            this.线程数 = 新线程数;
+        }
+    }
+
+    public int 获取线程数() {
+        return 线程数;
+    }
+
+    /**
+     * 选择多线程方式：Lazy SMP或根节点拆分
+     */
+    public void 设置并行模式(并行模式 模式) {
+        this.模式 = 模式;
+    }
+
+    public 并行模式 获取并行模式() {
+        return 模式;
+    }
+
+    /**
+     * 最近一次根节点拆分搜索的逐层线程利用率，例如 "d1:1.0 d2:3.4"
+     */
+    public String 获取线程利用率报告() {
+        return 根节点拆分器 == null ? "" : 根节点拆分器.获取利用率报告();
+    }
+
+    /**
+     * 释放辅助线程，之后再次搜索时会按需重建
+     */
+    public void 关闭() {
+        if (线程池 != null) {
+            线程池.shutdownNow();
+            线程池 = null;
+        }
+        if (根节点拆分器 != null) {
+            根节点拆分器.关闭();
+            根节点拆分器 = null;
+        }
+    }
+
     /**
      * 搜索结果类
      */
@@ -335,22 +773,31 @@ public class MinimaxSearch {
         public final int 达到深度;
         public final int 节点评估数;
         public final double 缓存命中率;
+        public final double 评估缓存命中率;
+        public final double 首着截断率;  // 发生截断的节点中第一个着法就截断的比例，衡量着法排序质量
         public final String 分析;
 
         public 搜索结果(GomokuEvaluator.Move 最佳着法, int 分数, int 达到深度,
-                      int 节点评估数, double 缓存命中率, String 分析) {
+                      int 节点评估数, double 缓存命中率, double 首着截断率, String 分析) {
+            this(最佳着法, 分数, 达到深度, 节点评估数, 缓存命中率, 0.0, 首着截断率, 分析);
+        }
+
+        public 搜索结果(GomokuEvaluator.Move 最佳着法, int 分数, int 达到深度, int 节点评估数,
+                      double 缓存命中率, double 评估缓存命中率, double 首着截断率, String 分析) {
             this.最佳着法 = 最佳着法;
             this.分数 = 分数;
             this.达到深度 = 达到深度;
             this.节点评估数 = 节点评估数;
             this.缓存命中率 = 缓存命中率;
+            this.评估缓存命中率 = 评估缓存命中率;
+            this.首着截断率 = 首着截断率;
             this.分析 = 分析;
         }
 
         @Override
         public String toString() {
-            return String.format("着法: %s, 分数: %d, 深度: %d, 节点: %d, 缓存: %.1f%%, 分析: %s",
-                    最佳着法, 分数, 达到深度, 节点评估数, 缓存命中率 * 100, 分析);
+            return String.format("着法: %s, 分数: %d, 深度: %d, 节点: %d, 缓存: %.1f%%, 评估缓存: %.1f%%, 首着截断: %.1f%%, 分析: %s",
+                    最佳着法, 分数, 达到深度, 节点评估数, 缓存命中率 * 100, 评估缓存命中率 * 100, 首着截断率 * 100, 分析);
         }
     }
 }
\ No newline at end of file
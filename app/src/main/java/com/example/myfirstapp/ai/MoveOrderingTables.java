@@ -0,0 +1,188 @@
+package com.example.myfirstapp.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 搜索中学习的着法排序表 - 杀手着法、历史表、应手表
+ * 在beta截断时更新，生成着法后叠加到静态优先级上重新排序
+ * MinimaxSearch与EnhancedMinimaxSearch共用；多线程搜索时各线程共享同一份表，
+ * int数组的读写不加锁，偶尔丢失一次更新只影响排序质量，不影响搜索正确性
+ *
+ * 着法以格子编号表示：x * BOARD_SIZE + y；排序与截断记录接受GomokuEvaluator的打包着法
+ */
+class MoveOrderingTables {
+
+    static final int 最大层数 = 64;
+    static final int 无着法 = -1;
+
+    private static final int 格子数 = GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE;
+
+    // 叠加到静态分数上的奖励：杀手着法优先于活三级别的进攻，但不超过冲四、活四组合
+    private static final int 杀手奖励 = PatternEvaluator.活四;
+    private static final int 次杀手奖励 = PatternEvaluator.活四 / 2;
+    private static final int 应手奖励 = PatternEvaluator.活三;
+    private static final int 历史奖励上限 = PatternEvaluator.活三;
+    private static final int 历史上限 = 1 << 24;  // 超过时全表减半，防止溢出
+
+    private final int[][] 杀手着法 = new int[最大层数][2];
+    private final int[][] 历史表 = new int[3][格子数];  // 按玩家颜色，槽0不用
+    private final int[] 历史最大值 = new int[3];
+    private final int[][] 应手表 = new int[3][格子数];  // [应手方][对方上一着] -> 应手
+
+    // 截断统计：发生截断的节点数，以及其中第一个着法就截断的节点数
+    private final LongAdder 截断节点数 = new LongAdder();
+    private final LongAdder 首着截断数 = new LongAdder();
+
+    MoveOrderingTables() {
+        清空();
+    }
+
+    /**
+     * 新的根搜索开始：杀手着法按层数记录，换了根局面就不再对应，直接清空；
+     * 历史表减半，让旧局面的经验逐步淡出；应手表保留
+     */
+    void 新搜索() {
+        for (int[] 层 : 杀手着法) {
+            Arrays.fill(层, 无着法);
+        }
+        for (int 玩家 = GomokuBoard.BLACK; 玩家 <= GomokuBoard.WHITE; 玩家++) {
+            减半(玩家);
+        }
+        截断节点数.reset();
+        首着截断数.reset();
+    }
+
+    /**
+     * 延续上一次搜索的根搜索（如后台思考中同一轮的多次搜索）：杀手着法与历史表原样保留，只复位统计
+     * 后台思考一轮要搜索十几次，每次都减半会把正式回合积累的历史表冲掉
+     */
+    void 继续搜索() {
+        截断节点数.reset();
+        首着截断数.reset();
+    }
+
+    /**
+     * 清空全部表，用于新对局
+     */
+    void 清空() {
+        for (int[] 层 : 杀手着法) {
+            Arrays.fill(层, 无着法);
+        }
+        for (int 玩家 = GomokuBoard.BLACK; 玩家 <= GomokuBoard.WHITE; 玩家++) {
+            Arrays.fill(历史表[玩家], 0);
+            Arrays.fill(应手表[玩家], 无着法);
+            历史最大值[玩家] = 0;
+        }
+        截断节点数.reset();
+        首着截断数.reset();
+    }
+
+    /**
+     * 把学到的奖励叠加到打包着法的分数上并原地重新排序（同分仍按格子顺序）
+     * 应在按搜索宽度截断之前调用，使被表推荐的着法有机会进入搜索窗口
+     *
+     * @param 着法 GomokuEvaluator.生成有序着法产生的打包着法
+     * @param 上一着 对方上一着的格子编号，根节点为无着法
+     */
+    void 排序(int[] 着法, int 数量, int 层数, int 玩家, int 上一着) {
+        int[] 杀手 = 杀手着法[限制层数(层数)];
+        int 应手 = 上一着 == 无着法 ? 无着法 : 应手表[玩家][上一着];
+        int[] 历史 = 历史表[玩家];
+        int 历史最大 = 历史最大值[玩家];
+
+        boolean 有变化 = false;
+        for (int i = 0; i < 数量; i++) {
+            int 分数 = GomokuEvaluator.打包分数(着法[i]);
+            if (分数 >= GomokuEvaluator.打包强制分数) {
+                continue;
+            }
+            int 格子 = GomokuEvaluator.打包格子(着法[i]);
+            int 奖励 = 0;
+            if (格子 == 杀手[0]) {
+                奖励 += 杀手奖励;
+            } else if (格子 == 杀手[1]) {
+                奖励 += 次杀手奖励;
+            }
+            if (格子 == 应手) {
+                奖励 += 应手奖励;
+            }
+            if (历史最大 > 0 && 历史[格子] > 0) {
+                奖励 += (int) ((long) 历史[格子] * 历史奖励上限 / 历史最大);
+            }
+            if (奖励 != 0) {
+                // 奖励不能把普通着法抬进获胜、封堵档
+                着法[i] = GomokuEvaluator.打包着法(格子, Math.min(分数 + 奖励, GomokuEvaluator.打包强制分数 - 1));
+                有变化 = true;
+            }
+        }
+
+        if (有变化) {
+            GomokuEvaluator.降序排序(着法, 数量);
+        }
+    }
+
+    /**
+     * 记录一次beta截断
+     *
+     * @param 着法 截断的打包着法
+     * @param 序号 截断着法在本节点着法列表中的位置，0表示第一个着法
+     * @param 玩家 走出截断着法的一方
+     * @param 上一着 对方上一着的格子编号，根节点为无着法
+     */
+    void 记录截断(int 着法, int 序号, int 层数, int 玩家, int 上一着, int 深度) {
+        截断节点数.increment();
+        if (序号 == 0) {
+            首着截断数.increment();
+        }
+
+        // 获胜、封堵着法本来就排在最前，不占用表项
+        if (GomokuEvaluator.打包分数(着法) >= GomokuEvaluator.打包强制分数) {
+            return;
+        }
+
+        int 格子 = GomokuEvaluator.打包格子(着法);
+        int[] 杀手 = 杀手着法[限制层数(层数)];
+        if (杀手[0] != 格子) {
+            杀手[1] = 杀手[0];
+            杀手[0] = 格子;
+        }
+
+        if (上一着 != 无着法) {
+            应手表[玩家][上一着] = 格子;
+        }
+
+        int 新值 = 历史表[玩家][格子] + 深度 * 深度;
+        历史表[玩家][格子] = 新值;
+        if (新值 > 历史最大值[玩家]) {
+            历史最大值[玩家] = 新值;
+            if (新值 > 历史上限) {
+                减半(玩家);
+            }
+        }
+    }
+
+    /**
+     * 本次搜索中发生截断的节点里，第一个着法就截断的比例
+     */
+    double 首着截断率() {
+        long 节点 = 截断节点数.sum();
+        return 节点 > 0 ? (double) 首着截断数.sum() / 节点 : 0.0;
+    }
+
+    static int 格子(GomokuEvaluator.Move 着法) {
+        return 着法.x * GomokuBoard.BOARD_SIZE + 着法.y;
+    }
+
+    static int 限制层数(int 层数) {
+        return Math.max(0, Math.min(最大层数 - 1, 层数));
+    }
+
+    private void 减半(int 玩家) {
+        int[] 历史 = 历史表[玩家];
+        for (int i = 0; i < 格子数; i++) {
+            历史[i] >>= 1;
+        }
+        历史最大值[玩家] >>= 1;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.myfirstapp.ai;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * NNUE评估与棋型评估的速度和一致性对比
+ * - 一致性：在训练集之外的自对弈局面上比较两种评估的符号、压缩后分数的相关系数，以及一步最佳着法是否相同
+ * - 速度：随机落子/悔棋序列中每步评估的耗时（含增量更新），以及固定深度搜索的每节点耗时
+ *
+ * 用法: NNUEBenchmark <权重文件> [局数]
+ */
+public class NNUEBenchmark {
+
+    public static void 对比(NNUENetwork 网络, int 局数) {
+        List<NNUETrainer.局面> 局面集 = NNUETrainer.生成局面(局数, 99);
+        System.out.println("测试局面: " + 局面集.size() + "，隐藏层宽度: " + 网络.获取隐藏层宽度());
+        测试一致性(网络, 局面集);
+        测试评估速度(网络, 局面集);
+        测试搜索速度(网络, 局面集);
+    }
+
+    private static void 测试一致性(NNUENetwork 网络, List<NNUETrainer.局面> 局面集) {
+        int 同号 = 0;
+        int 有倾向 = 0;
+        double 和x = 0, 和y = 0, 和xx = 0, 和yy = 0, 和xy = 0, 绝对误差 = 0;
+        int 一步相同 = 0;
+        int 一步总数 = 0;
+        for (int i = 0; i < 局面集.size(); i++) {
+            NNUETrainer.局面 局面 = 局面集.get(i);
+            GomokuBoard 棋盘 = 还原(局面);
+            int 玩家 = 行棋方(棋盘);
+            GomokuBoard 网络棋盘 = new GomokuBoard(棋盘);
+            网络棋盘.setNetwork(网络);
+
+            double 棋型 = NNUETrainer.压缩(局面.分数);
+            double 网络分 = NNUETrainer.压缩(网络棋盘.evaluateNetwork(玩家));
+            if (Math.abs(棋型 - 0.5) > 0.05) {
+                有倾向++;
+                if ((棋型 > 0.5) == (网络分 > 0.5)) {
+                    同号++;
+                }
+            }
+            和x += 棋型;
+            和y += 网络分;
+            和xx += 棋型 * 棋型;
+            和yy += 网络分 * 网络分;
+            和xy += 棋型 * 网络分;
+            绝对误差 += Math.abs(棋型 - 网络分);
+
+            if (i % 10 == 0) {
+                一步总数++;
+                if (一步最佳(棋盘, 玩家) == 一步最佳(网络棋盘, 玩家)) {
+                    一步相同++;
+                }
+            }
+        }
+        int n = 局面集.size();
+        double 相关 = (n * 和xy - 和x * 和y) / Math.sqrt((n * 和xx - 和x * 和x) * (n * 和yy - 和y * 和y));
+        System.out.printf("一致性: 相关系数 %.3f，平均绝对误差 %.3f（压缩到0..1），优劣判断一致 %.1f%%，一步最佳着法相同 %.1f%%%n",
+                相关, 绝对误差 / n, 100.0 * 同号 / Math.max(1, 有倾向), 100.0 * 一步相同 / Math.max(1, 一步总数));
+    }
+
+    /**
+     * 只看一步：对每个候选着法评估走后局面，取对手视角分数最低者
+     */
+    private static int 一步最佳(GomokuBoard 棋盘, int 玩家) {
+        int 对手 = GomokuBoard.getOpponent(玩家);
+        int 最佳 = -1;
+        int 最佳分数 = Integer.MAX_VALUE;
+        for (GomokuEvaluator.Move 着法 : GomokuEvaluator.generateOrderedMoves(棋盘, 玩家, 0)) {
+            棋盘.makeMove(着法.x, 着法.y, 玩家);
+            int 分数 = PatternEvaluator.评估局面(棋盘, 对手);
+            棋盘.undoMove(着法.x, 着法.y);
+            if (分数 < 最佳分数) {
+                最佳分数 = 分数;
+                最佳 = 着法.x * GomokuBoard.BOARD_SIZE + 着法.y;
+            }
+        }
+        return 最佳;
+    }
+
+    private static void 测试评估速度(NNUENetwork 网络, List<NNUETrainer.局面> 局面集) {
+        int 轮数 = 5;
+        long 棋型耗时 = 0, 网络耗时 = 0, 空耗时 = 0;
+        long 步数 = 0;
+        long 校验 = 0;
+        for (int 轮 = 0; 轮 < 轮数; 轮++) {
+            空耗时 = 0;
+            棋型耗时 = 0;
+            网络耗时 = 0;
+            步数 = 0;
+            for (int 模式 = 0; 模式 < 3; 模式++) {
+                Random 随机 = new Random(5);
+                long 开始 = System.nanoTime();
+                for (int i = 0; i < 局面集.size(); i += 4) {
+                    GomokuBoard 棋盘 = 还原(局面集.get(i));
+                    if (模式 == 2) {
+                        棋盘.setNetwork(网络);
+                    }
+                    int 玩家 = 行棋方(棋盘);
+                    long 结果 = 随机走子(棋盘, 玩家, 随机, 模式);
+                    if (模式 == 0) {
+                        步数 += 结果;
+                    } else {
+                        校验 += 结果;
+                    }
+                }
+                long 耗时 = System.nanoTime() - 开始;
+                if (模式 == 0) {
+                    空耗时 = 耗时;
+                } else if (模式 == 1) {
+                    棋型耗时 = 耗时;
+                } else {
+                    网络耗时 = 耗时;
+                }
+            }
+        }
+        System.out.printf("评估速度（每步落子+评估+悔棋，已扣除无评估的基线）: 棋型 %.0fns，NNUE %.0fns (%d)%n",
+                (double) (棋型耗时 - 空耗时) / 步数, (double) (网络耗时 - 空耗时) / 步数, 校验 & 1);
+    }
+
+    private static final int 随机走子步数 = 64;
+
+    /**
+     * 在局面上随机落子再悔棋，模式0只走子并返回成功落子数，1用棋型评估，2用网络评估（棋盘已挂载网络）
+     */
+    private static long 随机走子(GomokuBoard 棋盘, int 玩家, Random 随机, int 模式) {
+        long 和 = 0;
+        for (int 步 = 0; 步 < 随机走子步数; 步++) {
+            int x = 随机.nextInt(GomokuBoard.BOARD_SIZE);
+            int y = 随机.nextInt(GomokuBoard.BOARD_SIZE);
+            if (!棋盘.makeMove(x, y, 玩家)) {
+                continue;
+            }
+            和 += 模式 == 0 ? 1 : PatternEvaluator.评估局面(棋盘, GomokuBoard.getOpponent(玩家));
+            棋盘.undoMove(x, y);
+        }
+        return 和;
+    }
+
+    private static void 测试搜索速度(NNUENetwork 网络, List<NNUETrainer.局面> 局面集) {
+        for (int 轮 = 0; 轮 < 2; 轮++) {
+            StringBuilder 报告 = new StringBuilder("搜索（深度4）");
+            for (int 模式 = 0; 模式 < 2; 模式++) {
+                long 耗时 = 0;
+                long 节点 = 0;
+                for (int i = 0; i < 局面集.size(); i += 割(局面集.size(), 60)) {
+                    GomokuBoard 棋盘 = 还原(局面集.get(i));
+                    if (模式 == 1) {
+                        棋盘.setNetwork(网络);
+                    }
+                    MinimaxSearch 搜索 = new MinimaxSearch(Long.MAX_VALUE / 4, 4);
+                    long 开始 = System.nanoTime();
+                    MinimaxSearch.搜索结果 结果 = 搜索.寻找最佳下法(棋盘, 行棋方(棋盘));
+                    耗时 += System.nanoTime() - 开始;
+                    节点 += 结果.节点评估数;
+                }
+                报告.append(String.format(" %s: %d节点 %.2fus/节点", 模式 == 0 ? "棋型" : "NNUE", 节点, 耗时 / 1000.0 / 节点));
+            }
+            if (轮 == 1) {
+                System.out.println(报告);
+            }
+        }
+    }
+
+    private static int 割(int 总数, int 份数) {
+        return Math.max(1, 总数 / 份数);
+    }
+
+    private static GomokuBoard 还原(NNUETrainer.局面 局面) {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        int 边长 = GomokuBoard.BOARD_SIZE;
+        // 行棋方是白棋时双方子数相等，黑棋时黑棋已多走一手；按子数差推回颜色
+        int 己方颜色 = 局面.己方.length == 局面.对方.length ? GomokuBoard.BLACK : GomokuBoard.WHITE;
+        for (int 格子 : 局面.己方) {
+            棋盘.makeMove(格子 / 边长, 格子 % 边长, 己方颜色);
+        }
+        for (int 格子 : 局面.对方) {
+            棋盘.makeMove(格子 / 边长, 格子 % 边长, GomokuBoard.getOpponent(己方颜色));
+        }
+        return 棋盘;
+    }
+
+    private static int 行棋方(GomokuBoard 棋盘) {
+        return 棋盘.getMoveCount() % 2 == 0 ? GomokuBoard.BLACK : GomokuBoard.WHITE;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("用法: NNUEBenchmark <权重文件> [局数]");
+            return;
+        }
+        对比(NNUENetwork.加载(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 300);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.myfirstapp.ai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * NNUE风格的量化评估网络 - 只用整数运算，第一层由GomokuBoard随落子增量维护
+ *
+ * 结构：输入为每个格子上的己方棋子、对方棋子（2 × 225个稀疏特征），按黑白两个视角各算一份
+ * 450 → H 的int16累加器；评估时截断ReLU到0..127（int8），拼接[行棋方, 对方]共2H个激活，
+ * 与int8输出层做点积得到int32，再按输出比例换算为与PatternEvaluator同量纲的分数
+ * 落子只需把该子对应的一行权重加到两个视角的累加器上，悔棋减去，评估只有2H次乘加
+ *
+ * 权重文件格式（大端，DataOutputStream）：
+ *   int32  魔数 0x474E5545 ("GNUE")
+ *   int32  版本 1
+ *   int32  隐藏层宽度 H
+ *   int32  输出比例：输出层结果 × 输出比例 >> 16 即为评估分数
+ *   int16  第一层权重 [450][H]，特征 = 关系 * 225 + 格子，关系0为视角方棋子、1为另一方棋子
+ *   int16  第一层偏置 [H]
+ *   int8   输出层权重 [2H]，前H个作用于行棋方视角
+ *   int32  输出层偏置
+ * 加载时检查每个隐藏单元的偏置加所有格子上的最大权重不超过int16范围，保证累加器不会溢出
+ */
+public class NNUENetwork {
+
+    public static final int 格子数 = GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE;
+    public static final int 特征数 = 格子数 * 2;
+
+    /** 激活上限，对应浮点网络的1.0 */
+    public static final int 激活上限 = 127;
+    /** 输出层权重的量化倍数，对应浮点网络的1.0 */
+    public static final int 输出权重倍数 = 64;
+
+    private static final int 魔数 = 0x474E5545;
+    private static final int 版本 = 1;
+
+    private final int 隐藏层宽度;
+    private final short[] 第一层权重;  // [特征][H]
+    private final short[] 第一层偏置;
+    private final byte[] 输出层权重;   // [2H]
+    private final int 输出层偏置;
+    private final int 输出比例;
+
+    NNUENetwork(int 隐藏层宽度, short[] 第一层权重, short[] 第一层偏置,
+                byte[] 输出层权重, int 输出层偏置, int 输出比例) {
+        this.隐藏层宽度 = 隐藏层宽度;
+        this.第一层权重 = 第一层权重;
+        this.第一层偏置 = 第一层偏置;
+        this.输出层权重 = 输出层权重;
+        this.输出层偏置 = 输出层偏置;
+        this.输出比例 = 输出比例;
+    }
+
+    /**
+     * 从权重文件加载
+     */
+    public static NNUENetwork 加载(String 路径) throws IOException {
+        try (InputStream 输入 = new FileInputStream(路径)) {
+            return 加载(输入);
+        }
+    }
+
+    /**
+     * 从输入流加载，例如Android的assets
+     */
+    public static NNUENetwork 加载(InputStream 输入) throws IOException {
+        DataInputStream 数据 = new DataInputStream(new BufferedInputStream(输入));
+        if (数据.readInt() != 魔数) {
+            throw new IOException("不是NNUE权重文件");
+        }
+        int 文件版本 = 数据.readInt();
+        if (文件版本 != 版本) {
+            throw new IOException("不支持的权重文件版本: " + 文件版本);
+        }
+        int 宽度 = 数据.readInt();
+        if (宽度 <= 0 || 宽度 > 4096) {
+            throw new IOException("隐藏层宽度无效: " + 宽度);
+        }
+        int 比例 = 数据.readInt();
+
+        short[] 权重 = new short[特征数 * 宽度];
+        for (int i = 0; i < 权重.length; i++) {
+            权重[i] = 数据.readShort();
+        }
+        short[] 偏置 = new short[宽度];
+        for (int i = 0; i < 宽度; i++) {
+            偏置[i] = 数据.readShort();
+        }
+        byte[] 输出权重 = new byte[宽度 * 2];
+        数据.readFully(输出权重);
+        int 输出偏置 = 数据.readInt();
+
+        检查累加器范围(宽度, 权重, 偏置);
+        return new NNUENetwork(宽度, 权重, 偏置, 输出权重, 输出偏置, 比例);
+    }
+
+    /**
+     * 写出权重文件
+     */
+    public void 保存(String 路径) throws IOException {
+        try (OutputStream 输出 = new FileOutputStream(路径)) {
+            保存(输出);
+        }
+    }
+
+    public void 保存(OutputStream 输出) throws IOException {
+        DataOutputStream 数据 = new DataOutputStream(new BufferedOutputStream(输出));
+        数据.writeInt(魔数);
+        数据.writeInt(版本);
+        数据.writeInt(隐藏层宽度);
+        数据.writeInt(输出比例);
+        for (short 值 : 第一层权重) {
+            数据.writeShort(值);
+        }
+        for (short 值 : 第一层偏置) {
+            数据.writeShort(值);
+        }
+        数据.write(输出层权重);
+        数据.writeInt(输出层偏置);
+        数据.flush();
+    }
+
+    public int 获取隐藏层宽度() {
+        return 隐藏层宽度;
+    }
+
+    /**
+     * 某视角下一颗棋子对应的特征
+     * @param 视角 累加器所属的一方
+     * @param 棋子玩家 棋子的颜色
+     */
+    static int 特征(int 视角, int 棋子玩家, int 格子) {
+        return (棋子玩家 == 视角 ? 0 : 格子数) + 格子;
+    }
+
+    /**
+     * 累加器置为第一层偏置，即空棋盘的状态
+     */
+    void 重置累加器(short[] 累加器) {
+        System.arraycopy(第一层偏置, 0, 累加器, 0, 隐藏层宽度);
+    }
+
+    /**
+     * 加上（落子）或减去（悔棋）一个特征的权重
+     */
+    void 更新累加器(short[] 累加器, int 特征, boolean 加) {
+        int 起点 = 特征 * 隐藏层宽度;
+        if (加) {
+            for (int i = 0; i < 隐藏层宽度; i++) {
+                累加器[i] += 第一层权重[起点 + i];
+            }
+        } else {
+            for (int i = 0; i < 隐藏层宽度; i++) {
+                累加器[i] -= 第一层权重[起点 + i];
+            }
+        }
+    }
+
+    /**
+     * 由两个视角的累加器计算行棋方视角的分数
+     */
+    int 评估(short[] 行棋方累加器, short[] 对方累加器) {
+        int 和 = 输出层偏置;
+        for (int i = 0; i < 隐藏层宽度; i++) {
+            和 += 截断(行棋方累加器[i]) * 输出层权重[i];
+        }
+        for (int i = 0; i < 隐藏层宽度; i++) {
+            和 += 截断(对方累加器[i]) * 输出层权重[隐藏层宽度 + i];
+        }
+        return (int) (((long) 和 * 输出比例) >> 16);
+    }
+
+    private static int 截断(int 值) {
+        return 值 < 0 ? 0 : (值 > 激活上限 ? 激活上限 : 值);
+    }
+
+    /**
+     * 最坏情况下（每个格子都取绝对值最大的那种棋子）累加器也必须在int16范围内
+     */
+    private static void 检查累加器范围(int 宽度, short[] 权重, short[] 偏置) throws IOException {
+        for (int i = 0; i < 宽度; i++) {
+            long 上界 = Math.abs(偏置[i]);
+            for (int 格子 = 0; 格子 < 格子数; 格子++) {
+                上界 += Math.max(Math.abs(权重[格子 * 宽度 + i]), Math.abs(权重[(格子数 + 格子) * 宽度 + i]));
+            }
+            if (上界 > Short.MAX_VALUE) {
+                throw new IOException("权重过大，累加器可能溢出（隐藏单元 " + i + "）");
+            }
+        }
+    }
+}
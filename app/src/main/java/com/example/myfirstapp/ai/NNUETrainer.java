@@ -0,0 +1,334 @@
+package com.example.myfirstapp.ai;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * NNUE网络训练工具 - 用PatternEvaluator的标准评估蒸馏训练NNUENetwork并写出权重文件
+ *
+ * 训练局面来自带随机性的自对弈（每步在有序着法的前几名中随机选择），标签为行棋方视角的评估分数，
+ * 经 sigmoid(分数 / 分数尺度) 压缩后做均方误差回归；每轮对每个局面随机取8种对称变换之一
+ * 浮点网络与NNUENetwork结构相同，训练中把权重限制在量化后累加器不会溢出的范围内
+ *
+ * 用法: NNUETrainer <输出文件> [局数] [隐藏层宽度] [轮数]
+ */
+public class NNUETrainer {
+
+    /** 评估分数与网络输出（logit）之间的比例 */
+    public static final double 分数尺度 = 8000.0;
+
+    private static final int 格子数 = NNUENetwork.格子数;
+    private static final int 边长 = GomokuBoard.BOARD_SIZE;
+    private static final int 候选数 = 5;
+    private static final int 最长对局 = 80;
+
+    // 量化后第一层权重与偏置在±127以内：225个格子加偏置最多226 × 127，不超过int16
+    private static final double 第一层上限 = 1.0;
+    private static final double 输出层上限 = 127.0 / NNUENetwork.输出权重倍数;
+
+    private static final double 学习率 = 0.002;
+    private static final double 一阶衰减 = 0.9;
+    private static final double 二阶衰减 = 0.999;
+    private static final double 稳定项 = 1e-8;
+
+    /**
+     * 一个训练局面：行棋方与对方的棋子格子，以及行棋方视角的评估分数
+     */
+    static class 局面 {
+        final int[] 己方;
+        final int[] 对方;
+        final int 分数;
+
+        局面(int[] 己方, int[] 对方, int 分数) {
+            this.己方 = 己方;
+            this.对方 = 对方;
+            this.分数 = 分数;
+        }
+    }
+
+    private final int 宽度;
+    private final double[] 权重;       // [特征][H]
+    private final double[] 偏置;
+    private final double[] 输出权重;    // [2H]
+    private double 输出偏置;
+
+    // Adam状态
+    private final double[] 权重一阶, 权重二阶, 偏置一阶, 偏置二阶, 输出一阶, 输出二阶;
+    private double 输出偏置一阶, 输出偏置二阶;
+    private final int[] 权重更新步;     // 稀疏特征行的上次更新步数，用于补算偏差修正
+    private long 步数;
+
+    // 单个样本的前向/反向缓冲
+    private final double[] 行棋方累加, 对方累加, 行棋方梯度, 对方梯度;
+
+    public NNUETrainer(int 宽度, long 种子) {
+        this.宽度 = 宽度;
+        Random 随机 = new Random(种子);
+        权重 = new double[NNUENetwork.特征数 * 宽度];
+        for (int i = 0; i < 权重.length; i++) {
+            权重[i] = (随机.nextDouble() - 0.5) * 0.2;
+        }
+        偏置 = new double[宽度];
+        java.util.Arrays.fill(偏置, 0.5);
+        输出权重 = new double[宽度 * 2];
+        for (int i = 0; i < 输出权重.length; i++) {
+            输出权重[i] = (随机.nextDouble() - 0.5) * 0.2;
+        }
+        权重一阶 = new double[权重.length];
+        权重二阶 = new double[权重.length];
+        权重更新步 = new int[NNUENetwork.特征数];
+        偏置一阶 = new double[宽度];
+        偏置二阶 = new double[宽度];
+        输出一阶 = new double[宽度 * 2];
+        输出二阶 = new double[宽度 * 2];
+        行棋方累加 = new double[宽度];
+        对方累加 = new double[宽度];
+        行棋方梯度 = new double[宽度];
+        对方梯度 = new double[宽度];
+    }
+
+    /**
+     * 自对弈生成训练局面，不含已分胜负的局面
+     */
+    static List<局面> 生成局面(int 局数, long 种子) {
+        Random 随机 = new Random(种子);
+        List<局面> 结果 = new ArrayList<>();
+        for (int 局 = 0; 局 < 局数; 局++) {
+            GomokuBoard 棋盘 = new GomokuBoard();
+            棋盘.makeMove(边长 / 2 - 2 + 随机.nextInt(5), 边长 / 2 - 2 + 随机.nextInt(5), GomokuBoard.BLACK);
+            int 玩家 = GomokuBoard.WHITE;
+            int 步数上限 = 4 + 随机.nextInt(最长对局);
+            for (int 步 = 1; 步 < 步数上限; 步++) {
+                结果.add(记录局面(棋盘, 玩家));
+                List<GomokuEvaluator.Move> 着法 = GomokuEvaluator.generateOrderedMoves(棋盘, 玩家, 0);
+                if (着法.isEmpty()) {
+                    break;
+                }
+                GomokuEvaluator.Move 选择 = 着法.get(随机.nextInt(Math.min(候选数, 着法.size())));
+                棋盘.makeMove(选择.x, 选择.y, 玩家);
+                if (棋盘.isWinningMove(选择.x, 选择.y, 玩家)) {
+                    break;
+                }
+                玩家 = GomokuBoard.getOpponent(玩家);
+            }
+        }
+        return 结果;
+    }
+
+    static 局面 记录局面(GomokuBoard 棋盘, int 玩家) {
+        List<Integer> 己方 = new ArrayList<>();
+        List<Integer> 对方 = new ArrayList<>();
+        for (int x = 0; x < 边长; x++) {
+            for (int y = 0; y < 边长; y++) {
+                int 棋子 = 棋盘.getStone(x, y);
+                if (棋子 == 玩家) {
+                    己方.add(x * 边长 + y);
+                } else if (棋子 != GomokuBoard.EMPTY) {
+                    对方.add(x * 边长 + y);
+                }
+            }
+        }
+        return new 局面(转数组(己方), 转数组(对方), PatternEvaluator.评估局面(棋盘, 玩家));
+    }
+
+    /**
+     * 8种对称变换之一下的格子编号
+     */
+    static int 对称(int 格子, int 变换) {
+        int x = 格子 / 边长;
+        int y = 格子 % 边长;
+        if ((变换 & 1) != 0) {
+            x = 边长 - 1 - x;
+        }
+        if ((变换 & 2) != 0) {
+            y = 边长 - 1 - y;
+        }
+        if ((变换 & 4) != 0) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        return x * 边长 + y;
+    }
+
+    static double 压缩(double 分数) {
+        return 1.0 / (1.0 + Math.exp(-分数 / 分数尺度));
+    }
+
+    /**
+     * 训练若干轮，返回最后一轮的平均损失
+     */
+    public double 训练(List<局面> 数据, int 轮数, long 种子) {
+        Random 随机 = new Random(种子);
+        int[] 顺序 = new int[数据.size()];
+        for (int i = 0; i < 顺序.length; i++) {
+            顺序[i] = i;
+        }
+        int[] 己方 = new int[格子数];
+        int[] 对方 = new int[格子数];
+        double 平均损失 = 0;
+        for (int 轮 = 0; 轮 < 轮数; 轮++) {
+            for (int i = 顺序.length - 1; i > 0; i--) {
+                int j = 随机.nextInt(i + 1);
+                int t = 顺序[i];
+                顺序[i] = 顺序[j];
+                顺序[j] = t;
+            }
+            double 损失和 = 0;
+            for (int 序号 : 顺序) {
+                局面 样本 = 数据.get(序号);
+                int 变换 = 随机.nextInt(8);
+                for (int i = 0; i < 样本.己方.length; i++) {
+                    己方[i] = 对称(样本.己方[i], 变换);
+                }
+                for (int i = 0; i < 样本.对方.length; i++) {
+                    对方[i] = 对称(样本.对方[i], 变换);
+                }
+                损失和 += 训练样本(己方, 样本.己方.length, 对方, 样本.对方.length, 压缩(样本.分数));
+            }
+            平均损失 = 损失和 / 顺序.length;
+            System.out.printf("轮次 %d 平均损失 %.5f%n", 轮 + 1, 平均损失);
+        }
+        return 平均损失;
+    }
+
+    private double 训练样本(int[] 己方, int 己方数, int[] 对方, int 对方数, double 目标) {
+        // 前向：行棋方视角中己方棋子为关系0，对方视角相反
+        System.arraycopy(偏置, 0, 行棋方累加, 0, 宽度);
+        System.arraycopy(偏置, 0, 对方累加, 0, 宽度);
+        for (int i = 0; i < 己方数; i++) {
+            累加(行棋方累加, 己方[i]);
+            累加(对方累加, 格子数 + 己方[i]);
+        }
+        for (int i = 0; i < 对方数; i++) {
+            累加(行棋方累加, 格子数 + 对方[i]);
+            累加(对方累加, 对方[i]);
+        }
+        double 输出 = 输出偏置;
+        for (int i = 0; i < 宽度; i++) {
+            输出 += 截断(行棋方累加[i]) * 输出权重[i] + 截断(对方累加[i]) * 输出权重[宽度 + i];
+        }
+        double 预测 = 1.0 / (1.0 + Math.exp(-输出));
+        double 误差 = 预测 - 目标;
+        double 输出梯度 = 2 * 误差 * 预测 * (1 - 预测);
+
+        // 反向
+        步数++;
+        double 修正一 = 1 - Math.pow(一阶衰减, 步数);
+        double 修正二 = 1 - Math.pow(二阶衰减, 步数);
+        for (int i = 0; i < 宽度; i++) {
+            double 行棋方激活 = 截断(行棋方累加[i]);
+            double 对方激活 = 截断(对方累加[i]);
+            行棋方梯度[i] = 在线性区(行棋方累加[i]) ? 输出梯度 * 输出权重[i] : 0;
+            对方梯度[i] = 在线性区(对方累加[i]) ? 输出梯度 * 输出权重[宽度 + i] : 0;
+            输出权重[i] = Adam(输出权重[i], 输出梯度 * 行棋方激活, 输出一阶, 输出二阶, i, 修正一, 修正二, 输出层上限);
+            输出权重[宽度 + i] = Adam(输出权重[宽度 + i], 输出梯度 * 对方激活, 输出一阶, 输出二阶, 宽度 + i,
+                    修正一, 修正二, 输出层上限);
+            偏置[i] = Adam(偏置[i], 行棋方梯度[i] + 对方梯度[i], 偏置一阶, 偏置二阶, i, 修正一, 修正二, 第一层上限);
+        }
+        输出偏置一阶 = 一阶衰减 * 输出偏置一阶 + (1 - 一阶衰减) * 输出梯度;
+        输出偏置二阶 = 二阶衰减 * 输出偏置二阶 + (1 - 二阶衰减) * 输出梯度 * 输出梯度;
+        输出偏置 -= 学习率 * (输出偏置一阶 / 修正一) / (Math.sqrt(输出偏置二阶 / 修正二) + 稳定项);
+
+        for (int i = 0; i < 己方数; i++) {
+            更新特征(己方[i], 行棋方梯度, 修正一, 修正二);
+            更新特征(格子数 + 己方[i], 对方梯度, 修正一, 修正二);
+        }
+        for (int i = 0; i < 对方数; i++) {
+            更新特征(格子数 + 对方[i], 行棋方梯度, 修正一, 修正二);
+            更新特征(对方[i], 对方梯度, 修正一, 修正二);
+        }
+        return 误差 * 误差;
+    }
+
+    private void 累加(double[] 累加器, int 特征) {
+        int 起点 = 特征 * 宽度;
+        for (int i = 0; i < 宽度; i++) {
+            累加器[i] += 权重[起点 + i];
+        }
+    }
+
+    /**
+     * 稀疏Adam：只更新出现的特征行，缺席步数的动量衰减在下次出现时一次补上
+     */
+    private void 更新特征(int 特征, double[] 梯度, double 修正一, double 修正二) {
+        int 缺席 = (int) (步数 - 1 - 权重更新步[特征]);
+        double 一阶补 = 缺席 > 0 ? Math.pow(一阶衰减, 缺席) : 1;
+        double 二阶补 = 缺席 > 0 ? Math.pow(二阶衰减, 缺席) : 1;
+        权重更新步[特征] = (int) 步数;
+        int 起点 = 特征 * 宽度;
+        for (int i = 0; i < 宽度; i++) {
+            权重一阶[起点 + i] *= 一阶补;
+            权重二阶[起点 + i] *= 二阶补;
+            权重[起点 + i] = Adam(权重[起点 + i], 梯度[i], 权重一阶, 权重二阶, 起点 + i, 修正一, 修正二, 第一层上限);
+        }
+    }
+
+    private static double Adam(double 值, double 梯度, double[] 一阶, double[] 二阶, int i,
+                               double 修正一, double 修正二, double 上限) {
+        一阶[i] = 一阶衰减 * 一阶[i] + (1 - 一阶衰减) * 梯度;
+        二阶[i] = 二阶衰减 * 二阶[i] + (1 - 二阶衰减) * 梯度 * 梯度;
+        值 -= 学习率 * (一阶[i] / 修正一) / (Math.sqrt(二阶[i] / 修正二) + 稳定项);
+        return Math.max(-上限, Math.min(上限, 值));
+    }
+
+    private static double 截断(double 值) {
+        return 值 < 0 ? 0 : (值 > 1 ? 1 : 值);
+    }
+
+    private static boolean 在线性区(double 值) {
+        return 值 > 0 && 值 < 1;
+    }
+
+    /**
+     * 量化为整数网络：激活1.0对应127，输出层权重1.0对应64
+     */
+    public NNUENetwork 量化() {
+        int 激活 = NNUENetwork.激活上限;
+        int 输出倍数 = NNUENetwork.输出权重倍数;
+        short[] 量化权重 = new short[权重.length];
+        for (int i = 0; i < 权重.length; i++) {
+            量化权重[i] = (short) Math.round(权重[i] * 激活);
+        }
+        short[] 量化偏置 = new short[宽度];
+        for (int i = 0; i < 宽度; i++) {
+            量化偏置[i] = (short) Math.round(偏置[i] * 激活);
+        }
+        byte[] 量化输出 = new byte[宽度 * 2];
+        for (int i = 0; i < 量化输出.length; i++) {
+            量化输出[i] = (byte) Math.max(-127, Math.min(127, Math.round(输出权重[i] * 输出倍数)));
+        }
+        int 量化输出偏置 = (int) Math.round(输出偏置 * 激活 * 输出倍数);
+        int 输出比例 = (int) Math.round(分数尺度 * 65536 / (激活 * 输出倍数));
+        return new NNUENetwork(宽度, 量化权重, 量化偏置, 量化输出, 量化输出偏置, 输出比例);
+    }
+
+    private static int[] 转数组(List<Integer> 列表) {
+        int[] 数组 = new int[列表.size()];
+        for (int i = 0; i < 数组.length; i++) {
+            数组[i] = 列表.get(i);
+        }
+        return 数组;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("用法: NNUETrainer <输出文件> [局数] [隐藏层宽度] [轮数]");
+            return;
+        }
+        int 局数 = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        int 宽度 = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int 轮数 = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+        long 开始 = System.currentTimeMillis();
+        List<局面> 数据 = 生成局面(局数, 2024);
+        System.out.println("训练局面: " + 数据.size() + "，生成耗时 " + (System.currentTimeMillis() - 开始) + "ms");
+
+        NNUETrainer 训练器 = new NNUETrainer(宽度, 7);
+        训练器.训练(数据, 轮数, 11);
+        训练器.量化().保存(args[0]);
+        System.out.println("已写出 " + args[0] + "，总耗时 " + (System.currentTimeMillis() - 开始) + "ms");
+    }
+}
@@ -28,6 +28,9 @@ public class PatternEvaluator {
     // 防御权重倍数 - 大幅加强防御
     public static final double 防御权重 = 1.5;      // 防御分数乘以1.5倍
 
+    // 网络评估的分数限制在此范围内，连五、活四局面的分数总在网络分数之外
+    static final int 网络分数上限 = 活四 - 1;
+
     /**
      * 主评估函数 - 支持标准和自适应模式
      */
@@ -36,11 +39,19 @@ public class PatternEvaluator {
     }
 
     /**
-     * 评估局面 - 可选择评估模式
+     * 评估局面 - 可选择评估模式；棋盘挂载了NNUE网络时（GomokuBoard.setNetwork）改用网络评估
+     * 网络表达不了连五、活四的分量，这类局面先按增量棋型计数给出决定性分数，只有其余局面交给网络
      * @param 使用自适应 true=自适应模式, false=标准模式
      */
     public static int 评估局面(GomokuBoard 棋盘, int 当前玩家, boolean 使用自适应) {
-        if (使用自适应) {
+        if (棋盘.getNetwork() != null) {
+            int 决定性分数 = 决定性局面分数(棋盘, 当前玩家);
+            if (决定性分数 != 0) {
+                return 决定性分数;
+            }
+            // 使用神经网络评估，累加器已随落子增量更新
+            return Math.max(-网络分数上限, Math.min(网络分数上限, 棋盘.evaluateNetwork(当前玩家)));
+        } else if (使用自适应) {
             // 使用自适应评估系统
             return AdaptiveEvaluator.自适应评估局面(棋盘, 当前玩家);
         } else {
@@ -50,189 +61,99 @@ public class PatternEvaluator {
     }
 
     /**
-     * 传统评估算法 - 加强防御逻辑
+     * 有连五或活四的局面：连五为±连五，活四为±活四，其余返回0
+     * 双方都有活四时对方优先，与传统评估中防御分数的权重更高一致
      */
-    private static int 传统评估局面(GomokuBoard 棋盘, int 当前玩家) {
-        int 总分 = 0;
+    private static int 决定性局面分数(GomokuBoard 棋盘, int 当前玩家) {
         int 对手 = GomokuBoard.getOpponent(当前玩家);
-
-        // 计算攻击分数
-        int 攻击分 = 计算棋型分数(棋盘, 当前玩家);
-
-        // 计算防御分数（权重更高）
-        int 防御分 = (int)(计算棋型分数(棋盘, 对手) * 防御权重);
-
-        // 检查关键威胁
-        int 威胁分 = 检查关键威胁(棋盘, 当前玩家, 对手);
-
-        总分 = 攻击分 - 防御分 + 威胁分;
-
-        return 总分;
-    }
-
-    /**
-     * 计算所有棋型的分数
-     */
-    private static int 计算棋型分数(GomokuBoard 棋盘, int 玩家) {
-        int 分数 = 0;
-        int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                for (int[] 方向向量 : 方向) {
-                    分数 += 评估位置棋型(棋盘, x, y, 方向向量[0], 方向向量[1], 玩家);
-                }
-            }
-        }
-
-        // 检查双三、四三等组合
-        分数 += 检查战术组合(棋盘, 玩家);
-
-        return 分数;
-    }
-
-    /**
-     * 评估特定位置和方向的棋型
-     */
-    private static int 评估位置棋型(GomokuBoard 棋盘, int 起始x, int 起始y,
-                                  int dx, int dy, int 玩家) {
-        // 检查连五
-        if (检查连五(棋盘, 起始x, 起始y, dx, dy, 玩家)) {
+        if (棋盘.getPatternCount(当前玩家, LinePatternTable.类_连五) > 0) {
             return 连五;
         }
-
-        // 检查各种四子棋型
-        int 四子分数 = 检查四子棋型(棋盘, 起始x, 起始y, dx, dy, 玩家);
-        if (四子分数 > 0) return 四子分数;
-
-        // 检查各种三子棋型
-        int 三子分数 = 检查三子棋型(棋盘, 起始x, 起始y, dx, dy, 玩家);
-        if (三子分数 > 0) return 三子分数;
-
-        // 检查各种二子棋型
-        int 二子分数 = 检查二子棋型(棋盘, 起始x, 起始y, dx, dy, 玩家);
-        if (二子分数 > 0) return 二子分数;
-
-        // 检查单子
-        return 检查单子棋型(棋盘, 起始x, 起始y, dx, dy, 玩家);
-    }
-
-    /**
-     * 检查连五棋型
-     */
-    private static boolean 检查连五(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        if (!棋盘.isInBounds(x + dx * 4, y + dy * 4)) return false;
-
-        for (int i = 0; i < 5; i++) {
-            if (棋盘.getStone(x + dx * i, y + dy * i) != 玩家) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * 检查四子相关棋型（活四、冲四、死四）
-     */
-    private static int 检查四子棋型(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 活四：_XXXX_
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家, 玩家, 玩家, 0})) {
-            return 活四;
+        if (棋盘.getPatternCount(对手, LinePatternTable.类_连五) > 0) {
+            return -连五;
         }
-
-        // 冲四：XXXX_、_XXXX、EXXXX_、_XXXXE
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 玩家, 玩家, 玩家, 0}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家, 玩家, 玩家})) {
-            return 冲四;
+        if (棋盘.getPatternCount(对手, LinePatternTable.类_活四) > 0) {
+            return -活四;
         }
-
-        // 跳冲四：XXX_X、X_XXX
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 玩家, 玩家, 0, 玩家}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 0, 玩家, 玩家, 玩家})) {
-            return 冲四;
+        if (棋盘.getPatternCount(当前玩家, LinePatternTable.类_活四) > 0) {
+            return 活四;
         }
-
         return 0;
     }
 
     /**
-     * 检查三子相关棋型（活三、眠三、死三）
+     * 传统评估算法 - 加强防御逻辑
      */
-    private static int 检查三子棋型(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 活三：_XXX_（两端都空）
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家, 玩家, 0})) {
-            return 活三;
-        }
-
-        // 跳活三：_XX_X_、_X_XX_
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家, 0, 玩家, 0}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 0, 玩家, 玩家, 0})) {
-            return 活三;
-        }
-
-        // 眠三：XXX_、_XXX（一端被堵）
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 玩家, 玩家, 0}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家, 玩家})) {
-            return 眠三;
-        }
-
-        // 跳眠三
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 玩家, 0, 玩家}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 0, 玩家, 玩家})) {
-            return 眠三;
-        }
-
-        return 0;
+    private static int 传统评估局面(GomokuBoard 棋盘, int 当前玩家) {
+        int 对手 = GomokuBoard.getOpponent(当前玩家);
+        return 标准评估分数(棋盘.getPatternScore(当前玩家),
+                棋盘.getPatternCount(当前玩家, LinePatternTable.类_活四),
+                棋盘.getPatternCount(当前玩家, LinePatternTable.类_冲四),
+                棋盘.getPatternCount(当前玩家, LinePatternTable.类_活三),
+                棋盘.getPatternScore(对手),
+                棋盘.getPatternCount(对手, LinePatternTable.类_活四),
+                棋盘.getPatternCount(对手, LinePatternTable.类_冲四),
+                棋盘.getPatternCount(对手, LinePatternTable.类_活三));
     }
 
     /**
-     * 检查二子棋型
+     * 由双方的棋型总分和棋型数量计算传统评估分数，自适应评估读取一次棋型状态后复用
      */
-    private static int 检查二子棋型(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        // 活二：_XX_
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家, 0})) {
-            return 活二;
-        }
+    static int 标准评估分数(int 己方棋型分, int 己方活四, int 己方冲四, int 己方活三,
+                       int 对手棋型分, int 对手活四, int 对手冲四, int 对手活三) {
+        // 计算攻击分数
+        int 攻击分 = 己方棋型分 + 战术组合分数(己方活四, 己方冲四, 己方活三);
 
-        // 跳活二：_X_X_
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 0, 玩家, 0})) {
-            return 活二;
-        }
+        // 计算防御分数（权重更高）
+        int 防御分 = (int)((对手棋型分 + 战术组合分数(对手活四, 对手冲四, 对手活三)) * 防御权重);
 
-        // 眠二：XX_、_XX
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 玩家, 0}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 玩家})) {
-            return 眠二;
-        }
+        // 检查关键威胁
+        int 威胁分 = 关键威胁分数(对手活四, 对手冲四, 对手活三);
 
-        return 0;
+        return 攻击分 - 防御分 + 威胁分;
     }
 
     /**
-     * 检查单子棋型
+     * 分析一整条线上某玩家的棋型，每个起点的棋型由LinePatternTable一次查表得到
+     * 由GomokuBoard在落子/悔棋触及该线后调用，实现增量评估
+     * @param 己方 该玩家在此线上的棋子掩码
+     * @param 空位 此线上的空位掩码
+     * @param 有效位 此线落在棋盘内的位
+     * @param 计数 输出各类棋型数量（下标为LinePatternTable的类别）
+     * @return 该线所有起点的棋型分数之和
      */
-    private static int 检查单子棋型(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家, 0})) {
-            return 活一;
+    static int 分析线棋型(int 己方, int 空位, int 有效位, int[] 计数) {
+        for (int i = 0; i < LinePatternTable.类别数; i++) {
+            计数[i] = 0;
         }
-        if (检查模式(棋盘, x, y, dx, dy, new int[]{玩家, 0}) ||
-            检查模式(棋盘, x, y, dx, dy, new int[]{0, 玩家})) {
-            return 眠一;
+        if (己方 == 0) {
+            return 0;
         }
-        return 0;
+
+        int 分数 = 0;
+        int 剩余 = 有效位;
+        while (剩余 != 0) {
+            int 位 = Integer.numberOfTrailingZeros(剩余);
+            剩余 &= 剩余 - 1;
+
+            // 所有棋型窗口不超过6格，窗口内无己方棋子时不可能匹配
+            if (((己方 >>> 位) & 0x3F) == 0) {
+                continue;
+            }
+
+            int 类别 = LinePatternTable.类别(己方 >>> 位, 空位 >>> 位);
+            分数 += LinePatternTable.类别分数(类别);
+            计数[类别]++;
+        }
+        return 分数;
     }
 
     /**
-     * 检查战术组合（双三、四三等）
+     * 按棋型数量计算组合加分，着法排序据此估算一手棋带来的组合变化
      */
-    private static int 检查战术组合(GomokuBoard 棋盘, int 玩家) {
+    static int 战术组合分数(int 活四数, int 冲四数, int 活三数) {
         int 组合分数 = 0;
 
-        // 统计各种威胁数量
-        int 活四数 = 统计棋型数量(棋盘, 玩家, 活四);
-        int 冲四数 = 统计棋型数量(棋盘, 玩家, 冲四);
-        int 活三数 = 统计棋型数量(棋盘, 玩家, 活三);
-
         // 双活三必胜
         if (活三数 >= 2) {
             组合分数 += 双三胜;
@@ -252,18 +173,18 @@ public class PatternEvaluator {
     }
 
     /**
-     * 检查关键威胁 - 强制防守逻辑
+     * 按对手棋型数量计算的强制防守扣分
      */
-    private static int 检查关键威胁(GomokuBoard 棋盘, int 当前玩家, int 对手) {
+    static int 关键威胁分数(int 对手活四数, int 对手冲四数, int 对手活三数) {
         int 威胁分 = 0;
 
         // 检查对手是否有活三威胁
-        if (检查玩家活三威胁(棋盘, 对手)) {
+        if (对手活三数 > 0) {
             威胁分 -= 活三 * 3; // 强制防守活三
         }
 
         // 检查对手是否有冲四威胁
-        if (检查玩家冲四威胁(棋盘, 对手)) {
+        if (对手冲四数 > 0 || 对手活四数 > 0) {
             威胁分 -= 冲四 * 2; // 强制防守冲四
         }
 
@@ -275,66 +196,21 @@ public class PatternEvaluator {
      */
     public static boolean 检查玩家活三威胁(GomokuBoard 棋盘, int 玩家) {
         // 检查是否存在活三棋型
-        return 统计棋型数量(棋盘, 玩家, 活三) > 0;
+        return 棋盘.getPatternCount(玩家, LinePatternTable.类_活三) > 0;
     }
 
     /**
      * 检查玩家是否有冲四威胁
      */
     public static boolean 检查玩家冲四威胁(GomokuBoard 棋盘, int 玩家) {
-        return 统计棋型数量(棋盘, 玩家, 冲四) > 0 || 统计棋型数量(棋盘, 玩家, 活四) > 0;
+        return 棋盘.getPatternCount(玩家, LinePatternTable.类_冲四) > 0 || 棋盘.getPatternCount(玩家, LinePatternTable.类_活四) > 0;
     }
 
     /**
      * 检查玩家是否有活四威胁 (专门检测活四)
      */
     public static boolean 检查玩家活四威胁(GomokuBoard 棋盘, int 玩家) {
-        return 统计棋型数量(棋盘, 玩家, 活四) > 0;
-    }
-
-    /**
-     * 统计特定棋型的数量
-     */
-    private static int 统计棋型数量(GomokuBoard 棋盘, int 玩家, int 目标分数) {
-        int 数量 = 0;
-        int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
-
-        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
-            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
-                for (int[] 方向向量 : 方向) {
-                    int 分数 = 评估位置棋型(棋盘, x, y, 方向向量[0], 方向向量[1], 玩家);
-                    if (分数 == 目标分数) {
-                        数量++;
-                    }
-                }
-            }
-        }
-        return 数量;
-    }
-
-    /**
-     * 检查棋型模式匹配
-     */
-    private static boolean 检查模式(GomokuBoard 棋盘, int x, int y, int dx, int dy, int[] 模式) {
-        // 检查模式是否超出边界
-        if (!棋盘.isInBounds(x + dx * (模式.length - 1), y + dy * (模式.length - 1))) {
-            return false;
-        }
-
-        // 检查模式匹配
-        for (int i = 0; i < 模式.length; i++) {
-            int 期望值 = 模式[i];
-            int 实际值 = 棋盘.getStone(x + dx * i, y + dy * i);
-
-            if (期望值 == 0) {
-                // 期望为空位
-                if (实际值 != GomokuBoard.EMPTY) return false;
-            } else {
-                // 期望为特定玩家的棋子
-                if (实际值 != 期望值) return false;
-            }
-        }
-        return true;
+        return 棋盘.getPatternCount(玩家, LinePatternTable.类_活四) > 0;
     }
 
     /**
@@ -356,7 +232,7 @@ public class PatternEvaluator {
 
         // 检查是否形成活四或双活三等威胁
         boolean 威胁 = 检查玩家冲四威胁(棋盘, 玩家) ||
-                     统计棋型数量(棋盘, 玩家, 活三) >= 2;
+                     棋盘.getPatternCount(玩家, LinePatternTable.类_活三) >= 2;
 
         棋盘.undoMove(x, y);
         return 威胁;
@@ -0,0 +1,459 @@
+package com.example.myfirstapp.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 深度优先证明数搜索（df-pn）- 在威胁空间内证明必胜或必败
+ *
+ * 着法与ThreatSpaceSolver一样来自ThreatMoveGenerator：攻击方（或节点）只走冲四、活三，
+ * 防守方（与节点）只考虑封堵成五点、破坏活三窗口以及反冲四。不设固定深度，
+ * 由证明数/反证数引导到最容易得出结论的分支，能证明迭代加深够不到的长序列。
+ *
+ * 证明数、反证数存入有界的置换表（每组两项，优先替换旧求解或工作量小的项），
+ * 节点数或时间超出预算时中止并返回未证明；路径超过最大层数按反证处理
+ *
+ * 可单独使用，GomokuAI在创造威胁与主搜索之前调用
+ */
+public class ProofNumberSolver {
+
+    public enum 结论 { 必胜, 必败, 未证明 }
+
+    private static final int 无穷 = 1 << 28;
+    private static final int 最大层数 = 64;
+    private static final int 格子数 = ThreatMoveGenerator.格子数;
+    static final int 默认节点上限 = 200000;
+    private static final long 默认时间限制 = 100;   // 毫秒
+    private static final int 检查间隔 = 1023;       // 每1024个节点检查一次时间
+    private static final int 默认表大小 = 1 << 17;
+
+    // 生成子节点时的终局标记
+    private static final int 已证明 = -1;
+    private static final int 已反证 = -2;
+
+    // 按攻击方颜色与节点类型区分同一局面：[攻击方][0=或节点, 1=与节点]
+    private static final long[][] 盐 = new long[3][2];
+
+    static {
+        java.util.Random 随机 = new java.util.Random(20240715);
+        for (int 玩家 = GomokuBoard.BLACK; 玩家 <= GomokuBoard.WHITE; 玩家++) {
+            盐[玩家][0] = 随机.nextLong();
+            盐[玩家][1] = 随机.nextLong();
+        }
+    }
+
+    // 置换表：同一下标的各数组组成一项，工作量为0表示空项
+    private final int 组掩码;
+    private final long[] 表键;
+    private final int[] 表证明数;
+    private final int[] 表反证数;
+    private final int[] 表工作量;
+    private final short[] 表着法;   // 格子编号+1，0表示无
+    private final byte[] 表代;
+    private byte 当前代;
+
+    private int 节点上限 = 默认节点上限;
+    private long 时间限制 = 默认时间限制;
+    private volatile boolean 已取消;  // 取消搜索()设置，与节点、时间预算一样使证明中止
+
+    // 单次求解的状态
+    private final ThreatMoveGenerator 生成器 = new ThreatMoveGenerator();
+    private GomokuBoard 棋盘;
+    private int 攻击方;
+    private int 防守方;
+    private int 节点数;
+    private long 截止时间;
+    private boolean 中止;
+    private int 终局着法;
+
+    private final int[][] 子格缓冲 = new int[最大层数][格子数];
+    private final long[][] 子键缓冲 = new long[最大层数][格子数];
+
+    /**
+     * 证明结果：结论与证明序列（从轮到走棋的一方开始，双方交替；必胜时第一手即推荐着法）
+     */
+    public static class 证明结果 {
+        public final 结论 结论;
+        public final GomokuEvaluator.Move 着法;
+        public final List<GomokuEvaluator.Move> 序列;
+        public final int 节点数;
+        public final long 耗时微秒;
+
+        证明结果(结论 结论, List<GomokuEvaluator.Move> 序列, int 节点数, long 耗时微秒) {
+            this.结论 = 结论;
+            this.着法 = 结论 == ProofNumberSolver.结论.必胜 && !序列.isEmpty() ? 序列.get(0) : null;
+            this.序列 = Collections.unmodifiableList(序列);
+            this.节点数 = 节点数;
+            this.耗时微秒 = 耗时微秒;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder 文本 = new StringBuilder();
+            文本.append(结论).append(" 序列:");
+            for (GomokuEvaluator.Move 着法 : 序列) {
+                文本.append(String.format(" (%d,%d)", 着法.x, 着法.y));
+            }
+            文本.append(String.format(", 节点: %d, 耗时: %dμs", 节点数, 耗时微秒));
+            return 文本.toString();
+        }
+    }
+
+    public ProofNumberSolver() {
+        this(默认表大小);
+    }
+
+    /**
+     * @param 表大小 置换表项数，向上取整为2的幂
+     */
+    public ProofNumberSolver(int 表大小) {
+        int 实际大小 = 2;
+        while (实际大小 < 表大小) {
+            实际大小 <<= 1;
+        }
+        组掩码 = 实际大小 / 2 - 1;
+        表键 = new long[实际大小];
+        表证明数 = new int[实际大小];
+        表反证数 = new int[实际大小];
+        表工作量 = new int[实际大小];
+        表着法 = new short[实际大小];
+        表代 = new byte[实际大小];
+    }
+
+    /**
+     * 先证明轮到走棋的一方必胜，未证明时再看对手已有的威胁能否证明其必败
+     */
+    public 证明结果 求解(GomokuBoard 棋盘, int 玩家) {
+        证明结果 胜 = 证明必胜(棋盘, 玩家);
+        if (胜.结论 == 结论.必胜) {
+            return 胜;
+        }
+        证明结果 败 = 证明必败(棋盘, 玩家);
+        return new 证明结果(败.结论, new ArrayList<>(败.序列), 胜.节点数 + 败.节点数, 胜.耗时微秒 + 败.耗时微秒);
+    }
+
+    /**
+     * 轮到攻击方走棋，证明其能以连续冲四、活三取胜
+     */
+    public 证明结果 证明必胜(GomokuBoard 棋盘, int 攻击方) {
+        return 证明(棋盘, 攻击方, true);
+    }
+
+    /**
+     * 轮到玩家走棋，证明对手已有的威胁无法化解
+     * 对手盘面上没有冲四或活三时直接返回未证明
+     */
+    public 证明结果 证明必败(GomokuBoard 棋盘, int 玩家) {
+        return 证明(棋盘, GomokuBoard.getOpponent(玩家), false);
+    }
+
+    private 证明结果 证明(GomokuBoard 棋盘, int 攻击方, boolean 攻击方先走) {
+        long 开始 = System.nanoTime();
+        this.棋盘 = 棋盘;
+        this.生成器.设置棋盘(棋盘);
+        this.攻击方 = 攻击方;
+        this.防守方 = GomokuBoard.getOpponent(攻击方);
+        this.节点数 = 0;
+        this.截止时间 = 时间限制 > 0 ? 开始 + 时间限制 * 1_000_000L : Long.MAX_VALUE;
+        this.中止 = false;
+        当前代++;
+
+        结论 结果 = 结论.未证明;
+        List<GomokuEvaluator.Move> 序列 = new ArrayList<>();
+
+        // 防守方先走且自己能成五时谈不上必败
+        if (攻击方先走 || 生成器.查找任一成五点(防守方) < 0) {
+            long 根键 = 棋盘.getZobristHash() ^ 盐[攻击方][攻击方先走 ? 0 : 1];
+            搜索(0, 根键, 攻击方先走, 无穷, 无穷);
+
+            int 槽 = 查找(根键);
+            if (!中止 && 槽 >= 0 && 表证明数[槽] == 0) {
+                结果 = 攻击方先走 ? 结论.必胜 : 结论.必败;
+                提取序列(根键, 攻击方先走, 序列);
+            }
+        }
+
+        this.棋盘 = null;
+        this.生成器.设置棋盘(null);
+        return new 证明结果(结果, 序列, 节点数, (System.nanoTime() - 开始) / 1000);
+    }
+
+    /**
+     * df-pn主过程：φ/δ表示法，或节点 φ=证明数、δ=反证数，与节点相反
+     * 不断展开δ最小的子节点，直到本节点的φ或δ达到阈值
+     */
+    private void 搜索(int 层, long 键, boolean 或节点, int 阈φ, int 阈δ) {
+        int 起始节点 = 节点数;
+        if (++节点数 > 节点上限 || 已取消 || ((节点数 & 检查间隔) == 0 && System.nanoTime() > 截止时间)) {
+            中止 = true;
+        }
+        if (中止) {
+            return;
+        }
+
+        int[] 子格 = 子格缓冲[层];
+        int 子数 = 生成子节点(或节点, 子格);
+        if (子数 < 0 || 层 + 1 >= 最大层数) {
+            boolean 证明 = 子数 == 已证明;
+            存储(键, 证明 ? 0 : 无穷, 证明 ? 无穷 : 0, 证明 ? 终局着法 : -1, 1);
+            return;
+        }
+
+        int 走子方 = 或节点 ? 攻击方 : 防守方;
+        long 子基础键 = 棋盘.getZobristHash() ^ 盐[攻击方][或节点 ? 1 : 0];
+        long[] 子键 = 子键缓冲[层];
+        for (int i = 0; i < 子数; i++) {
+            int 格子 = 子格[i];
+            子键[i] = 子基础键 ^ GomokuBoard.zobristKey(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE, 走子方);
+        }
+
+        while (true) {
+            // 汇总子节点：φ = 子节点δ的最小值，δ = 子节点φ之和
+            int 最小δ = 无穷;
+            int 次小δ = 无穷;
+            int 最佳 = 0;
+            int 最佳φ = 1;
+            int φ和 = 0;
+            for (int i = 0; i < 子数; i++) {
+                int 槽 = 查找(子键[i]);
+                int 证明数 = 槽 < 0 ? 1 : 表证明数[槽];
+                int 反证数 = 槽 < 0 ? 1 : 表反证数[槽];
+                int 子φ = 或节点 ? 反证数 : 证明数;
+                int 子δ = 或节点 ? 证明数 : 反证数;
+                if (子δ < 最小δ) {
+                    次小δ = 最小δ;
+                    最小δ = 子δ;
+                    最佳 = i;
+                    最佳φ = 子φ;
+                } else if (子δ < 次小δ) {
+                    次小δ = 子δ;
+                }
+                φ和 = 饱和加(φ和, 子φ);
+            }
+            int φ = 最小δ;
+            int δ = φ和;
+
+            if (φ >= 阈φ || δ >= 阈δ || 中止) {
+                if (!或节点 && δ == 0) {
+                    最佳 = 最费力子节点(子键, 子数);
+                }
+                存储(键, 或节点 ? φ : δ, 或节点 ? δ : φ, 子格[最佳], 节点数 - 起始节点);
+                return;
+            }
+
+            // 子节点阈值，次小δ放宽1/4（1+ε技巧）减少在兄弟节点间来回切换
+            int 子阈φ = 阈δ >= 无穷 ? 无穷 : Math.min(无穷, 阈δ - δ + 最佳φ);
+            int 子阈δ = Math.min(阈φ, 次小δ >= 无穷 ? 无穷 : 次小δ + 次小δ / 4 + 1);
+
+            int 格子 = 子格[最佳];
+            int x = 格子 / GomokuBoard.BOARD_SIZE;
+            int y = 格子 % GomokuBoard.BOARD_SIZE;
+            棋盘.makeMove(x, y, 走子方);
+            搜索(层 + 1, 子键[最佳], !或节点, 子阈φ, 子阈δ);
+            棋盘.undoMove(x, y);
+        }
+    }
+
+    /**
+     * 生成子节点（着法格子）
+     * @return 子节点数；局面已分胜负时返回已证明/已反证，直接成五的格子记入终局着法
+     */
+    private int 生成子节点(boolean 或节点, int[] 输出) {
+        终局着法 = -1;
+        int 数量;
+        if (或节点) {
+            int 成五 = 生成器.查找任一成五点(攻击方);
+            if (成五 >= 0) {
+                终局着法 = 成五;
+                return 已证明;
+            }
+            // 防守方有成五点时只能先堵；堵完是否仍有威胁由下一层的与节点判断
+            int 防守五点 = 生成器.查找成五点(防守方);
+            if (防守五点 == -2) {
+                return 已反证;
+            }
+            if (防守五点 >= 0) {
+                if (生成器.是否禁手(攻击方, 防守五点)) {
+                    return 已反证;
+                }
+                输出[0] = 防守五点;
+                return 1;
+            }
+            // 防守方已有活三时攻击方的活三来不及，只能冲四
+            数量 = 生成器.生成攻击着法(输出, 攻击方, !生成器.存在活三(防守方));
+            数量 = 去除禁手(输出, 数量, 攻击方);
+            return 数量 == 0 ? 已反证 : 数量;
+        }
+
+        int 攻击五点 = 生成器.查找成五点(攻击方);
+        if (攻击五点 == -2) {
+            return 已证明;
+        }
+        if (攻击五点 >= 0) {
+            if (生成器.是否禁手(防守方, 攻击五点)) {
+                return 已证明;
+            }
+            输出[0] = 攻击五点;
+            return 1;
+        }
+        数量 = 生成器.生成活三防守点(输出, 攻击方, -1, -1);
+        if (数量 == 0) {
+            return 已反证; // 攻击方既无冲四也无活三，不构成威胁
+        }
+        数量 = 生成器.追加成四着法(输出, 数量, 防守方);
+        数量 = 去除禁手(输出, 数量, 防守方);
+        return 数量 == 0 ? 已证明 : 数量;
+    }
+
+    private int 去除禁手(int[] 着法, int 数量, int 玩家) {
+        if (玩家 != GomokuBoard.BLACK) {
+            return 数量;
+        }
+        int 保留 = 0;
+        for (int i = 0; i < 数量; i++) {
+            if (!生成器.是否禁手(玩家, 着法[i])) {
+                着法[保留++] = 着法[i];
+            }
+        }
+        return 保留;
+    }
+
+    /**
+     * 已证明的与节点：选工作量最大的应手作为序列中防守方的一手，即抵抗最久的防守
+     */
+    private int 最费力子节点(long[] 子键, int 子数) {
+        int 最佳 = 0;
+        int 最大工作量 = -1;
+        for (int i = 0; i < 子数; i++) {
+            int 槽 = 查找(子键[i]);
+            int 工作量 = 槽 < 0 ? 0 : 表工作量[槽];
+            if (工作量 > 最大工作量) {
+                最大工作量 = 工作量;
+                最佳 = i;
+            }
+        }
+        return 最佳;
+    }
+
+    /**
+     * 沿置换表中记录的着法走出证明序列，走到表中缺项或终局为止
+     */
+    private void 提取序列(long 根键, boolean 或节点, List<GomokuEvaluator.Move> 序列) {
+        int[] 已走 = new int[最大层数];
+        int 步数 = 0;
+        long 键 = 根键;
+        while (步数 < 最大层数) {
+            int 槽 = 查找(键);
+            if (槽 < 0 || 表证明数[槽] != 0 || 表着法[槽] == 0) {
+                break;
+            }
+            int 格子 = 表着法[槽] - 1;
+            int x = 格子 / GomokuBoard.BOARD_SIZE;
+            int y = 格子 % GomokuBoard.BOARD_SIZE;
+            if (!棋盘.makeMove(x, y, 或节点 ? 攻击方 : 防守方)) {
+                break;
+            }
+            已走[步数++] = 格子;
+            序列.add(new GomokuEvaluator.Move(x, y, 0));
+            或节点 = !或节点;
+            键 = 棋盘.getZobristHash() ^ 盐[攻击方][或节点 ? 0 : 1];
+        }
+        while (步数 > 0) {
+            int 格子 = 已走[--步数];
+            棋盘.undoMove(格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE);
+        }
+    }
+
+    private static int 饱和加(int a, int b) {
+        if (a >= 无穷 || b >= 无穷) {
+            return 无穷;
+        }
+        return Math.min(无穷 - 1, a + b);
+    }
+
+    // ---- 置换表 ----
+
+    private int 组(long 键) {
+        return ((int) (键 ^ (键 >>> 32)) & 组掩码) * 2;
+    }
+
+    private int 查找(long 键) {
+        int 基 = 组(键);
+        for (int i = 基; i < 基 + 2; i++) {
+            if (表工作量[i] != 0 && 表键[i] == 键) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 同一局面原地更新；否则替换空项、旧求解留下的项或工作量较小的项
+     */
+    private void 存储(long 键, int 证明数, int 反证数, int 着法, int 工作量) {
+        int 基 = 组(键);
+        int 槽 = -1;
+        for (int i = 基; i < 基 + 2; i++) {
+            if (表工作量[i] != 0 && 表键[i] == 键) {
+                槽 = i;
+                工作量 = Math.max(工作量, 表工作量[i]);
+                break;
+            }
+        }
+        if (槽 < 0) {
+            槽 = 替换价值(基) <= 替换价值(基 + 1) ? 基 : 基 + 1;
+        }
+        表键[槽] = 键;
+        表证明数[槽] = 证明数;
+        表反证数[槽] = 反证数;
+        表工作量[槽] = Math.max(1, 工作量);
+        表着法[槽] = (short) (着法 + 1);
+        表代[槽] = 当前代;
+    }
+
+    private long 替换价值(int 槽) {
+        if (表工作量[槽] == 0) {
+            return Long.MIN_VALUE;
+        }
+        // 旧求解留下的项排在当前求解的项之前
+        return (表代[槽] == 当前代 ? 1L << 32 : 0) + 表工作量[槽];
+    }
+
+    /**
+     * 清空置换表，用于新对局
+     */
+    public void 清空() {
+        Arrays.fill(表工作量, 0);
+    }
+
+    /**
+     * 从其他线程请求停止：正在进行的证明在下一个节点按超出预算中止，返回未证明，
+     * 之后开始的证明也立即中止，直到调用清除取消()
+     */
+    public void 取消搜索() {
+        已取消 = true;
+    }
+
+    /**
+     * 复位取消请求，应在开始新证明之前、由发起求解的线程调用
+     */
+    public void 清除取消() {
+        已取消 = false;
+    }
+
+    /**
+     * 设置单次证明的节点上限
+     */
+    public void 设置节点上限(int 节点上限) {
+        this.节点上限 = Math.max(1, 节点上限);
+    }
+
+    /**
+     * 设置单次证明的时间上限（毫秒），不大于0为不限，只按节点上限停止
+     */
+    public void 设置时间限制(long 毫秒) {
+        this.时间限制 = Math.max(0, 毫秒);
+    }
+}
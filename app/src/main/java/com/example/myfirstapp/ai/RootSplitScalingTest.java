@@ -0,0 +1,77 @@
+package com.example.myfirstapp.ai;
+
+import java.util.Arrays;
+
+/**
+ * 根节点拆分加速比测试 - 同一局面、同一深度下单线程搜索与根节点拆分搜索的墙钟耗时之比
+ * 搜索结果里的线程利用率只是平均在忙的线程数，加速比要用这里的测量
+ * 每次搜索都新建引擎，两边都从空的置换表开始；每个深度重复几次取最短耗时
+ */
+public class RootSplitScalingTest {
+
+    private static final int 重复次数 = 3;
+
+    public static void 测试加速比(int 最大深度, int 线程数) {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        int[][] 开局 = {{7, 7}, {7, 8}, {8, 8}, {6, 6}, {8, 7}, {8, 6}, {9, 8}, {10, 9}};
+        int 玩家 = GomokuBoard.BLACK;
+        for (int[] 着法 : 开局) {
+            棋盘.makeMove(着法[0], 着法[1], 玩家);
+            玩家 = GomokuBoard.getOpponent(玩家);
+        }
+
+        System.out.println("CPU核心数: " + Runtime.getRuntime().availableProcessors() + "，拆分线程数: " + 线程数);
+
+        // 预热，避免第一轮包含JIT编译时间
+        for (int 深度 = 1; 深度 <= 最大深度; 深度++) {
+            极小化极大耗时(棋盘, 玩家, 深度, 1);
+            极小化极大耗时(棋盘, 玩家, 深度, 线程数);
+        }
+
+        for (int 引擎 = 0; 引擎 < 2; 引擎++) {
+            System.out.println(引擎 == 0 ? "MinimaxSearch（并行模式.根节点拆分）" : "EnhancedMinimaxSearch");
+            for (int 深度 = 1; 深度 <= 最大深度; 深度++) {
+                long[] 单线程 = new long[重复次数];
+                long[] 拆分 = new long[重复次数];
+                for (int i = 0; i < 重复次数; i++) {
+                    单线程[i] = 引擎 == 0 ? 极小化极大耗时(棋盘, 玩家, 深度, 1) : 增强搜索耗时(棋盘, 玩家, 深度, 1);
+                    拆分[i] = 引擎 == 0 ? 极小化极大耗时(棋盘, 玩家, 深度, 线程数) : 增强搜索耗时(棋盘, 玩家, 深度, 线程数);
+                }
+                long 单线程最短 = Arrays.stream(单线程).min().getAsLong();
+                long 拆分最短 = Arrays.stream(拆分).min().getAsLong();
+                System.out.printf("深度:%d 单线程:%.1fms 拆分:%.1fms 加速比:%.2fx%n", 深度,
+                        单线程最短 / 1e6, 拆分最短 / 1e6, (double) 单线程最短 / Math.max(1, 拆分最短));
+            }
+        }
+    }
+
+    /**
+     * 迭代加深到指定深度的墙钟耗时（纳秒）
+     */
+    private static long 极小化极大耗时(GomokuBoard 棋盘, int 玩家, int 深度, int 线程数) {
+        MinimaxSearch 搜索 = new MinimaxSearch(0, 深度);
+        搜索.设置线程数(线程数);
+        搜索.设置并行模式(MinimaxSearch.并行模式.根节点拆分);
+        long 开始 = System.nanoTime();
+        搜索.寻找最佳下法(new GomokuBoard(棋盘), 玩家);
+        long 耗时 = System.nanoTime() - 开始;
+        搜索.关闭();
+        return 耗时;
+    }
+
+    private static long 增强搜索耗时(GomokuBoard 棋盘, int 玩家, int 深度, int 线程数) {
+        EnhancedMinimaxSearch 搜索 = new EnhancedMinimaxSearch(0, 深度);
+        搜索.设置线程数(线程数);
+        long 开始 = System.nanoTime();
+        搜索.寻找最佳下法(new GomokuBoard(棋盘), 玩家);
+        long 耗时 = System.nanoTime() - 开始;
+        搜索.关闭();
+        return 耗时;
+    }
+
+    public static void main(String[] args) {
+        int 最大深度 = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int 线程数 = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+        测试加速比(最大深度, 线程数);
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.myfirstapp.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根节点并行拆分 - Young Brothers Wait
+ * 第一个候选着法串行搜索以确定最佳分数，其余着法交给ForkJoinPool并行搜索，
+ * 每个任务使用独立的棋盘副本，并以当前最佳分数作为共享界限
+ * 搜索实例和棋盘副本放在空闲队列里跨任务、跨层复用，同时在跑的任务有多少个就只创建多少个
+ * MinimaxSearch与EnhancedMinimaxSearch共用
+ */
+class RootSplitter<T> {
+
+    /**
+     * 单个根着法的搜索，在任务取到的搜索实例上进行；同一时刻一个实例只被一个任务使用
+     */
+    interface 根着法搜索<T> {
+        /**
+         * @param 当前最佳 已知最佳分数，不超过它的分数无需精确
+         * @return 根玩家视角的分数
+         */
+        int 搜索(T 实例, GomokuBoard 棋盘, GomokuEvaluator.Move 着法, int 当前最佳);
+
+        /**
+         * 该实例上一次搜索()的节点数
+         */
+        int 节点数(T 实例);
+    }
+
+    interface 实例工厂<T> {
+        T 创建();
+    }
+
+    /**
+     * 一次拆分搜索的结果
+     */
+    static class 拆分结果 {
+        final GomokuEvaluator.Move 最佳着法;
+        final int 最佳分数;
+        final int 节点数;
+
+        拆分结果(GomokuEvaluator.Move 最佳着法, int 最佳分数, int 节点数) {
+            this.最佳着法 = 最佳着法;
+            this.最佳分数 = 最佳分数;
+            this.节点数 = 节点数;
+        }
+    }
+
+    private final int 线程数;
+    private final 实例工厂<T> 工厂;
+    private final Queue<工作者<T>> 空闲工作者 = new ConcurrentLinkedQueue<>();
+    private ForkJoinPool 线程池;
+    private final StringBuilder 利用率报告 = new StringBuilder();
+
+    /**
+     * @param 工厂 创建任务用的搜索实例，实例之间应共享置换表等全局状态
+     */
+    RootSplitter(int 线程数, 实例工厂<T> 工厂) {
+        this.线程数 = 线程数;
+        this.工厂 = 工厂;
+    }
+
+    /**
+     * 新的根搜索开始，清空逐层利用率记录
+     */
+    void 开始新搜索() {
+        利用率报告.setLength(0);
+    }
+
+    /**
+     * 搜索全部根着法，返回最佳着法
+     * 同时记录本层线程利用率：各任务耗时之和 / 墙钟耗时，即平均同时在忙的线程数，
+     * 线程数超过CPU核心时任务耗时含等待时间，因此以可用核心数为上限
+     * 这不是加速比：并行任务的界限较松、置换表命中不同，节点数与单线程搜索不一样，
+     * 加速比（同一深度单线程搜索耗时 / 拆分搜索耗时）由RootSplitScalingTest测量
+     */
+    拆分结果 搜索(GomokuBoard 棋盘, List<GomokuEvaluator.Move> 候选着法, int 深度, int 无穷小,
+              根着法搜索<T> 单着搜索) {
+        long 开始 = System.nanoTime();
+        AtomicLong 任务耗时 = new AtomicLong();
+        AtomicLong 总节点 = new AtomicLong();
+        共享界限 界限 = new 共享界限(无穷小);
+
+        // 长兄先行：第一个着法串行搜索，建立界限
+        new 根任务<>(this, 棋盘, 候选着法.get(0), 界限, 单着搜索, 任务耗时, 总节点).compute();
+
+        List<根任务<T>> 兄弟任务 = new ArrayList<>();
+        for (int i = 1; i < 候选着法.size(); i++) {
+            兄弟任务.add(new 根任务<>(this, 棋盘, 候选着法.get(i), 界限, 单着搜索, 任务耗时, 总节点));
+        }
+        获取线程池().invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(兄弟任务);
+            }
+        });
+
+        long 墙钟 = System.nanoTime() - 开始;
+        int 核心上限 = Math.min(线程数, Runtime.getRuntime().availableProcessors());
+        double 利用率 = 墙钟 > 0 ? Math.min(核心上限, (double) 任务耗时.get() / 墙钟) : 1.0;
+        if (利用率报告.length() > 0) {
+            利用率报告.append(' ');
+        }
+        利用率报告.append(String.format(Locale.ROOT, "d%d:%.1f", 深度, 利用率));
+
+        synchronized (界限) {
+            return new 拆分结果(界限.着法, 界限.分数, (int) 总节点.get());
+        }
+    }
+
+    /**
+     * 逐层线程利用率（平均在忙线程数），例如 "d1:1.0 d2:3.4"
+     */
+    String 获取利用率报告() {
+        return 利用率报告.toString();
+    }
+
+    void 关闭() {
+        if (线程池 != null) {
+            线程池.shutdownNow();
+            线程池 = null;
+        }
+        空闲工作者.clear();
+    }
+
+    /**
+     * 取一个空闲的搜索实例及其棋盘，没有时新建；用完由归还()放回
+     */
+    private 工作者<T> 借用() {
+        工作者<T> 工作者 = 空闲工作者.poll();
+        return 工作者 != null ? 工作者 : new 工作者<>(工厂.创建());
+    }
+
+    private void 归还(工作者<T> 工作者) {
+        空闲工作者.offer(工作者);
+    }
+
+    private ForkJoinPool 获取线程池() {
+        if (线程池 == null || 线程池.isShutdown()) {
+            线程池 = new ForkJoinPool(线程数);
+        }
+        return 线程池;
+    }
+
+    /**
+     * 所有任务共享的最佳分数与着法
+     */
+    private static class 共享界限 {
+        volatile int 分数;
+        GomokuEvaluator.Move 着法;
+
+        共享界限(int 初始分数) {
+            this.分数 = 初始分数;
+        }
+
+        synchronized void 提交(GomokuEvaluator.Move 新着法, int 新分数) {
+            if (新分数 > 分数) {
+                分数 = 新分数;
+                着法 = 新着法;
+            }
+        }
+    }
+
+    /**
+     * 可复用的搜索实例和它专用的棋盘副本
+     */
+    private static class 工作者<T> {
+        final T 实例;
+        final GomokuBoard 棋盘 = new GomokuBoard();
+
+        工作者(T 实例) {
+            this.实例 = 实例;
+        }
+    }
+
+    /**
+     * 单个根着法任务 - 借一个工作者，把根局面复制到它的棋盘上搜索
+     */
+    private static class 根任务<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RootSplitter<T> 拆分器;
+        private final GomokuBoard 棋盘;
+        private final GomokuEvaluator.Move 着法;
+        private final 共享界限 界限;
+        private final 根着法搜索<T> 单着搜索;
+        private final AtomicLong 任务耗时;
+        private final AtomicLong 总节点;
+
+        根任务(RootSplitter<T> 拆分器, GomokuBoard 棋盘, GomokuEvaluator.Move 着法, 共享界限 界限,
+              根着法搜索<T> 单着搜索, AtomicLong 任务耗时, AtomicLong 总节点) {
+            this.拆分器 = 拆分器;
+            this.棋盘 = 棋盘;
+            this.着法 = 着法;
+            this.界限 = 界限;
+            this.单着搜索 = 单着搜索;
+            this.任务耗时 = 任务耗时;
+            this.总节点 = 总节点;
+        }
+
+        @Override
+        protected void compute() {
+            long 开始 = System.nanoTime();
+            工作者<T> 工作者 = 拆分器.借用();
+            工作者.棋盘.copyFrom(棋盘);
+            int 分数 = 单着搜索.搜索(工作者.实例, 工作者.棋盘, 着法, 界限.分数);
+            界限.提交(着法, 分数);
+            总节点.addAndGet(单着搜索.节点数(工作者.实例));
+            拆分器.归还(工作者);
+            任务耗时.addAndGet(System.nanoTime() - 开始);
+        }
+    }
+}
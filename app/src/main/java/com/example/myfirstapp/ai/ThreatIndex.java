@@ -0,0 +1,230 @@
+package com.example.myfirstapp.ai;
+
+import java.util.Arrays;
+
+/**
+ * 威胁索引 - 按线缓存双方的成五点、成四点、成活三点，以及破解活三的防守点
+ * 查询前把棋盘每条线的位掩码与缓存比较，只重算变化过的线（两次查询之间通常只有几条线变化），
+ * 整盘问题由各线结果合并得到：
+ * - 成五点：落子即连五的空位，对手的成五点就是必须封堵的点
+ * - 成四点、成活三点：落子后形成经过该格的冲四/活四、活三（棋型定义与LinePatternTable一致）
+ * - 活三破解点：落子后对方整盘不再有活三的空位，即各条有活三的线上破解位的交集
+ *
+ * 与GomokuBoard的棋型计数使用同一套窗口规则：成五点、活三破解点与逐格落子后调用PatternEvaluator完全一致，
+ * 威胁点包含所有是否创造威胁的格子（见ThreatIndexTest）
+ * 格子以编号表示：x * BOARD_SIZE + y，输出按编号升序；实例不是线程安全的
+ */
+class ThreatIndex {
+
+    private static final int 线数 = GomokuBoard.LINE_COUNT;
+    private static final int 四型类别 = (1 << LinePatternTable.类_冲四) | (1 << LinePatternTable.类_活四);
+    private static final int 活三类别 = 1 << LinePatternTable.类_活三;
+
+    private final GomokuBoard 棋盘;
+
+    // 缓存时的线位掩码，与棋盘不同即需重算；-1保证首次查询全部重算
+    private final int[][] 缓存棋子 = new int[3][线数];
+
+    // 各线结果，按玩家
+    private final int[][] 成五位 = new int[3][线数];
+    private final int[][] 成四位 = new int[3][线数];
+    private final int[][] 成三位 = new int[3][线数];
+    private final int[][] 破解位 = new int[3][线数];  // 仅对有活三的线有意义
+
+    // 结果非空的线集合，查询时只遍历这些线
+    private final long[][] 成五线 = new long[3][2];
+    private final long[][] 威胁线 = new long[3][2];  // 有成四点或成活三点
+    private final long[][] 活三线 = new long[3][2];
+
+    private final long[] 格子集 = new long[4];
+    private final long[] 线格子集 = new long[4];
+
+    ThreatIndex(GomokuBoard 棋盘) {
+        this.棋盘 = 棋盘;
+        for (int 玩家 = GomokuBoard.BLACK; 玩家 <= GomokuBoard.WHITE; 玩家++) {
+            Arrays.fill(缓存棋子[玩家], -1);
+        }
+    }
+
+    /**
+     * 玩家落子即可连五的格子
+     */
+    int 成五点(int 玩家, int[] 输出) {
+        刷新();
+        清空(格子集);
+        并入(格子集, 成五线[玩家], 成五位[玩家]);
+        return 输出格子(格子集, 输出);
+    }
+
+    /**
+     * 玩家落子后形成冲四、活四或活三的格子
+     */
+    int 威胁点(int 玩家, int[] 输出) {
+        刷新();
+        清空(格子集);
+        并入(格子集, 威胁线[玩家], 成四位[玩家]);
+        并入(格子集, 威胁线[玩家], 成三位[玩家]);
+        return 输出格子(格子集, 输出);
+    }
+
+    /**
+     * 落子后攻击方整盘不再有活三的格子；攻击方没有活三时返回0
+     */
+    int 活三破解点(int 攻击方, int[] 输出) {
+        刷新();
+        long[] 线集 = 活三线[攻击方];
+        if ((线集[0] | 线集[1]) == 0) {
+            return 0;
+        }
+        // 一手只影响经过它的线，所以必须落在每条有活三的线上，并破解该线的全部活三
+        for (int i = 0; i < 4; i++) {
+            格子集[i] = -1L;
+        }
+        for (int 字 = 0; 字 < 2; 字++) {
+            long 剩余 = 线集[字];
+            while (剩余 != 0) {
+                int 线 = (字 << 6) + Long.numberOfTrailingZeros(剩余);
+                剩余 &= 剩余 - 1;
+                清空(线格子集);
+                加入线位(线格子集, 线, 破解位[攻击方][线]);
+                for (int i = 0; i < 4; i++) {
+                    格子集[i] &= 线格子集[i];
+                }
+            }
+        }
+        return 输出格子(格子集, 输出);
+    }
+
+    /**
+     * 比较缓存的线掩码，重算变化过的线
+     */
+    private void 刷新() {
+        for (int 线 = 0; 线 < 线数; 线++) {
+            int 黑 = 棋盘.getLineBits(GomokuBoard.BLACK, 线);
+            int 白 = 棋盘.getLineBits(GomokuBoard.WHITE, 线);
+            if (黑 == 缓存棋子[GomokuBoard.BLACK][线] && 白 == 缓存棋子[GomokuBoard.WHITE][线]) {
+                continue;
+            }
+            缓存棋子[GomokuBoard.BLACK][线] = 黑;
+            缓存棋子[GomokuBoard.WHITE][线] = 白;
+            int 空位 = 棋盘.getEmptyBits(线);
+            分析线(GomokuBoard.BLACK, 线, 黑, 空位);
+            分析线(GomokuBoard.WHITE, 线, 白, 空位);
+        }
+    }
+
+    private void 分析线(int 玩家, int 线, int 己方, int 空位) {
+        int 有效位 = GomokuBoard.getValidBits(线);
+        int 五 = 0;
+        int 四 = 0;
+        int 三 = 0;
+        int 破解 = 0;
+
+        // 新棋型的窗口不超过6格，离己方棋子5格以外的空位落子不会与己方棋子成型
+        int 邻近 = 己方;
+        for (int i = 1; i < LinePatternTable.窗口长度; i++) {
+            邻近 |= 己方 << i | 己方 >>> i;
+        }
+        int 候选 = 邻近 & 空位;
+        while (候选 != 0) {
+            int 位 = Integer.numberOfTrailingZeros(候选);
+            int 落子位 = 候选 & -候选;
+            候选 &= 候选 - 1;
+            int 落子后 = 己方 | 落子位;
+            int 落子后空位 = 空位 & ~落子位;
+            if (GomokuBoard.runCovers(落子后, 位, 5)) {
+                五 |= 落子位;
+            }
+            if (LinePatternTable.存在覆盖棋型(落子后, 落子后空位, 位, 四型类别)) {
+                四 |= 落子位;
+            }
+            if (LinePatternTable.存在覆盖棋型(落子后, 落子后空位, 位, 活三类别)) {
+                三 |= 落子位;
+            }
+        }
+
+        boolean 有活三 = 存在活三(己方, 空位, 有效位);
+        if (有活三) {
+            int 剩余 = 空位;
+            while (剩余 != 0) {
+                int 落子位 = 剩余 & -剩余;
+                剩余 &= 剩余 - 1;
+                if (!存在活三(己方, 空位 & ~落子位, 有效位)) {
+                    破解 |= 落子位;
+                }
+            }
+        }
+
+        成五位[玩家][线] = 五;
+        成四位[玩家][线] = 四;
+        成三位[玩家][线] = 三;
+        破解位[玩家][线] = 破解;
+        设置线(成五线[玩家], 线, 五 != 0);
+        设置线(威胁线[玩家], 线, (四 | 三) != 0);
+        设置线(活三线[玩家], 线, 有活三);
+    }
+
+    /**
+     * 与PatternEvaluator.分析线棋型相同的计数规则：只看落在棋盘内的起点
+     */
+    private static boolean 存在活三(int 己方, int 空位, int 有效位) {
+        int 剩余 = 有效位;
+        while (剩余 != 0) {
+            int 位 = Integer.numberOfTrailingZeros(剩余);
+            剩余 &= 剩余 - 1;
+            if (((己方 >>> 位) & 0x3F) != 0
+                    && LinePatternTable.类别(己方 >>> 位, 空位 >>> 位) == LinePatternTable.类_活三) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void 设置线(long[] 线集, int 线, boolean 非空) {
+        if (非空) {
+            线集[线 >>> 6] |= 1L << (线 & 63);
+        } else {
+            线集[线 >>> 6] &= ~(1L << (线 & 63));
+        }
+    }
+
+    private static void 并入(long[] 集合, long[] 线集, int[] 线位) {
+        for (int 字 = 0; 字 < 2; 字++) {
+            long 剩余 = 线集[字];
+            while (剩余 != 0) {
+                int 线 = (字 << 6) + Long.numberOfTrailingZeros(剩余);
+                剩余 &= 剩余 - 1;
+                加入线位(集合, 线, 线位[线]);
+            }
+        }
+    }
+
+    private static void 加入线位(long[] 集合, int 线, int 位掩码) {
+        while (位掩码 != 0) {
+            int 格子 = ThreatMoveGenerator.格子表[线][Integer.numberOfTrailingZeros(位掩码)];
+            位掩码 &= 位掩码 - 1;
+            集合[格子 >>> 6] |= 1L << (格子 & 63);
+        }
+    }
+
+    private static void 清空(long[] 集合) {
+        for (int i = 0; i < 集合.length; i++) {
+            集合[i] = 0;
+        }
+    }
+
+    private static int 输出格子(long[] 集合, int[] 输出) {
+        int 数量 = 0;
+        for (int 字 = 0; 字 < 集合.length; 字++) {
+            long 剩余 = 集合[字];
+            while (剩余 != 0) {
+                int 格子 = (字 << 6) + Long.numberOfTrailingZeros(剩余);
+                剩余 &= 剩余 - 1;
+                if (格子 < ThreatMoveGenerator.格子数) {
+                    输出[数量++] = 格子;
+                }
+            }
+        }
+        return 数量;
+    }
+}
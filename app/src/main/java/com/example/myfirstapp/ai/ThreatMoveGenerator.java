@@ -0,0 +1,313 @@
+package com.example.myfirstapp.ai;
+
+import java.util.Arrays;
+
+/**
+ * 威胁着法生成 - 在GomokuBoard的线位掩码上找成五点、冲四、活三与活三防守点
+ * ThreatSpaceSolver与ProofNumberSolver共用，不做整盘扫描：
+ * - 成五点：5格窗口内己方4子1空
+ * - 冲四着法：5格窗口内己方3子2空，两个空位都能形成冲四
+ * - 活三着法：6格窗口两端为空、中间4格己方2子2空，中间空位落子后再走一步即成活四
+ * - 活三防守点：能破坏所有活三窗口的空位
+ *
+ * 格子以编号表示：x * BOARD_SIZE + y；每个求解器持有自己的实例（去重标记不共享）
+ */
+class ThreatMoveGenerator {
+
+    static final int 格子数 = GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE;
+
+    // 线上第几位对应的格子编号，不在棋盘上为-1
+    static final int[][] 格子表 = new int[GomokuBoard.LINE_COUNT][GomokuBoard.BOARD_SIZE];
+    // 每个格子所在的4条线与线内位置
+    private static final int[][] 所在线 = new int[格子数][4];
+    private static final int[][] 所在位 = new int[格子数][4];
+
+    static {
+        for (int[] 线 : 格子表) {
+            Arrays.fill(线, -1);
+        }
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                int 格子 = x * GomokuBoard.BOARD_SIZE + y;
+                for (int dir = 0; dir < 4; dir++) {
+                    int 线 = GomokuBoard.lineIndex(dir, x, y);
+                    int 位 = GomokuBoard.bitIndex(dir, x, y);
+                    格子表[线][位] = 格子;
+                    所在线[格子][dir] = 线;
+                    所在位[格子][dir] = 位;
+                }
+            }
+        }
+    }
+
+    private GomokuBoard 棋盘;
+    private final int[] 标记 = new int[格子数];
+    private int 标记值;
+
+    void 设置棋盘(GomokuBoard 棋盘) {
+        this.棋盘 = 棋盘;
+    }
+
+    /**
+     * 攻击着法：先冲四，后活三，去重
+     */
+    int 生成攻击着法(int[] 输出, int 玩家, boolean 含活三) {
+        新标记();
+        int 数量 = 0;
+        for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+            数量 = 追加位(输出, 数量, 线, 成四位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)));
+        }
+        if (含活三) {
+            for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+                数量 = 追加位(输出, 数量, 线, 成三位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)));
+            }
+        }
+        return 数量;
+    }
+
+    /**
+     * 活三防守点：在经过指定格子的每条有活三的线上，能同时破坏该线所有活三窗口的空位
+     * 格子1为-1时检查整盘
+     */
+    int 生成活三防守点(int[] 输出, int 攻击方, int 格子1, int 格子2) {
+        新标记();
+        int 数量 = 0;
+        if (格子1 < 0) {
+            for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+                数量 = 追加位(输出, 数量, 线, 活三防守位(棋盘.getLineBits(攻击方, 线), 棋盘.getEmptyBits(线)));
+            }
+            return 数量;
+        }
+        for (int k = 0; k < 2; k++) {
+            int 格子 = k == 0 ? 格子1 : 格子2;
+            if (格子 < 0) {
+                continue;
+            }
+            for (int dir = 0; dir < 4; dir++) {
+                int 线 = 所在线[格子][dir];
+                数量 = 追加位(输出, 数量, 线, 活三防守位(棋盘.getLineBits(攻击方, 线), 棋盘.getEmptyBits(线)));
+            }
+        }
+        return 数量;
+    }
+
+    /**
+     * 在已有列表后追加某方的全部冲四着法（沿用当前标记去重）
+     */
+    int 追加成四着法(int[] 输出, int 数量, int 玩家) {
+        for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+            数量 = 追加位(输出, 数量, 线, 成四位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)));
+        }
+        return 数量;
+    }
+
+    private int 追加位(int[] 输出, int 数量, int 线, int 位掩码) {
+        while (位掩码 != 0) {
+            int 位 = Integer.numberOfTrailingZeros(位掩码);
+            位掩码 &= 位掩码 - 1;
+            int 格子 = 格子表[线][位];
+            if (标记[格子] != 标记值) {
+                标记[格子] = 标记值;
+                输出[数量++] = 格子;
+            }
+        }
+        return 数量;
+    }
+
+    private void 新标记() {
+        if (++标记值 == 0) {
+            Arrays.fill(标记, 0);
+            标记值 = 1;
+        }
+    }
+
+    /**
+     * 整盘查找某方的成五点
+     * @return 格子编号；没有返回-1；两个以上返回-2
+     */
+    int 查找成五点(int 玩家) {
+        int 结果 = -1;
+        for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+            结果 = 合并成五点(结果, 线, 成五位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)));
+            if (结果 == -2) {
+                break;
+            }
+        }
+        return 结果;
+    }
+
+    /**
+     * 整盘任一成五点，没有返回-1
+     */
+    int 查找任一成五点(int 玩家) {
+        for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+            int 位掩码 = 成五位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线));
+            if (位掩码 != 0) {
+                return 格子表[线][Integer.numberOfTrailingZeros(位掩码)];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 经过一两个格子的线上某方的成五点，返回值同查找成五点
+     */
+    int 经过格子的成五点(int 玩家, int 格子1, int 格子2) {
+        int 结果 = -1;
+        for (int k = 0; k < 2 && 结果 != -2; k++) {
+            int 格子 = k == 0 ? 格子1 : 格子2;
+            if (格子 < 0) {
+                continue;
+            }
+            for (int dir = 0; dir < 4 && 结果 != -2; dir++) {
+                int 线 = 所在线[格子][dir];
+                结果 = 合并成五点(结果, 线, 成五位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)));
+            }
+        }
+        return 结果;
+    }
+
+    private static int 合并成五点(int 结果, int 线, int 位掩码) {
+        while (位掩码 != 0 && 结果 != -2) {
+            int 格子 = 格子表[线][Integer.numberOfTrailingZeros(位掩码)];
+            位掩码 &= 位掩码 - 1;
+            if (结果 == -1) {
+                结果 = 格子;
+            } else if (结果 != 格子) {
+                结果 = -2;
+            }
+        }
+        return 结果;
+    }
+
+    /**
+     * 在指定空位落子能否形成冲四（含活四）
+     */
+    boolean 经过格子成四(int 玩家, int 格子) {
+        for (int dir = 0; dir < 4; dir++) {
+            int 线 = 所在线[格子][dir];
+            if ((成四位(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线)) & (1 << 所在位[格子][dir])) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在指定空位落子能否形成活三；格子已有棋子时判断经过它的线上是否存在活三
+     */
+    boolean 经过格子成三(int 玩家, int 格子) {
+        for (int dir = 0; dir < 4; dir++) {
+            int 线 = 所在线[格子][dir];
+            int 己方 = 棋盘.getLineBits(玩家, 线);
+            int 空位 = 棋盘.getEmptyBits(线);
+            int 位 = 1 << 所在位[格子][dir];
+            if ((空位 & 位) != 0 ? (成三位(己方, 空位) & 位) != 0 : 有活三窗口(己方, 空位)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 黑棋禁手判断，查询棋盘增量维护的禁手图
+     */
+    boolean 是否禁手(int 玩家, int 格子) {
+        return ForbiddenMoveDetector.是否禁手(棋盘, 格子 / GomokuBoard.BOARD_SIZE, 格子 % GomokuBoard.BOARD_SIZE, 玩家);
+    }
+
+    /**
+     * 某方在整盘是否存在活三
+     */
+    boolean 存在活三(int 玩家) {
+        for (int 线 = 0; 线 < GomokuBoard.LINE_COUNT; 线++) {
+            if (有活三窗口(棋盘.getLineBits(玩家, 线), 棋盘.getEmptyBits(线))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ---- 线位运算：己方与空位均为15位掩码，越出棋盘的位两者皆为0 ----
+
+    /**
+     * 成五点：5格窗口内己方4子1空时的空位
+     */
+    static int 成五位(int 己方, int 空位) {
+        if (Integer.bitCount(己方) < 4) {
+            return 0;
+        }
+        int 结果 = 0;
+        for (int 起点 = 0; 起点 + 5 <= GomokuBoard.BOARD_SIZE; 起点++) {
+            int 窗口 = 0x1F << 起点;
+            int 空 = 空位 & 窗口;
+            if (Integer.bitCount(己方 & 窗口) == 4 && 空 != 0) {
+                结果 |= 空;
+            }
+        }
+        return 结果;
+    }
+
+    /**
+     * 冲四着法：5格窗口内己方3子2空时的两个空位
+     */
+    static int 成四位(int 己方, int 空位) {
+        if (Integer.bitCount(己方) < 3) {
+            return 0;
+        }
+        int 结果 = 0;
+        for (int 起点 = 0; 起点 + 5 <= GomokuBoard.BOARD_SIZE; 起点++) {
+            int 窗口 = 0x1F << 起点;
+            if (Integer.bitCount(己方 & 窗口) == 3 && Integer.bitCount(空位 & 窗口) == 2) {
+                结果 |= 空位 & 窗口;
+            }
+        }
+        return 结果;
+    }
+
+    /**
+     * 活三着法：6格窗口两端为空、中间己方2子2空时中间的两个空位
+     */
+    static int 成三位(int 己方, int 空位) {
+        if (Integer.bitCount(己方) < 2) {
+            return 0;
+        }
+        int 结果 = 0;
+        for (int 起点 = 0; 起点 + 6 <= GomokuBoard.BOARD_SIZE; 起点++) {
+            int 两端 = (1 | 1 << 5) << 起点;
+            int 中间 = 0x1E << 起点;
+            if ((空位 & 两端) == 两端 && Integer.bitCount(己方 & 中间) == 2 && Integer.bitCount(空位 & 中间) == 2) {
+                结果 |= 空位 & 中间;
+            }
+        }
+        return 结果;
+    }
+
+    /**
+     * 活三窗口：6格窗口两端为空、中间己方3子1空
+     */
+    static boolean 有活三窗口(int 己方, int 空位) {
+        return 活三防守位(己方, 空位) != 0;
+    }
+
+    /**
+     * 活三防守点：落在每一个活三窗口空位上的格子（窗口的交集），没有活三时为0
+     * 活三窗口的空位至少有3个，交集为空说明一手无法同时破坏，此时返回所有窗口空位的并集
+     */
+    static int 活三防守位(int 己方, int 空位) {
+        if (Integer.bitCount(己方) < 3) {
+            return 0;
+        }
+        int 交集 = -1;
+        int 并集 = 0;
+        for (int 起点 = 0; 起点 + 6 <= GomokuBoard.BOARD_SIZE; 起点++) {
+            int 两端 = (1 | 1 << 5) << 起点;
+            int 中间 = 0x1E << 起点;
+            if ((空位 & 两端) == 两端 && Integer.bitCount(己方 & 中间) == 3 && Integer.bitCount(空位 & 中间) == 1) {
+                交集 &= 空位 & (两端 | 中间);
+                并集 |= 空位 & (两端 | 中间);
+            }
+        }
+        return 并集 == 0 || 交集 == 0 ? 并集 : 交集;
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.myfirstapp.ai;
+
+import java.util.Arrays;
+
+/**
+ * 威胁空间搜索 - VCF（连续冲四）/ VCT（连续活三、冲四）必胜求解器
+ *
+ * 着法来自ThreatMoveGenerator的线位掩码：攻击方只走冲四与活三；
+ * 防守方对冲四只能堵成五点，对活三只考虑能破坏所有活三窗口的空位，外加防守方的反冲四。
+ *
+ * 攻击方节点为"或"节点，防守方节点为"与"节点，结果按局面哈希存入自有的置换表。
+ * 采用迭代加深，找到的是步数最少的必胜序列；节点数超过上限时放弃，保证响应时间。
+ * 防守方一旦形成活三，攻击方此后只能走冲四（活三已不足以抢先）。
+ *
+ * 可单独使用，GomokuAI在主搜索之前、EnhancedMinimaxSearch在迭代加深之前调用
+ */
+public class ThreatSpaceSolver {
+
+    public enum 类型 { VCF, VCT }
+
+    private static final int 默认VCF步数 = 25;
+    private static final int 默认VCT步数 = 15;
+    private static final int 默认节点上限 = 20000;
+    private static final int 最大层数 = 64;
+    private static final int 格子数 = ThreatMoveGenerator.格子数;
+
+    // 置换表：每项两个long {键, 数据}，数据 = 有效位 | 着法<<16 | 步数<<1 | 是否必胜
+    private static final int 表大小 = 1 << 16;
+    private static final long 有效位 = 1L << 62;
+    private static final long[] 盐 = new long[6];
+
+    static {
+        java.util.Random 随机 = new java.util.Random(20240601);
+        for (int i = 0; i < 盐.length; i++) {
+            盐[i] = 随机.nextLong();
+        }
+    }
+
+    private final long[] 表 = new long[表大小 * 2];
+
+    private int VCF最大步数 = 默认VCF步数;
+    private int VCT最大步数 = 默认VCT步数;
+    private int 节点上限 = 默认节点上限;
+    private volatile boolean 已取消;  // 取消搜索()设置，与节点上限一样使求解放弃
+
+    // 单次求解的状态
+    private GomokuBoard 棋盘;
+    private int 攻击方;
+    private int 防守方;
+    private boolean 允许活三;
+    private int 根步数;
+    private int 节点数;
+    private boolean 超限;
+    private int 根胜着;
+
+    private final int[][] 攻击缓冲 = new int[最大层数][格子数];
+    private final int[][] 防守缓冲 = new int[最大层数][格子数];
+    private final ThreatMoveGenerator 生成器 = new ThreatMoveGenerator();
+    private int 上次节点数;
+
+    /**
+     * 求解结果：第一手与证明所需的步数（双方合计，不含最后成五）
+     */
+    public static class 求解结果 {
+        public final GomokuEvaluator.Move 着法;
+        public final 类型 类型;
+        public final int 步数;
+        public final int 节点数;
+        public final long 耗时微秒;
+
+        求解结果(GomokuEvaluator.Move 着法, 类型 类型, int 步数, int 节点数, long 耗时微秒) {
+            this.着法 = 着法;
+            this.类型 = 类型;
+            this.步数 = 步数;
+            this.节点数 = 节点数;
+            this.耗时微秒 = 耗时微秒;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s 着法: (%d,%d), 步数: %d, 节点: %d, 耗时: %dμs",
+                    类型, 着法.x, 着法.y, 步数, 节点数, 耗时微秒);
+        }
+    }
+
+    /**
+     * 先求VCF，再求VCT
+     * @return 必胜着法，没有找到时返回null
+     */
+    public 求解结果 求解(GomokuBoard 棋盘, int 攻击方) {
+        求解结果 结果 = 求解VCF(棋盘, 攻击方);
+        int 节点 = 上次节点数;
+        if (结果 == null) {
+            结果 = 求解VCT(棋盘, 攻击方);
+            节点 += 上次节点数;
+        }
+        上次节点数 = 节点;
+        return 结果;
+    }
+
+    /**
+     * 连续冲四必胜
+     * @return 必胜着法，没有找到时返回null
+     */
+    public 求解结果 求解VCF(GomokuBoard 棋盘, int 攻击方) {
+        return 迭代求解(棋盘, 攻击方, false, VCF最大步数);
+    }
+
+    /**
+     * 连续活三、冲四必胜；防守方已有活三时只能走冲四，相当于VCF
+     * @return 必胜着法，没有找到时返回null
+     */
+    public 求解结果 求解VCT(GomokuBoard 棋盘, int 攻击方) {
+        return 迭代求解(棋盘, 攻击方, true, VCT最大步数);
+    }
+
+    private 求解结果 迭代求解(GomokuBoard 棋盘, int 攻击方, boolean 允许活三, int 最大步数) {
+        long 开始 = System.nanoTime();
+        this.棋盘 = 棋盘;
+        this.生成器.设置棋盘(棋盘);
+        this.攻击方 = 攻击方;
+        this.防守方 = GomokuBoard.getOpponent(攻击方);
+        this.允许活三 = 允许活三;
+        this.根步数 = 棋盘.getMoveCount();
+        this.节点数 = 0;
+        this.超限 = false;
+
+        求解结果 结果 = null;
+        int 直接成五 = 生成器.查找任一成五点(攻击方);
+        if (直接成五 >= 0) {
+            结果 = 生成结果(直接成五, 0, 开始);
+        } else {
+            boolean 仅限冲四 = 允许活三 && 生成器.存在活三(防守方);
+            for (int 步数 = 1; 步数 <= 最大步数 && !超限; 步数 += 2) {
+                if (攻击(步数, -1, 仅限冲四)) {
+                    结果 = 生成结果(根胜着, 步数, 开始);
+                    break;
+                }
+            }
+        }
+
+        上次节点数 = 节点数;
+        this.棋盘 = null;
+        this.生成器.设置棋盘(null);
+        return 结果;
+    }
+
+    private 求解结果 生成结果(int 格子, int 步数, long 开始) {
+        GomokuEvaluator.Move 着法 = new GomokuEvaluator.Move(格子 / GomokuBoard.BOARD_SIZE,
+                格子 % GomokuBoard.BOARD_SIZE, PatternEvaluator.连五);
+        return new 求解结果(着法, 允许活三 ? 类型.VCT : 类型.VCF, 步数, 节点数,
+                (System.nanoTime() - 开始) / 1000);
+    }
+
+    /**
+     * 攻击方节点：任一着法必胜即可
+     * @param 上一防守格 防守方上一手，-1表示根节点（整盘检查防守方的成五点）
+     */
+    private boolean 攻击(int 剩余, int 上一防守格, boolean 仅限冲四) {
+        if (++节点数 > 节点上限 || 已取消) {
+            超限 = true;
+            return false;
+        }
+        if (剩余 <= 0) {
+            return false;
+        }
+
+        int 层 = 棋盘.getMoveCount() - 根步数;
+        long 键 = 键(仅限冲四);
+        int 槽 = 槽位(键);
+        long 数据 = 表[槽 + 1];
+        if (表[槽] == 键 && (数据 & 有效位) != 0) {
+            int 已知步数 = (int) (数据 >>> 1) & 0xFF;
+            boolean 已知必胜 = (数据 & 1) != 0;
+            if (已知必胜 ? 已知步数 <= 剩余 : 已知步数 >= 剩余) {
+                if (已知必胜 && 层 == 0) {
+                    根胜着 = (int) (数据 >>> 16 & 0x3FF) - 1;
+                }
+                return 已知必胜;
+            }
+        }
+
+        int[] 候选 = 攻击缓冲[层];
+        int 候选数;
+
+        // 防守方有成五点时必须先堵，堵的这一手本身要构成威胁，或者盘面上已有攻击方的活三
+        boolean 依靠已有活三 = false;
+        int 防守五点 = 上一防守格 < 0 ? 生成器.查找成五点(防守方) : 生成器.经过格子的成五点(防守方, 上一防守格, -1);
+        if (防守五点 == -2) {
+            return 记录(键, 槽, 剩余, false, -1);
+        }
+        if (防守五点 >= 0) {
+            boolean 含活三 = 允许活三 && !仅限冲四;
+            if (!生成器.经过格子成四(攻击方, 防守五点) && !(含活三 && 生成器.经过格子成三(攻击方, 防守五点))) {
+                依靠已有活三 = 含活三 && 生成器.存在活三(攻击方);
+                if (!依靠已有活三) {
+                    return 记录(键, 槽, 剩余, false, -1);
+                }
+            }
+            候选[0] = 防守五点;
+            候选数 = 1;
+        } else {
+            候选数 = 生成器.生成攻击着法(候选, 攻击方, 允许活三 && !仅限冲四);
+        }
+
+        for (int i = 0; i < 候选数; i++) {
+            int 格子 = 候选[i];
+            int x = 格子 / GomokuBoard.BOARD_SIZE;
+            int y = 格子 % GomokuBoard.BOARD_SIZE;
+            if (生成器.是否禁手(攻击方, 格子)) {
+                continue;
+            }
+
+            棋盘.makeMove(x, y, 攻击方);
+            boolean 必胜 = 防守(剩余 - 1, 依靠已有活三 ? -1 : 格子, -1, 仅限冲四);
+            棋盘.undoMove(x, y);
+
+            if (必胜) {
+                if (层 == 0) {
+                    根胜着 = 格子;
+                }
+                return 记录(键, 槽, 剩余, true, 格子);
+            }
+            if (超限) {
+                return false;
+            }
+        }
+        return 记录(键, 槽, 剩余, false, -1);
+    }
+
+    /**
+     * 防守方节点：所有应手都必须被攻破
+     * @param 攻击格 攻击方刚下的一手，-1表示威胁不在这一手上，整盘检查
+     * @param 补充格 防守方反冲四后攻击方被迫堵的一手，没有为-1；两手所在的线上都可能有威胁
+     */
+    private boolean 防守(int 剩余, int 攻击格, int 补充格, boolean 仅限冲四) {
+        if (++节点数 > 节点上限 || 已取消) {
+            超限 = true;
+            return false;
+        }
+
+        // 冲四：只能堵成五点；两个以上成五点无法同时封堵
+        int 攻击五点 = 攻击格 < 0 ? 生成器.查找成五点(攻击方) : 生成器.经过格子的成五点(攻击方, 攻击格, 补充格);
+        if (攻击五点 == -2) {
+            return true;
+        }
+        if (攻击五点 >= 0) {
+            return 应对(剩余, 攻击五点, 仅限冲四);
+        }
+
+        if (!允许活三 || 仅限冲四 || 剩余 <= 1) {
+            return false;
+        }
+
+        // 活三：收集所有能破坏活三窗口的空位，再加上防守方的反冲四
+        int 层 = 棋盘.getMoveCount() - 根步数;
+        int[] 应手 = 防守缓冲[层];
+        int 应手数 = 生成器.生成活三防守点(应手, 攻击方, 攻击格, 补充格);
+        if (应手数 == 0) {
+            return false; // 没有形成活三，不是威胁
+        }
+        int 防守点数 = 应手数;
+        应手数 = 生成器.追加成四着法(应手, 应手数, 防守方);
+
+        for (int i = 0; i < 应手数; i++) {
+            int 格子 = 应手[i];
+            boolean 必胜 = i < 防守点数
+                    ? 应对(剩余, 格子, 仅限冲四)
+                    : 反冲四(剩余, 格子, 攻击格, 仅限冲四);
+            if (!必胜) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 防守方在指定格子落子后轮到攻击方
+     */
+    private boolean 应对(int 剩余, int 格子, boolean 仅限冲四) {
+        int x = 格子 / GomokuBoard.BOARD_SIZE;
+        int y = 格子 % GomokuBoard.BOARD_SIZE;
+        if (生成器.是否禁手(防守方, 格子)) {
+            return true; // 黑棋不能在禁手点防守
+        }
+
+        棋盘.makeMove(x, y, 防守方);
+        boolean 必胜 = 攻击(剩余 - 1, 格子, 仅限冲四 || 生成器.经过格子成三(防守方, 格子));
+        棋盘.undoMove(x, y);
+        return 必胜;
+    }
+
+    /**
+     * 防守方以冲四反击：攻击方被迫封堵，之后防守方仍需应对原来的活三
+     */
+    private boolean 反冲四(int 剩余, int 格子, int 攻击格, boolean 仅限冲四) {
+        int x = 格子 / GomokuBoard.BOARD_SIZE;
+        int y = 格子 % GomokuBoard.BOARD_SIZE;
+        if (生成器.是否禁手(防守方, 格子)) {
+            return true;
+        }
+
+        棋盘.makeMove(x, y, 防守方);
+        boolean 必胜;
+        int 封堵 = 生成器.经过格子的成五点(防守方, 格子, -1);
+        if (封堵 < 0 || 剩余 < 3) {
+            必胜 = false; // 双成五点无法封堵；或剩余步数不足以继续
+        } else {
+            int bx = 封堵 / GomokuBoard.BOARD_SIZE;
+            int by = 封堵 % GomokuBoard.BOARD_SIZE;
+            if (生成器.是否禁手(攻击方, 封堵)) {
+                必胜 = false;
+            } else {
+                棋盘.makeMove(bx, by, 攻击方);
+                必胜 = 防守(剩余 - 2, 攻击格, 封堵, 仅限冲四 || 生成器.经过格子成三(防守方, 格子));
+                棋盘.undoMove(bx, by);
+            }
+        }
+        棋盘.undoMove(x, y);
+        return 必胜;
+    }
+
+    // ---- 置换表 ----
+
+    private long 键(boolean 仅限冲四) {
+        int 变体 = (攻击方 == GomokuBoard.BLACK ? 0 : 3) + (允许活三 ? (仅限冲四 ? 2 : 1) : 0);
+        return 棋盘.getZobristHash() ^ 盐[变体];
+    }
+
+    private static int 槽位(long 键) {
+        return ((int) (键 ^ (键 >>> 32)) & (表大小 - 1)) * 2;
+    }
+
+    private boolean 记录(long 键, int 槽, int 剩余, boolean 必胜, int 胜着) {
+        if (!超限) {
+            表[槽] = 键;
+            表[槽 + 1] = 有效位 | ((long) (胜着 + 1) << 16) | ((long) Math.min(剩余, 0xFF) << 1) | (必胜 ? 1 : 0);
+        }
+        return 必胜;
+    }
+
+    /**
+     * 清空置换表，用于新对局
+     */
+    public void 清空() {
+        Arrays.fill(表, 0);
+    }
+
+    /**
+     * 设置最大搜索步数（双方合计）
+     */
+    public void 设置最大步数(int VCF步数, int VCT步数) {
+        this.VCF最大步数 = Math.max(1, Math.min(最大层数 - 4, VCF步数));
+        this.VCT最大步数 = Math.max(1, Math.min(最大层数 - 4, VCT步数));
+    }
+
+    /**
+     * 设置单次求解的节点上限，超过后放弃求解
+     */
+    public void 设置节点上限(int 节点上限) {
+        this.节点上限 = Math.max(1, 节点上限);
+    }
+
+    /**
+     * 从其他线程请求停止：正在进行的求解在下一个节点按超出预算放弃，
+     * 之后开始的求解也立即放弃，直到调用清除取消()
+     */
+    public void 取消搜索() {
+        已取消 = true;
+    }
+
+    /**
+     * 复位取消请求，应在开始新求解之前、由发起求解的线程调用
+     */
+    public void 清除取消() {
+        已取消 = false;
+    }
+
+    /**
+     * 上一次求解访问的节点数
+     */
+    public int 获取上次节点数() {
+        return 上次节点数;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.myfirstapp.ai;
+
+/**
+ * 一局棋的时间分配 - 在整局预算内为每一步给出搜索的时间限制
+ * - 开局：棋形简单、置换表里也没有什么可用的，只给少量时间
+ * - 强制应手：检查紧急威胁直接给出着法，几乎不用时间，省下的预算留给后面
+ * - 双方活三、冲四多的局面：按威胁数加时
+ * - 前面用时少则放宽，用得多则收紧，单步不超过难度时间的最大倍数和剩余预算的一部分
+ * 搜索内部按软限制停止加深，最佳着法在迭代间变化时再延长（见TimeManager），
+ * 所以实际用时通常只有分配限制的几分之一，整局预算按这个平均比例计算
+ */
+class TimeAllocator {
+
+    private static final int 每局参考步数 = 30;     // 一方一局大约走的步数
+    private static final int 最少剩余步数 = 10;     // 超过参考步数后仍按至少这么多步分摊剩余预算
+    private static final int 平均用时比例 = 3;      // 搜索平均用掉时间限制的1/3
+    private static final int 开局步数 = 6;          // 棋盘上少于这么多子时视为开局
+    private static final double 开局系数 = 0.35;
+    private static final double 每个威胁加时 = 0.2;
+    private static final double 最大威胁系数 = 1.8;
+    private static final double 最小预算系数 = 0.3;
+    private static final double 最大预算系数 = 1.5;
+    private static final int 单步最大倍数 = 2;      // 单步不超过难度时间的倍数
+    private static final int 单步最多占剩余 = 3;    // 单步不超过剩余预算的1/3
+    private static final long 最短限制 = 100;       // 毫秒，预算耗尽后每步仍至少搜这么久
+
+    private long 单步时间;
+    private long 剩余时间;
+    private int 已走步数;
+
+    TimeAllocator(long 单步时间) {
+        新对局(单步时间);
+    }
+
+    /**
+     * 按难度的单步时间（毫秒）重置整局预算，不大于0为不限时间
+     */
+    void 新对局(long 单步时间) {
+        this.单步时间 = 单步时间;
+        this.剩余时间 = 单步时间 / 平均用时比例 * 每局参考步数;
+        this.已走步数 = 0;
+    }
+
+    /**
+     * 本步搜索的时间限制（毫秒），不限时间时返回0
+     */
+    long 分配(GomokuBoard 棋盘) {
+        if (单步时间 <= 0) {
+            return 0;
+        }
+        double 复杂度系数 = 棋盘.getMoveCount() < 开局步数
+                ? 开局系数
+                : Math.min(最大威胁系数, 1 + 每个威胁加时 * 威胁数(棋盘));
+
+        // 剩余预算与按难度正常用时走完剩余步数所需时间之比
+        int 预计剩余步数 = Math.max(最少剩余步数, 每局参考步数 - 已走步数);
+        double 预算系数 = (double) 剩余时间 * 平均用时比例 / ((long) 预计剩余步数 * 单步时间);
+        预算系数 = Math.max(最小预算系数, Math.min(最大预算系数, 预算系数));
+
+        long 限制 = (long) (单步时间 * 复杂度系数 * 预算系数);
+        限制 = Math.min(限制, Math.min(单步时间 * 单步最大倍数, 剩余时间 / 单步最多占剩余));
+        return Math.max(最短限制, 限制);
+    }
+
+    /**
+     * 一步结束后记录实际用时（毫秒），包括威胁检查直接给出着法的情况
+     */
+    void 记录(long 用时) {
+        剩余时间 -= 用时;
+        已走步数++;
+    }
+
+    long 获取剩余时间() {
+        return 剩余时间;
+    }
+
+    /**
+     * 双方的活四、冲四、活三总数
+     */
+    private static int 威胁数(GomokuBoard 棋盘) {
+        int 数量 = 0;
+        for (int 玩家 = GomokuBoard.BLACK; 玩家 <= GomokuBoard.WHITE; 玩家++) {
+            数量 += 棋盘.getPatternCount(玩家, LinePatternTable.类_活四)
+                    + 棋盘.getPatternCount(玩家, LinePatternTable.类_冲四)
+                    + 棋盘.getPatternCount(玩家, LinePatternTable.类_活三);
+        }
+        return 数量;
+    }
+}
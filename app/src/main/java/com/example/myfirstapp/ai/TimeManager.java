@@ -0,0 +1,102 @@
+package com.example.myfirstapp.ai;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索计时 - 软/硬时间限制与节点预算，由一次搜索的所有线程共享
+ * - 硬限制：到达后所有线程停止，未完成的迭代作废，采用上一次完成的迭代
+ * - 软限制：超过后不再开始新的一层
+ * - 节点预算：所有线程合计的节点数上限，与CPU速度无关，单线程搜索时结果可复现
+ * 搜索节点每检查间隔个节点调用一次应当停止()，只在这时读System.nanoTime()
+ *
+ * 完成一层后用有效分支因子（本层节点数 / 上一层节点数）预估下一层的节点数和耗时，
+ * 预计在硬限制或节点预算内完成不了就不开始，省下注定作废的那次迭代
+ * 最佳着法在相邻两层之间变化说明局面还没看清，搜索可以把软限制向硬限制延长
+ * 时间限制不大于0（或大到换算成纳秒会溢出）表示不限时间，节点预算不大于0表示不限节点
+ */
+class TimeManager {
+
+    static final int 检查间隔 = 256;
+    static final int 检查掩码 = 检查间隔 - 1;
+
+    private static final double 默认分支因子 = 4.0;  // 只完成一层时没有上一层可比
+    private static final double 最小分支因子 = 1.5;
+    private static final long 不限时间阈值 = Long.MAX_VALUE / 4_000_000L;  // 更大的限制换算成纳秒会溢出，视为不限
+
+    private long 开始纳秒;
+    private boolean 限时;
+    private long 软截止纳秒;
+    private long 硬截止纳秒;
+    private long 节点预算;
+    private final AtomicLong 已用节点 = new AtomicLong();
+
+    // 主线程的迭代统计
+    private long 上层节点数;
+    private double 有效分支因子;
+
+    /**
+     * 开始一次搜索
+     * @param 软限制 毫秒，超过后不再加深
+     * @param 硬限制 毫秒，超过后立即停止
+     */
+    void 开始(long 软限制, long 硬限制, long 节点预算) {
+        开始纳秒 = System.nanoTime();
+        限时 = 硬限制 > 0 && 硬限制 < 不限时间阈值;
+        软截止纳秒 = 开始纳秒 + Math.min(软限制, 硬限制) * 1_000_000L;
+        硬截止纳秒 = 开始纳秒 + 硬限制 * 1_000_000L;
+        this.节点预算 = 节点预算 > 0 ? 节点预算 : Long.MAX_VALUE;
+        已用节点.set(0);
+        上层节点数 = 0;
+        有效分支因子 = 0;
+    }
+
+    /**
+     * 搜索线程每检查间隔个节点调用一次，true表示必须停止
+     */
+    boolean 应当停止(int 新增节点) {
+        return 已用节点.addAndGet(新增节点) >= 节点预算 || (限时 && System.nanoTime() - 硬截止纳秒 > 0);
+    }
+
+    /**
+     * 主线程完成一层后调用，决定是否开始下一层
+     * @param 本层节点数 这一层迭代的节点数
+     * @param 本层纳秒 这一层迭代的耗时
+     */
+    boolean 继续加深(long 本层节点数, long 本层纳秒) {
+        if (上层节点数 > 0) {
+            有效分支因子 = Math.max(最小分支因子, (double) 本层节点数 / 上层节点数);
+        }
+        上层节点数 = Math.max(1, 本层节点数);
+        double 分支因子 = 有效分支因子 > 0 ? 有效分支因子 : 默认分支因子;
+
+        if (限时) {
+            long 现在 = System.nanoTime();
+            if (现在 - 软截止纳秒 > 0 || 现在 + (long) (本层纳秒 * 分支因子) - 硬截止纳秒 > 0) {
+                return false;
+            }
+        }
+        return 节点预算 == Long.MAX_VALUE || 已用节点.get() + (long) (本层节点数 * 分支因子) <= 节点预算;
+    }
+
+    /**
+     * 最佳着法不稳定时由主线程调用：软限制按倍数延长，但不超过硬限制
+     */
+    void 延长软限制(double 倍数) {
+        if (!限时) {
+            return;
+        }
+        long 新软限制 = 开始纳秒 + (long) ((软截止纳秒 - 开始纳秒) * 倍数);
+        软截止纳秒 = 新软限制 - 硬截止纳秒 > 0 ? 硬截止纳秒 : 新软限制;
+    }
+
+    /**
+     * 最近一层的有效分支因子，还没有时为0
+     */
+    double 获取有效分支因子() {
+        return 有效分支因子;
+    }
+
+    long 已用毫秒() {
+        return (System.nanoTime() - 开始纳秒) / 1_000_000L;
+    }
+}
@@ -1,17 +1,69 @@
 package com.example.myfirstapp.ai;
 
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Transposition Table for caching evaluated positions
  * Uses Zobrist hashing for position identification
+ *
+ * Each slot is two longs in one AtomicLongArray: {hash ^ salt ^ data, data}.
+ * A reader accepts a slot only if key ^ data equals its own hash ^ salt, so a
+ * slot torn by a concurrent writer simply reads as a miss. No locks and no
+ * per-store allocation, which makes one table safe to share between threads.
+ *
+ * Slots are grouped in buckets of 4: slot 0 keeps the most valuable entry,
+ * slots 1-3 always accept new entries, evicting the least valuable one. An
+ * entry's value is its depth minus AGE_WEIGHT per generation of age.
+ * newSearch() bumps an 8-bit generation counter so entries from earlier moves
+ * age out instead of squatting. Age is the wrapping distance
+ * (generation - entry generation) & 0xFF, never an equality test, so the
+ * counter can wrap freely. Only an entry left untouched for an exact
+ * multiple of 256 searches looks fresh again. clear() swaps the salt,
+ * which invalidates every entry in O(1), and bumps a 5-bit epoch stored in
+ * each entry; entries from an earlier epoch count as empty slots, so they are
+ * overwritten first instead of outranking new entries by depth. The epoch
+ * wraps after 32 clears, when a surviving entry only regains its old rank in
+ * replacement; the salt still keeps it from being probed.
+ *
+ * data layout (low to high):
+ *   bits  0-31  score
+ *   bits 32-39  depth (0-255)
+ *   bits 40-41  flag
+ *   bits 42-49  best move cell (x * BOARD_SIZE + y), 255 = none
+ *   bits 50-57  generation
+ *   bits 58-62  epoch (clear() count)
+ *   bit  63     valid
  */
 public class TranspositionTable {
 
     private static final int DEFAULT_SIZE = 1 << 20; // 1M entries
-    private static final int MASK = DEFAULT_SIZE - 1;
 
-    private final Entry[] table;
-    private int hits = 0;
-    private int misses = 0;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int FLAG_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int GENERATION_SHIFT = 50;
+    private static final int EPOCH_SHIFT = 58;
+    private static final int EPOCH_MASK = 0x1F;
+    private static final long VALID_BIT = 1L << 63;
+    private static final int NO_MOVE_CELL = 0xFF;
+
+    private static final int BUCKET_SLOTS = 4;
+    private static final int AGE_WEIGHT = 4; // one generation of age counts as this many plies of depth
+
+    /** probe() result for a missing entry; never a valid data word */
+    public static final long MISS = 0L;
+    public static final int NO_MOVE = -1;
+
+    private final AtomicLongArray table;
+    private final int bucketMask;
+    private final Random saltSource = new Random();
+    private volatile long salt;
+    private volatile int generation;
+    private volatile int epoch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public TranspositionTable() {
         this(DEFAULT_SIZE);
@@ -23,81 +75,210 @@ public class TranspositionTable {
         while (actualSize < size) {
             actualSize <<= 1;
         }
-        table = new Entry[actualSize];
+        actualSize = Math.max(actualSize, BUCKET_SLOTS);
+        table = new AtomicLongArray(actualSize * 2);
+        bucketMask = actualSize / BUCKET_SLOTS - 1;
+        salt = saltSource.nextLong();
+    }
+
+    /**
+     * Start a new root search: entries stored from now on belong to the new generation
+     * and older ones become preferred replacement victims. Resets the hit statistics.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+        hits.reset();
+        misses.reset();
     }
 
     /**
      * Store evaluation result
      */
     public void store(long zobristHash, int depth, int score, int flag, GomokuEvaluator.Move bestMove) {
-        int index = getIndex(zobristHash);
+        store(zobristHash, depth, score, flag,
+                bestMove == null ? NO_MOVE : bestMove.x * GomokuBoard.BOARD_SIZE + bestMove.y);
+    }
+
+    /**
+     * Store evaluation result, best move given as a cell index (NO_MOVE for none)
+     */
+    public void store(long zobristHash, int depth, int score, int flag, int bestMoveCell) {
+        long key = zobristHash ^ salt;
+        int gen = generation;
+        int ep = epoch;
+        int base = getBucket(zobristHash);
+        long data = pack(depth, score, flag, bestMoveCell, gen, ep);
 
-        Entry entry = table[index];
-        if (entry == null || entry.depth <= depth) {
-            table[index] = new Entry(zobristHash, depth, score, flag, bestMove);
+        // Same position already in the bucket: update it in place unless it holds a more valuable result
+        for (int i = 0; i < BUCKET_SLOTS; i++) {
+            int slot = base + i * 2;
+            long old = table.get(slot + 1);
+            if (isLive(old, ep) && (table.get(slot) ^ old) == key) {
+                if (worthOf(old, gen) > depth) {
+                    return;
+                }
+                write(slot, key, data);
+                return;
+            }
         }
+
+        // Depth-preferred slot: take it when empty or not worth more than the new entry;
+        // demote the entry it held if it is worth more than the always-replace victim
+        long first = table.get(base + 1);
+        if (!isLive(first, ep) || worthOf(first, gen) <= depth) {
+            if (isLive(first, ep)) {
+                int victim = replacementSlot(base, gen, ep);
+                long victimData = table.get(victim + 1);
+                if (!isLive(victimData, ep) || worthOf(victimData, gen) < worthOf(first, gen)) {
+                    write(victim, table.get(base) ^ first, first);
+                }
+            }
+            write(base, key, data);
+            return;
+        }
+
+        write(replacementSlot(base, gen, ep), key, data);
     }
 
     /**
      * Lookup evaluation result
+     * @return packed data word, or MISS; decode with depthOf/scoreOf/flagOf/moveOf
      */
-    public Entry lookup(long zobristHash) {
-        int index = getIndex(zobristHash);
-        Entry entry = table[index];
+    public long probe(long zobristHash) {
+        long key = zobristHash ^ salt;
+        int base = getBucket(zobristHash);
+        long best = MISS;
 
-        if (entry != null && entry.zobristHash == zobristHash) {
-            hits++;
-            return entry;
+        for (int i = 0; i < BUCKET_SLOTS; i++) {
+            int slot = base + i * 2;
+            long data = table.get(slot + 1);
+            if ((data & VALID_BIT) != 0 && (table.get(slot) ^ data) == key
+                    && (best == MISS || depthOf(data) > depthOf(best))) {
+                best = data;
+            }
         }
 
-        misses++;
-        return null;
+        if (best != MISS) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return best;
     }
 
     /**
      * Clear transposition table
      */
     public void clear() {
-        for (int i = 0; i < table.length; i++) {
-            table[i] = null;
-        }
-        hits = 0;
-        misses = 0;
+        salt = saltSource.nextLong();
+        epoch = (epoch + 1) & EPOCH_MASK;
+        generation = (generation + 1) & 0xFF;
+        hits.reset();
+        misses.reset();
     }
 
     /**
      * Get hit rate for performance monitoring
      */
     public double getHitRate() {
-        int total = hits + misses;
-        return total > 0 ? (double) hits / total : 0.0;
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    public static int depthOf(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int scoreOf(long data) {
+        return (int) data;
     }
 
-    private int getIndex(long zobristHash) {
-        return (int) (zobristHash & (table.length - 1));
+    public static int flagOf(long data) {
+        return (int) (data >>> FLAG_SHIFT) & 0x3;
     }
 
     /**
-     * Transposition table entry
+     * Best move cell index (x * BOARD_SIZE + y), or NO_MOVE
      */
-    public static class Entry {
-        public final long zobristHash;
-        public final int depth;
-        public final int score;
-        public final int flag;
-        public final GomokuEvaluator.Move bestMove;
-
-        public Entry(long zobristHash, int depth, int score, int flag, GomokuEvaluator.Move bestMove) {
-            this.zobristHash = zobristHash;
-            this.depth = depth;
-            this.score = score;
-            this.flag = flag;
-            this.bestMove = bestMove;
+    public static int moveOf(long data) {
+        int cell = (int) (data >>> MOVE_SHIFT) & 0xFF;
+        return cell == NO_MOVE_CELL ? NO_MOVE : cell;
+    }
+
+    /**
+     * Whether a slot holds an entry stored since the last clear(); anything else is free to overwrite
+     */
+    private static boolean isLive(long data, int ep) {
+        return (data & VALID_BIT) != 0 && ((int) (data >>> EPOCH_SHIFT) & EPOCH_MASK) == ep;
+    }
+
+    private static int generationOf(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Generations since the entry was stored, modulo the 8-bit counter
+     */
+    private static int ageOf(long data, int gen) {
+        return (gen - generationOf(data)) & 0xFF;
+    }
+
+    /**
+     * Replacement value of an entry: its depth, less AGE_WEIGHT plies per generation of age
+     */
+    private static int worthOf(long data, int gen) {
+        return depthOf(data) - ageOf(data, gen) * AGE_WEIGHT;
+    }
+
+    private static long pack(int depth, int score, int flag, int bestMoveCell, int gen, int ep) {
+        int cell = bestMoveCell < 0 ? NO_MOVE_CELL : bestMoveCell;
+        int clampedDepth = Math.max(0, Math.min(0xFF, depth));
+        return (score & 0xFFFFFFFFL)
+                | ((long) clampedDepth << DEPTH_SHIFT)
+                | ((long) (flag & 0x3) << FLAG_SHIFT)
+                | ((long) cell << MOVE_SHIFT)
+                | ((long) gen << GENERATION_SHIFT)
+                | ((long) ep << EPOCH_SHIFT)
+                | VALID_BIT;
+    }
+
+    /**
+     * Always-replace slot to overwrite: an empty or cleared one if any, else the one
+     * with the lowest depth after penalising age
+     */
+    private int replacementSlot(int base, int gen, int ep) {
+        int victim = base + 2;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int i = 1; i < BUCKET_SLOTS; i++) {
+            int slot = base + i * 2;
+            long data = table.get(slot + 1);
+            if (!isLive(data, ep)) {
+                return slot;
+            }
+            int worth = worthOf(data, gen);
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = slot;
+            }
         }
+        return victim;
+    }
+
+    private void write(int slot, long key, long data) {
+        table.set(slot, key ^ data);
+        table.set(slot + 1, data);
+    }
+
+    /**
+     * Index of the first long of the bucket holding this hash
+     */
+    private int getBucket(long zobristHash) {
+        return ((int) zobristHash & bucketMask) * BUCKET_SLOTS * 2;
     }
 
     // Flag constants for entry types
     public static final int EXACT = 0;      // Exact score
     public static final int LOWER_BOUND = 1; // Alpha cutoff (fail-high)
     public static final int UPPER_BOUND = 2; // Beta cutoff (fail-low)
-}
\ No newline at end of file
+}
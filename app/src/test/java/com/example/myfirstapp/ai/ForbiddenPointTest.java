@@ -0,0 +1,124 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * GomokuBoard增量禁手表的一致性测试
+ * 在随机的落子/悔棋序列和棋盘副本上，isForbiddenPoint与获取所有禁手点
+ * 必须与落子-检查-悔棋的定义（ForbiddenMoveDetector.获取禁手类型）逐格一致
+ */
+public class ForbiddenPointTest {
+
+    private static final int 局数 = 300;
+
+    @Test
+    public void isForbiddenPoint_matchesMakeCheckUndo() {
+        Random 随机 = new Random(7);
+        int 禁手总数 = 0;
+        for (int 局 = 0; 局 < 局数; 局++) {
+            GomokuBoard 棋盘 = new GomokuBoard();
+            Deque<int[]> 着法栈 = new ArrayDeque<>();
+            int 步数 = 20 + 随机.nextInt(80);
+            for (int 步 = 0; 步 < 步数; 步++) {
+                随机走一步(棋盘, 着法栈, 随机);
+                if (随机.nextInt(3) == 0) {
+                    禁手总数 += 比较全盘(随机.nextBoolean() ? 棋盘 : new GomokuBoard(棋盘));
+                }
+            }
+        }
+        // 随机局面中必须出现过禁手，否则比较没有意义
+        assertTrue("no forbidden points were generated", 禁手总数 > 0);
+    }
+
+    @Test
+    public void boardCopy_keepsForbiddenMapIndependent() {
+        Random 随机 = new Random(11);
+        for (int 局 = 0; 局 < 局数; 局++) {
+            GomokuBoard 原棋盘 = new GomokuBoard();
+            Deque<int[]> 原着法 = new ArrayDeque<>();
+            for (int 步 = 0; 步 < 30 + 随机.nextInt(40); 步++) {
+                随机走一步(原棋盘, 原着法, 随机);
+            }
+            // 原棋盘的禁手表可能已刷新，也可能还有待刷新的线，两种状态都要复制正确
+            if (随机.nextBoolean()) {
+                原棋盘.isForbiddenPoint(7, 7);
+            }
+            GomokuBoard 副本 = new GomokuBoard(原棋盘);
+            Deque<int[]> 副本着法 = new ArrayDeque<>(原着法);
+
+            // 两边各自继续走，互不影响
+            for (int 步 = 0; 步 < 10; 步++) {
+                随机走一步(原棋盘, 原着法, 随机);
+                随机走一步(副本, 副本着法, 随机);
+            }
+            比较全盘(原棋盘);
+            比较全盘(副本);
+        }
+    }
+
+    @Test
+    public void doubleThree_forbidsBlackOnly() {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        // 黑棋在(7,7)处形成三三：横向和纵向各有两子
+        棋盘.makeMove(7, 5, GomokuBoard.BLACK);
+        棋盘.makeMove(7, 6, GomokuBoard.BLACK);
+        棋盘.makeMove(5, 7, GomokuBoard.BLACK);
+        棋盘.makeMove(6, 7, GomokuBoard.BLACK);
+
+        assertTrue(ForbiddenMoveDetector.是否禁手(棋盘, 7, 7, GomokuBoard.BLACK));
+        assertEquals("三三禁手", ForbiddenMoveDetector.获取禁手类型(棋盘, 7, 7, GomokuBoard.BLACK));
+        assertFalse(ForbiddenMoveDetector.是否禁手(棋盘, 7, 7, GomokuBoard.WHITE));
+        assertTrue(ForbiddenMoveDetector.获取所有禁手点(棋盘, GomokuBoard.WHITE).isEmpty());
+    }
+
+    /**
+     * 多数时候在中心区域落子以制造棋型，偶尔悔棋或落在任意位置
+     */
+    private static void 随机走一步(GomokuBoard 棋盘, Deque<int[]> 着法栈, Random 随机) {
+        if (!着法栈.isEmpty() && 随机.nextInt(4) == 0) {
+            int[] 着法 = 着法栈.pop();
+            棋盘.undoMove(着法[0], 着法[1]);
+            return;
+        }
+        int x = 4 + 随机.nextInt(7);
+        int y = 4 + 随机.nextInt(7);
+        if (随机.nextInt(5) == 0) {
+            x = 随机.nextInt(GomokuBoard.BOARD_SIZE);
+            y = 随机.nextInt(GomokuBoard.BOARD_SIZE);
+        }
+        int 玩家 = 随机.nextInt(3) == 0 ? GomokuBoard.WHITE : GomokuBoard.BLACK;
+        if (棋盘.makeMove(x, y, 玩家)) {
+            着法栈.push(new int[]{x, y});
+        }
+    }
+
+    /**
+     * 逐格比较增量禁手表与落子-检查-悔棋的结果，返回禁手点数
+     */
+    private static int 比较全盘(GomokuBoard 棋盘) {
+        long 哈希 = 棋盘.getZobristHash();
+        BitSet 批量结果 = ForbiddenMoveDetector.获取所有禁手点(棋盘, GomokuBoard.BLACK);
+        int 数量 = 0;
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                boolean 定义 = !ForbiddenMoveDetector.获取禁手类型(棋盘, x, y, GomokuBoard.BLACK).isEmpty();
+                if (棋盘.isForbiddenPoint(x, y) != 定义 || 批量结果.get(x * GomokuBoard.BOARD_SIZE + y) != 定义) {
+                    fail("forbidden map differs from make/check/undo at (" + x + "," + y + "), expected "
+                            + 定义 + "\n" + 棋盘);
+                }
+                if (定义) {
+                    数量++;
+                }
+            }
+        }
+        assertEquals("board changed by the check", 哈希, 棋盘.getZobristHash());
+        return 数量;
+    }
+}
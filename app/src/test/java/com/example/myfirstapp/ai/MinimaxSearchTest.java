@@ -0,0 +1,112 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.*;
+
+/**
+ * MinimaxSearch跟踪对局时沿上次主变例续接迭代加深
+ * 只有走法沿主变例前进、且根局面在置换表里的条目仍不浅于续接深度时才跳层
+ * 根节点拆分复用的任务实例跟随主搜索的深度设置
+ */
+public class MinimaxSearchTest {
+
+    private static final int[][] 开局 = {{7, 7}, {7, 8}, {8, 8}, {6, 6}, {8, 7}, {8, 6}, {9, 8}, {10, 9}};
+
+    @Test
+    public void pvResume_jumpsWhenGameFollowsPvAndTableHoldsIt() throws Exception {
+        MinimaxSearch 搜索 = new MinimaxSearch(0, 5);
+        搜索.开始对局();
+        GomokuBoard 棋盘 = 开局棋盘();
+        MinimaxSearch.搜索结果 结果 = 搜索.寻找最佳下法(棋盘, GomokuBoard.BLACK);
+        int[] 主变例 = 主变例(搜索);
+        assertEquals(5, 结果.达到深度);
+        assertTrue(主变例.length >= 3);
+
+        沿主变例走两步(棋盘, 主变例);
+        assertEquals(3, 搜索.续接深度(棋盘));
+
+        // 走法偏离主变例：不续接
+        棋盘.undoMove(主变例[1] / GomokuBoard.BOARD_SIZE, 主变例[1] % GomokuBoard.BOARD_SIZE);
+        int 偏离 = 主变例[1] == 0 ? 1 : 0;
+        assertTrue(棋盘.makeMove(偏离 / GomokuBoard.BOARD_SIZE, 偏离 % GomokuBoard.BOARD_SIZE, GomokuBoard.WHITE));
+        assertEquals(0, 搜索.续接深度(棋盘));
+    }
+
+    @Test
+    public void pvResume_fallsBackWhenTableNoLongerHoldsPv() throws Exception {
+        MinimaxSearch 搜索 = new MinimaxSearch(0, 5);
+        搜索.开始对局();
+        GomokuBoard 棋盘 = 开局棋盘();
+        MinimaxSearch.搜索结果 结果 = 搜索.寻找最佳下法(棋盘, GomokuBoard.BLACK);
+        int[] 主变例 = 主变例(搜索);
+        assertEquals(5, 结果.达到深度);
+        assertTrue(主变例.length >= 3);
+
+        // 主变例仍吻合，但置换表里的条目已经没有了
+        沿主变例走两步(棋盘, 主变例);
+        搜索.清空缓存();
+        assertEquals(0, 搜索.续接深度(棋盘));
+
+        // 回退到逐层加深，仍然搜满深度
+        MinimaxSearch.搜索结果 续搜 = 搜索.寻找最佳下法(棋盘, GomokuBoard.BLACK);
+        assertNotNull(续搜.最佳着法);
+        assertEquals(5, 续搜.达到深度);
+    }
+
+    @Test
+    public void rootSplit_followsMaxDepthChangeLikeSingleThread() {
+        int[][] 局面 = {{5, 6}, {9, 6}, {6, 6}, {8, 8}, {6, 7}, {8, 5}, {9, 5}, {7, 8}, {9, 7}, {8, 7}, {6, 5}, {7, 9}};
+        GomokuBoard 棋盘 = new GomokuBoard();
+        int 玩家 = GomokuBoard.BLACK;
+        for (int[] 着法 : 局面) {
+            棋盘.makeMove(着法[0], 着法[1], 玩家);
+            玩家 = GomokuBoard.getOpponent(玩家);
+        }
+
+        // 先以深度2拆分搜索一次，任务实例在此时创建；改成深度5后两边都从空的置换表和排序表开始
+        MinimaxSearch 拆分 = new MinimaxSearch(0, 2);
+        拆分.设置线程数(4);
+        拆分.设置并行模式(MinimaxSearch.并行模式.根节点拆分);
+        拆分.寻找最佳下法(new GomokuBoard(棋盘), 玩家);
+        拆分.设置最大深度(5);
+        拆分.清空缓存();
+        MinimaxSearch.搜索结果 拆分结果 = 拆分.寻找最佳下法(new GomokuBoard(棋盘), 玩家);
+        拆分.关闭();
+
+        MinimaxSearch.搜索结果 单线程结果 = new MinimaxSearch(0, 5).寻找最佳下法(new GomokuBoard(棋盘), 玩家);
+        assertEquals(5, 拆分结果.达到深度);
+        assertEquals(单线程结果.分数, 拆分结果.分数);
+        assertEquals(单线程结果.最佳着法, 拆分结果.最佳着法);
+    }
+
+    private static GomokuBoard 开局棋盘() {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        int 玩家 = GomokuBoard.BLACK;
+        for (int[] 着法 : 开局) {
+            棋盘.makeMove(着法[0], 着法[1], 玩家);
+            玩家 = GomokuBoard.getOpponent(玩家);
+        }
+        return 棋盘;
+    }
+
+    private static void 沿主变例走两步(GomokuBoard 棋盘, int[] 主变例) {
+        assertTrue(棋盘.makeMove(主变例[0] / GomokuBoard.BOARD_SIZE, 主变例[0] % GomokuBoard.BOARD_SIZE,
+                GomokuBoard.BLACK));
+        assertTrue(棋盘.makeMove(主变例[1] / GomokuBoard.BOARD_SIZE, 主变例[1] % GomokuBoard.BOARD_SIZE,
+                GomokuBoard.WHITE));
+    }
+
+    private static int[] 主变例(MinimaxSearch 搜索) throws Exception {
+        Field 着法 = MinimaxSearch.class.getDeclaredField("主变例");
+        Field 长度 = MinimaxSearch.class.getDeclaredField("主变例长度");
+        着法.setAccessible(true);
+        长度.setAccessible(true);
+        int[] 全部 = (int[]) 着法.get(搜索);
+        int[] 结果 = new int[长度.getInt(搜索)];
+        System.arraycopy(全部, 0, 结果, 0, 结果.length);
+        return 结果;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 挂载NNUE网络时PatternEvaluator.评估局面的决定性局面处理
+ * 用输出恒为给定值的网络（权重全为0，只有输出偏置）模拟任意大小的网络分数
+ */
+public class NNUEEvaluationTest {
+
+    private static final int[] 网络输出 = {
+        Integer.MIN_VALUE / 2, -50_000_000, -5518, 0, 18375, 50_000_000, Integer.MAX_VALUE / 2
+    };
+
+    @Test
+    public void five_outranksAnyNetworkOutput() {
+        for (int 输出 : 网络输出) {
+            NNUENetwork 网络 = 常数网络(输出);
+            GomokuBoard 平静 = 平静局面();
+            平静.setNetwork(网络);
+            int 最高 = Math.max(PatternEvaluator.评估局面(平静, GomokuBoard.BLACK),
+                    PatternEvaluator.评估局面(平静, GomokuBoard.WHITE));
+            int 最低 = Math.min(PatternEvaluator.评估局面(平静, GomokuBoard.BLACK),
+                    PatternEvaluator.评估局面(平静, GomokuBoard.WHITE));
+
+            GomokuBoard 连五 = 平静局面();
+            for (int y = 3; y <= 7; y++) {
+                连五.makeMove(7, y, GomokuBoard.BLACK);
+            }
+            连五.setNetwork(网络);
+            assertTrue("network output " + 输出, PatternEvaluator.评估局面(连五, GomokuBoard.BLACK) > 最高);
+            assertTrue("network output " + 输出, PatternEvaluator.评估局面(连五, GomokuBoard.WHITE) < 最低);
+            assertEquals(PatternEvaluator.连五, PatternEvaluator.评估局面(连五, GomokuBoard.BLACK));
+        }
+    }
+
+    @Test
+    public void openFour_outranksAnyNetworkOutputButNotFive() {
+        assertTrue(PatternEvaluator.活四 > PatternEvaluator.网络分数上限);
+        assertTrue(PatternEvaluator.连五 > PatternEvaluator.活四);
+        for (int 输出 : 网络输出) {
+            NNUENetwork 网络 = 常数网络(输出);
+            GomokuBoard 活四 = 平静局面();
+            for (int y = 4; y <= 7; y++) {
+                活四.makeMove(7, y, GomokuBoard.WHITE);
+            }
+            活四.setNetwork(网络);
+            assertEquals(PatternEvaluator.活四, PatternEvaluator.评估局面(活四, GomokuBoard.WHITE));
+            assertEquals(-PatternEvaluator.活四, PatternEvaluator.评估局面(活四, GomokuBoard.BLACK));
+        }
+    }
+
+    @Test
+    public void quietPosition_usesNetwork() {
+        GomokuBoard 棋盘 = 平静局面();
+        棋盘.setNetwork(常数网络(1234));
+        assertEquals(1234, PatternEvaluator.评估局面(棋盘, GomokuBoard.BLACK));
+        assertEquals(1234, PatternEvaluator.评估局面(棋盘, GomokuBoard.WHITE));
+
+        棋盘.setNetwork(常数网络(Integer.MAX_VALUE / 2));
+        assertEquals(PatternEvaluator.网络分数上限, PatternEvaluator.评估局面(棋盘, GomokuBoard.BLACK));
+    }
+
+    /**
+     * 隐藏层宽度1、所有权重为0的网络，输出比例1 << 16，评估结果恒为输出偏置
+     */
+    private static NNUENetwork 常数网络(int 输出) {
+        return new NNUENetwork(1, new short[NNUENetwork.特征数], new short[1], new byte[2], 输出, 1 << 16);
+    }
+
+    /**
+     * 6个互不相邻的棋子，没有活三和四
+     */
+    private static GomokuBoard 平静局面() {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        棋盘.makeMove(0, 0, GomokuBoard.BLACK);
+        棋盘.makeMove(0, 14, GomokuBoard.WHITE);
+        棋盘.makeMove(14, 0, GomokuBoard.BLACK);
+        棋盘.makeMove(14, 14, GomokuBoard.WHITE);
+        棋盘.makeMove(0, 7, GomokuBoard.BLACK);
+        棋盘.makeMove(14, 7, GomokuBoard.WHITE);
+        return 棋盘;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 位棋盘 + LinePatternTable查表的棋型评估与最初逐格扫描实现的等价性测试
+ * 基准扫描照搬自最初的PatternEvaluator：对每个起点、每个方向按连五、四、三、二、一的顺序
+ * 逐个比较模式数组，取第一个匹配的棋型分数
+ */
+public class PatternScoreTest {
+
+    private static final int[][] 方向 = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+    // 与LinePatternTable的类别编号一一对应的基准分数
+    private static final int[] 类别基准分数 = {
+        0,
+        PatternEvaluator.眠一, PatternEvaluator.活一,
+        PatternEvaluator.眠二, PatternEvaluator.活二,
+        PatternEvaluator.眠三, PatternEvaluator.活三,
+        PatternEvaluator.冲四, PatternEvaluator.活四,
+        PatternEvaluator.连五
+    };
+
+    @Test
+    public void incrementalScores_matchBaselineScan() {
+        Random 随机 = new Random(2024);
+        for (int 局 = 0; 局 < 200; 局++) {
+            GomokuBoard 棋盘 = new GomokuBoard();
+            Deque<int[]> 着法栈 = new ArrayDeque<>();
+            int 步数 = 10 + 随机.nextInt(90);
+            for (int 步 = 0; 步 < 步数; 步++) {
+                if (!着法栈.isEmpty() && 随机.nextInt(4) == 0) {
+                    int[] 着法 = 着法栈.pop();
+                    棋盘.undoMove(着法[0], 着法[1]);
+                } else {
+                    int x = 3 + 随机.nextInt(9);
+                    int y = 3 + 随机.nextInt(9);
+                    if (随机.nextInt(4) == 0) {
+                        x = 随机.nextInt(GomokuBoard.BOARD_SIZE);
+                        y = 随机.nextInt(GomokuBoard.BOARD_SIZE);
+                    }
+                    if (棋盘.makeMove(x, y, 随机.nextBoolean() ? GomokuBoard.BLACK : GomokuBoard.WHITE)) {
+                        着法栈.push(new int[]{x, y});
+                    }
+                }
+                // 隔几步再查询，让多条线同时处于待刷新状态
+                if (随机.nextInt(3) == 0) {
+                    比较(随机.nextInt(4) == 0 ? new GomokuBoard(棋盘) : 棋盘);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void initFromArray_matchesBaselineScan() {
+        Random 随机 = new Random(99);
+        GomokuBoard 棋盘 = new GomokuBoard();
+        for (int 局 = 0; 局 < 300; 局++) {
+            int[][] 数组 = new int[GomokuBoard.BOARD_SIZE][GomokuBoard.BOARD_SIZE];
+            int 密度 = 1 + 随机.nextInt(6);
+            for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+                for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                    if (随机.nextInt(10) < 密度) {
+                        数组[x][y] = 随机.nextBoolean() ? GomokuBoard.BLACK : GomokuBoard.WHITE;
+                    }
+                }
+            }
+            棋盘.initFromArray(数组);
+            比较(棋盘);
+        }
+    }
+
+    /**
+     * 双方的棋型总分、各类棋型数量和传统评估分数都必须与基准扫描相同
+     */
+    private static void 比较(GomokuBoard 棋盘) {
+        int[][] 基准计数 = {null, 扫描(棋盘, GomokuBoard.BLACK), 扫描(棋盘, GomokuBoard.WHITE)};
+        for (int 玩家 = GomokuBoard.BLACK; 玩家 <= GomokuBoard.WHITE; 玩家++) {
+            int 基准总分 = 0;
+            for (int 类别 = 1; 类别 < LinePatternTable.类别数; 类别++) {
+                基准总分 += 基准计数[玩家][类别] * 类别基准分数[类别];
+                if (棋盘.getPatternCount(玩家, 类别) != 基准计数[玩家][类别]) {
+                    fail("class " + 类别 + " count of player " + 玩家 + ": expected " + 基准计数[玩家][类别]
+                            + " but was " + 棋盘.getPatternCount(玩家, 类别) + "\n" + 棋盘);
+                }
+            }
+            if (棋盘.getPatternScore(玩家) != 基准总分) {
+                fail("pattern score of player " + 玩家 + ": expected " + 基准总分
+                        + " but was " + 棋盘.getPatternScore(玩家) + "\n" + 棋盘);
+            }
+            int 对手 = GomokuBoard.getOpponent(玩家);
+            int 基准评估 = 基准评估局面(基准计数[玩家], 基准计数[对手]);
+            if (PatternEvaluator.评估局面(棋盘, 玩家) != 基准评估) {
+                fail("评估局面 for player " + 玩家 + ": expected " + 基准评估
+                        + " but was " + PatternEvaluator.评估局面(棋盘, 玩家) + "\n" + 棋盘);
+            }
+        }
+    }
+
+    // ---- 以下为最初PatternEvaluator的逐格扫描实现，每个起点和方向的结果按类别计数 ----
+
+    private static int[] 扫描(GomokuBoard 棋盘, int 玩家) {
+        int[] 计数 = new int[LinePatternTable.类别数];
+        for (int x = 0; x < GomokuBoard.BOARD_SIZE; x++) {
+            for (int y = 0; y < GomokuBoard.BOARD_SIZE; y++) {
+                for (int[] 方向向量 : 方向) {
+                    int 分数 = 评估位置棋型(棋盘, x, y, 方向向量[0], 方向向量[1], 玩家);
+                    for (int 类别 = 1; 类别 < LinePatternTable.类别数; 类别++) {
+                        if (分数 == 类别基准分数[类别]) {
+                            计数[类别]++;
+                        }
+                    }
+                }
+            }
+        }
+        return 计数;
+    }
+
+    /**
+     * 最初的传统评估：攻击分 - 防御分 * 防御权重 + 强制防守扣分
+     */
+    private static int 基准评估局面(int[] 己方, int[] 对手) {
+        int 攻击分 = 计算棋型分数(己方);
+        int 防御分 = (int) (计算棋型分数(对手) * PatternEvaluator.防御权重);
+        int 威胁分 = 0;
+        if (对手[LinePatternTable.类_活三] > 0) {
+            威胁分 -= PatternEvaluator.活三 * 3;
+        }
+        if (对手[LinePatternTable.类_冲四] > 0 || 对手[LinePatternTable.类_活四] > 0) {
+            威胁分 -= PatternEvaluator.冲四 * 2;
+        }
+        return 攻击分 - 防御分 + 威胁分;
+    }
+
+    /**
+     * 全部起点的棋型分数之和加上双三、四三、双四的组合分
+     */
+    private static int 计算棋型分数(int[] 计数) {
+        int 分数 = 0;
+        for (int 类别 = 1; 类别 < LinePatternTable.类别数; 类别++) {
+            分数 += 计数[类别] * 类别基准分数[类别];
+        }
+
+        int 活四数 = 计数[LinePatternTable.类_活四];
+        int 冲四数 = 计数[LinePatternTable.类_冲四];
+        int 活三数 = 计数[LinePatternTable.类_活三];
+        if (活三数 >= 2) {
+            分数 += PatternEvaluator.双三胜;
+        }
+        if ((活四数 >= 1 || 冲四数 >= 1) && 活三数 >= 1) {
+            分数 += PatternEvaluator.四三胜;
+        }
+        if (冲四数 >= 2) {
+            分数 += PatternEvaluator.双四胜;
+        }
+        return 分数;
+    }
+
+    private static int 评估位置棋型(GomokuBoard 棋盘, int x, int y, int dx, int dy, int 玩家) {
+        int 己 = 玩家;
+        // 连五：XXXXX
+        if (检查模式(棋盘, x, y, dx, dy, 己, 己, 己, 己, 己)) {
+            return PatternEvaluator.连五;
+        }
+        // 活四：_XXXX_
+        if (检查模式(棋盘, x, y, dx, dy, 0, 己, 己, 己, 己, 0)) {
+            return PatternEvaluator.活四;
+        }
+        // 冲四：XXXX_、_XXXX，跳冲四：XXX_X、X_XXX
+        if (检查模式(棋盘, x, y, dx, dy, 己, 己, 己, 己, 0)
+                || 检查模式(棋盘, x, y, dx, dy, 0, 己, 己, 己, 己)
+                || 检查模式(棋盘, x, y, dx, dy, 己, 己, 己, 0, 己)
+                || 检查模式(棋盘, x, y, dx, dy, 己, 0, 己, 己, 己)) {
+            return PatternEvaluator.冲四;
+        }
+        // 活三：_XXX_，跳活三：_XX_X_、_X_XX_
+        if (检查模式(棋盘, x, y, dx, dy, 0, 己, 己, 己, 0)
+                || 检查模式(棋盘, x, y, dx, dy, 0, 己, 己, 0, 己, 0)
+                || 检查模式(棋盘, x, y, dx, dy, 0, 己, 0, 己, 己, 0)) {
+            return PatternEvaluator.活三;
+        }
+        // 眠三：XXX_、_XXX，跳眠三：XX_X、X_XX
+        if (检查模式(棋盘, x, y, dx, dy, 己, 己, 己, 0)
+                || 检查模式(棋盘, x, y, dx, dy, 0, 己, 己, 己)
+                || 检查模式(棋盘, x, y, dx, dy, 己, 己, 0, 己)
+                || 检查模式(棋盘, x, y, dx, dy, 己, 0, 己, 己)) {
+            return PatternEvaluator.眠三;
+        }
+        // 活二：_XX_、_X_X_
+        if (检查模式(棋盘, x, y, dx, dy, 0, 己, 己, 0)
+                || 检查模式(棋盘, x, y, dx, dy, 0, 己, 0, 己, 0)) {
+            return PatternEvaluator.活二;
+        }
+        // 眠二：XX_、_XX
+        if (检查模式(棋盘, x, y, dx, dy, 己, 己, 0)
+                || 检查模式(棋盘, x, y, dx, dy, 0, 己, 己)) {
+            return PatternEvaluator.眠二;
+        }
+        // 活一：_X_，眠一：X_、_X
+        if (检查模式(棋盘, x, y, dx, dy, 0, 己, 0)) {
+            return PatternEvaluator.活一;
+        }
+        if (检查模式(棋盘, x, y, dx, dy, 己, 0) || 检查模式(棋盘, x, y, dx, dy, 0, 己)) {
+            return PatternEvaluator.眠一;
+        }
+        return 0;
+    }
+
+    /**
+     * 从(x, y)沿(dx, dy)逐格比较，0表示该格必须为空
+     */
+    private static boolean 检查模式(GomokuBoard 棋盘, int x, int y, int dx, int dy, int... 模式) {
+        if (!棋盘.isInBounds(x + dx * (模式.length - 1), y + dy * (模式.length - 1))) {
+            return false;
+        }
+        for (int i = 0; i < 模式.length; i++) {
+            int 实际值 = 棋盘.getStone(x + dx * i, y + dy * i);
+            if (模式[i] == 0 ? 实际值 != GomokuBoard.EMPTY : 实际值 != 模式[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ThreatIndex与PatternEvaluator逐格扫描的一致性测试
+ * 同一个索引跟随棋盘经历随机的落子/悔棋，每次查询都与逐格落子后调用PatternEvaluator的结果比较：
+ * - 成五点：与是否获胜手完全一致
+ * - 活三破解点：与落子后检查玩家活三威胁为false的格子完全一致
+ * - 威胁点：包含所有是否创造威胁的格子，且每个格子落子后确有冲四、活四或活三
+ */
+public class ThreatIndexTest {
+
+    private static final int 格子数 = GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE;
+
+    @Test
+    public void queries_matchPatternEvaluatorScans() {
+        Random 随机 = new Random(9);
+        int[] 输出 = new int[格子数];
+        int 非空成五 = 0;
+        int 非空破解 = 0;
+        for (int 局 = 0; 局 < 60; 局++) {
+            GomokuBoard 棋盘 = new GomokuBoard();
+            ThreatIndex 索引 = new ThreatIndex(棋盘);
+            Deque<int[]> 着法栈 = new ArrayDeque<>();
+            int 玩家 = GomokuBoard.BLACK;
+            for (int 步 = 0; 步 < 80; 步++) {
+                if (!着法栈.isEmpty() && 随机.nextInt(5) == 0) {
+                    int[] 着法 = 着法栈.pop();
+                    棋盘.undoMove(着法[0], 着法[1]);
+                } else {
+                    int x = 4 + 随机.nextInt(7);
+                    int y = 4 + 随机.nextInt(7);
+                    if (棋盘.makeMove(x, y, 玩家)) {
+                        着法栈.push(new int[]{x, y});
+                        玩家 = GomokuBoard.getOpponent(玩家);
+                    }
+                }
+                // 有时隔几步才查询，索引需要一次重算多条变化过的线
+                if (随机.nextInt(3) == 0) {
+                    continue;
+                }
+                for (int 查询方 = GomokuBoard.BLACK; 查询方 <= GomokuBoard.WHITE; 查询方++) {
+                    int 对手 = GomokuBoard.getOpponent(查询方);
+
+                    BitSet 成五 = 转为集合(输出, 索引.成五点(查询方, 输出));
+                    比较集合("成五点 of player " + 查询方, 扫描成五点(棋盘, 查询方), 成五, 棋盘);
+
+                    BitSet 破解 = 转为集合(输出, 索引.活三破解点(对手, 输出));
+                    比较集合("活三破解点 against player " + 对手, 扫描活三破解点(棋盘, 对手), 破解, 棋盘);
+
+                    检查威胁点(棋盘, 查询方, 转为集合(输出, 索引.威胁点(查询方, 输出)));
+
+                    非空成五 += 成五.isEmpty() ? 0 : 1;
+                    非空破解 += 破解.isEmpty() ? 0 : 1;
+                }
+            }
+        }
+        // 随机局面中必须出现过成五点和活三破解点，否则比较没有意义
+        assertTrue(非空成五 > 0);
+        assertTrue(非空破解 > 0);
+    }
+
+    /**
+     * GomokuAI整局复用同一个搜索棋盘和索引，每次搜索前把对局棋盘copyFrom过来：
+     * 复制之后（包括复制来另一局完全不同的局面）查询结果必须与新建的索引相同
+     */
+    @Test
+    public void reusedIndex_matchesFreshIndexAfterCopyFrom() {
+        Random 随机 = new Random(17);
+        GomokuBoard 搜索棋盘 = new GomokuBoard();
+        ThreatIndex 索引 = new ThreatIndex(搜索棋盘);
+        int[] 输出 = new int[格子数];
+        int[] 期望输出 = new int[格子数];
+        for (int 局 = 0; 局 < 40; 局++) {
+            GomokuBoard 对局 = new GomokuBoard();
+            int 玩家 = GomokuBoard.BLACK;
+            for (int 步 = 0; 步 < 60; 步++) {
+                if (对局.makeMove(4 + 随机.nextInt(7), 4 + 随机.nextInt(7), 玩家)) {
+                    玩家 = GomokuBoard.getOpponent(玩家);
+                }
+                if (随机.nextInt(4) != 0) {
+                    continue;
+                }
+                搜索棋盘.copyFrom(对局);
+                ThreatIndex 新索引 = new ThreatIndex(对局);
+                for (int 查询方 = GomokuBoard.BLACK; 查询方 <= GomokuBoard.WHITE; 查询方++) {
+                    比较集合("成五点 of player " + 查询方,
+                            转为集合(期望输出, 新索引.成五点(查询方, 期望输出)),
+                            转为集合(输出, 索引.成五点(查询方, 输出)), 对局);
+                    比较集合("威胁点 of player " + 查询方,
+                            转为集合(期望输出, 新索引.威胁点(查询方, 期望输出)),
+                            转为集合(输出, 索引.威胁点(查询方, 输出)), 对局);
+                    比较集合("活三破解点 against player " + 查询方,
+                            转为集合(期望输出, 新索引.活三破解点(查询方, 期望输出)),
+                            转为集合(输出, 索引.活三破解点(查询方, 输出)), 对局);
+                }
+            }
+        }
+    }
+
+    private static BitSet 扫描成五点(GomokuBoard 棋盘, int 玩家) {
+        BitSet 结果 = new BitSet(格子数);
+        for (int 格 = 0; 格 < 格子数; 格++) {
+            int x = 格 / GomokuBoard.BOARD_SIZE;
+            int y = 格 % GomokuBoard.BOARD_SIZE;
+            if (棋盘.isValidMove(x, y) && PatternEvaluator.是否获胜手(棋盘, x, y, 玩家)) {
+                结果.set(格);
+            }
+        }
+        return 结果;
+    }
+
+    private static BitSet 扫描活三破解点(GomokuBoard 棋盘, int 攻击方) {
+        BitSet 结果 = new BitSet(格子数);
+        if (!PatternEvaluator.检查玩家活三威胁(棋盘, 攻击方)) {
+            return 结果;
+        }
+        int 防守方 = GomokuBoard.getOpponent(攻击方);
+        for (int 格 = 0; 格 < 格子数; 格++) {
+            int x = 格 / GomokuBoard.BOARD_SIZE;
+            int y = 格 % GomokuBoard.BOARD_SIZE;
+            if (棋盘.makeMove(x, y, 防守方)) {
+                if (!PatternEvaluator.检查玩家活三威胁(棋盘, 攻击方)) {
+                    结果.set(格);
+                }
+                棋盘.undoMove(x, y);
+            }
+        }
+        return 结果;
+    }
+
+    /**
+     * 威胁点是检查紧急威胁逐个试下是否创造威胁的候选集，不能漏掉任何一个；
+     * 玩家已有冲四或双活三时是否创造威胁处处为true，只检查候选本身
+     */
+    private static void 检查威胁点(GomokuBoard 棋盘, int 玩家, BitSet 威胁点) {
+        boolean 已有威胁 = PatternEvaluator.检查玩家冲四威胁(棋盘, 玩家)
+                || 棋盘.getPatternCount(玩家, LinePatternTable.类_活三) >= 2;
+        for (int 格 = 0; 格 < 格子数; 格++) {
+            int x = 格 / GomokuBoard.BOARD_SIZE;
+            int y = 格 % GomokuBoard.BOARD_SIZE;
+            if (!棋盘.isValidMove(x, y)) {
+                if (威胁点.get(格)) {
+                    fail("威胁点 of player " + 玩家 + " contains occupied (" + x + "," + y + ")");
+                }
+                continue;
+            }
+            if (!已有威胁 && !威胁点.get(格) && PatternEvaluator.是否创造威胁(棋盘, x, y, 玩家)) {
+                fail("威胁点 of player " + 玩家 + " misses (" + x + "," + y + ")\n" + 棋盘);
+            }
+            if (威胁点.get(格)) {
+                棋盘.makeMove(x, y, 玩家);
+                boolean 有棋型 = PatternEvaluator.检查玩家冲四威胁(棋盘, 玩家)
+                        || PatternEvaluator.检查玩家活三威胁(棋盘, 玩家);
+                棋盘.undoMove(x, y);
+                if (!有棋型) {
+                    fail("威胁点 (" + x + "," + y + ") of player " + 玩家 + " makes no three or four\n" + 棋盘);
+                }
+            }
+        }
+    }
+
+    private static void 比较集合(String 名称, BitSet 期望, BitSet 实际, GomokuBoard 棋盘) {
+        if (!期望.equals(实际)) {
+            fail(名称 + ": expected " + 期望 + " but was " + 实际 + "\n" + 棋盘);
+        }
+    }
+
+    private static BitSet 转为集合(int[] 格子, int 数量) {
+        BitSet 集合 = new BitSet(格子数);
+        for (int i = 0; i < 数量; i++) {
+            集合.set(格子[i]);
+        }
+        return 集合;
+    }
+}
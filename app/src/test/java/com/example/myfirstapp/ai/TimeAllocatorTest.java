@@ -0,0 +1,123 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TimeAllocator.分配的时间分配规则
+ * 难度单步时间3000ms时整局预算为 3000 / 3 * 30 = 30000ms，开局时预算系数为1
+ */
+public class TimeAllocatorTest {
+
+    private static final long 单步时间 = 3000;
+
+    @Test
+    public void unlimitedDifficulty_allocatesNothing() {
+        assertEquals(0, new TimeAllocator(0).分配(平静局面()));
+    }
+
+    @Test
+    public void opening_getsReducedTime() {
+        TimeAllocator 分配器 = new TimeAllocator(单步时间);
+        assertEquals(30_000, 分配器.获取剩余时间());
+        assertEquals(1050, 分配器.分配(new GomokuBoard()));  // 3000 * 0.35
+    }
+
+    @Test
+    public void quietPosition_getsDifficultyTime() {
+        assertEquals(单步时间, new TimeAllocator(单步时间).分配(平静局面()));
+    }
+
+    @Test
+    public void threats_addTime() {
+        GomokuBoard 棋盘 = 平静局面();
+        // 黑棋横向活三
+        棋盘.makeMove(7, 5, GomokuBoard.BLACK);
+        棋盘.makeMove(7, 6, GomokuBoard.BLACK);
+        棋盘.makeMove(7, 7, GomokuBoard.BLACK);
+        int 威胁数 = 棋盘.getPatternCount(GomokuBoard.BLACK, LinePatternTable.类_活三);
+        assertTrue(威胁数 > 0);
+        assertEquals((long) (单步时间 * Math.min(1.8, 1 + 0.2 * 威胁数)), new TimeAllocator(单步时间).分配(棋盘));
+
+        // 威胁再多也不超过1.8倍
+        assertEquals(5400, new TimeAllocator(单步时间).分配(多威胁局面()));
+    }
+
+    @Test
+    public void savedBudget_raisesLimitUpToMaximum() {
+        TimeAllocator 分配器 = new TimeAllocator(单步时间);
+        // 走了20步都没用时间：剩余30000ms只需分摊到10步，预算系数3，截到1.5
+        for (int i = 0; i < 20; i++) {
+            分配器.记录(0);
+        }
+        assertEquals(4500, 分配器.分配(平静局面()));
+    }
+
+    @Test
+    public void overspentBudget_lowersLimitToMinimumFactor() {
+        TimeAllocator 分配器 = new TimeAllocator(单步时间);
+        // 剩余18000ms，按29步分摊，预算系数0.62
+        分配器.记录(12_000);
+        assertEquals((long) (单步时间 * (18_000.0 * 3 / (29 * 单步时间))), 分配器.分配(平静局面()));
+
+        // 剩余6000ms，系数0.21截到0.3
+        分配器.记录(12_000);
+        assertEquals(900, 分配器.分配(平静局面()));
+    }
+
+    @Test
+    public void singleMove_capsAtTwiceDifficultyTimeAndThirdOfRemaining() {
+        TimeAllocator 分配器 = new TimeAllocator(单步时间);
+        for (int i = 0; i < 20; i++) {
+            分配器.记录(0);
+        }
+        // 1.8 * 1.5 = 2.7倍，截到难度时间的2倍
+        assertEquals(6000, 分配器.分配(多威胁局面()));
+
+        // 剩余2400ms：3000 * 0.3 = 900超过剩余的1/3
+        分配器.新对局(单步时间);
+        分配器.记录(27_600);
+        assertEquals(800, 分配器.分配(平静局面()));
+    }
+
+    @Test
+    public void exhaustedBudget_keepsMinimumLimit() {
+        TimeAllocator 分配器 = new TimeAllocator(单步时间);
+        分配器.记录(40_000);
+        assertTrue(分配器.获取剩余时间() < 0);
+        assertEquals(100, 分配器.分配(平静局面()));
+
+        分配器.新对局(单步时间);
+        assertEquals(30_000, 分配器.获取剩余时间());
+    }
+
+    /**
+     * 6个互不相邻的棋子：过了开局，没有活三和四
+     */
+    private static GomokuBoard 平静局面() {
+        GomokuBoard 棋盘 = new GomokuBoard();
+        棋盘.makeMove(0, 0, GomokuBoard.BLACK);
+        棋盘.makeMove(0, 14, GomokuBoard.WHITE);
+        棋盘.makeMove(14, 0, GomokuBoard.BLACK);
+        棋盘.makeMove(14, 14, GomokuBoard.WHITE);
+        棋盘.makeMove(0, 7, GomokuBoard.BLACK);
+        棋盘.makeMove(14, 7, GomokuBoard.WHITE);
+        return 棋盘;
+    }
+
+    /**
+     * 双方合计至少4个活三或四
+     */
+    private static GomokuBoard 多威胁局面() {
+        GomokuBoard 棋盘 = 平静局面();
+        for (int y = 5; y <= 7; y++) {
+            棋盘.makeMove(3, y, GomokuBoard.WHITE);
+            棋盘.makeMove(7, y, GomokuBoard.BLACK);
+        }
+        for (int y = 5; y <= 8; y++) {
+            棋盘.makeMove(11, y, GomokuBoard.BLACK);
+        }
+        return 棋盘;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * TimeManager的硬限制、软限制与节点预算判断
+ * 涉及时间的用例只用远大于或远小于限制的等待，避免受机器速度影响
+ */
+public class TimeManagerTest {
+
+    private static final long 毫秒 = 1_000_000L;
+
+    @Test
+    public void nodeBudget_stopsOnceReached() {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(0, 0, 1000);
+        assertFalse(计时.应当停止(TimeManager.检查间隔));
+        assertFalse(计时.应当停止(TimeManager.检查间隔));
+        assertFalse(计时.应当停止(TimeManager.检查间隔));
+        assertTrue(计时.应当停止(TimeManager.检查间隔));  // 1024 >= 1000
+    }
+
+    @Test
+    public void hardLimit_stopsAfterDeadline() throws InterruptedException {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(10, 20, 0);
+        assertFalse(计时.应当停止(TimeManager.检查间隔));
+        Thread.sleep(60);
+        assertTrue(计时.应当停止(TimeManager.检查间隔));
+        assertTrue(计时.已用毫秒() >= 20);
+    }
+
+    @Test
+    public void unlimited_neverStops() {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(0, 0, 0);
+        assertFalse(计时.应当停止(Integer.MAX_VALUE));
+        assertTrue(计时.继续加深(1_000_000, 1000 * 毫秒));
+
+        // 换算成纳秒会溢出的限制同样视为不限
+        计时.开始(Long.MAX_VALUE, Long.MAX_VALUE, 0);
+        assertFalse(计时.应当停止(TimeManager.检查间隔));
+        assertTrue(计时.继续加深(1_000_000, 1000 * 毫秒));
+    }
+
+    @Test
+    public void softLimit_stopsDeepeningButNotSearch() throws InterruptedException {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(10, 10_000, 0);
+        assertTrue(计时.继续加深(100, 毫秒));
+        Thread.sleep(40);
+        assertFalse(计时.继续加深(400, 毫秒));
+        assertFalse(计时.应当停止(TimeManager.检查间隔));
+    }
+
+    @Test
+    public void extendSoftLimit_allowsAnotherIteration() throws InterruptedException {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(20, 10_000, 0);
+        Thread.sleep(40);
+        assertFalse(计时.继续加深(100, 毫秒));
+        计时.延长软限制(100);  // 软限制2秒，仍在硬限制之内
+        assertTrue(计时.继续加深(150, 毫秒));
+    }
+
+    @Test
+    public void branchingFactor_predictsNextIteration() {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(10_000, 100, 0);
+        assertEquals(0.0, 计时.获取有效分支因子(), 0.0);
+
+        // 第一层没有可比的上一层，按默认分支因子4估计：4 * 1ms 在100ms硬限制内
+        assertTrue(计时.继续加深(100, 毫秒));
+        // 分支因子10：预计下一层 10 * 20ms 超过硬限制，不再开始
+        assertFalse(计时.继续加深(1000, 20 * 毫秒));
+        assertEquals(10.0, 计时.获取有效分支因子(), 1e-9);
+
+        // 分支因子不低于1.5
+        计时.开始(10_000, 10_000, 0);
+        计时.继续加深(1000, 毫秒);
+        计时.继续加深(1000, 毫秒);
+        assertEquals(1.5, 计时.获取有效分支因子(), 1e-9);
+    }
+
+    @Test
+    public void branchingFactor_respectsNodeBudget() {
+        TimeManager 计时 = new TimeManager();
+        计时.开始(0, 0, 10_000);
+        计时.应当停止(1000);
+        // 已用1000，默认分支因子预计下一层4000个节点
+        assertTrue(计时.继续加深(1000, 0));
+        计时.应当停止(4000);
+        // 已用5000，分支因子4预计下一层16000个节点，超出预算
+        assertFalse(计时.继续加深(4000, 0));
+    }
+}
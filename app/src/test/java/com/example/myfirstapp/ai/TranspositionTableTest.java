@@ -0,0 +1,205 @@
+package com.example.myfirstapp.ai;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TranspositionTable: the packed data layout, store/probe round trips
+ * and the key ^ data check that turns torn or foreign slots into misses
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void dataWord_followsDocumentedLayout() {
+        TranspositionTable table = new TranspositionTable(1024);
+        for (int i = 0; i < 3; i++) {
+            table.newSearch();
+        }
+        table.clear();
+        table.clear();
+        int cell = 7 * GomokuBoard.BOARD_SIZE + 9;
+        table.store(42L, 13, -123456, TranspositionTable.UPPER_BOUND, cell);
+        long data = table.probe(42L);
+
+        assertEquals(-123456, (int) (data & 0xFFFFFFFFL));         // bits  0-31 score
+        assertEquals(13, (int) (data >>> 32) & 0xFF);              // bits 32-39 depth
+        assertEquals(TranspositionTable.UPPER_BOUND, (int) (data >>> 40) & 0x3); // bits 40-41 flag
+        assertEquals(cell, (int) (data >>> 42) & 0xFF);            // bits 42-49 move
+        assertEquals(5, (int) (data >>> 50) & 0xFF);               // bits 50-57 generation (clear() also bumps it)
+        assertEquals(2, (int) (data >>> 58) & 0x1F);               // bits 58-62 epoch
+        assertTrue(data < 0);                                      // bit  63 valid
+    }
+
+    @Test
+    public void storeAndProbe_roundTrip() {
+        TranspositionTable table = new TranspositionTable(1024);
+        int[] scores = {0, 1, -1, 987654, -987654, Integer.MAX_VALUE, Integer.MIN_VALUE + 1};
+        int[] flags = {TranspositionTable.EXACT, TranspositionTable.LOWER_BOUND, TranspositionTable.UPPER_BOUND};
+        long hash = 1;
+        for (int score : scores) {
+            for (int flag : flags) {
+                for (int depth : new int[]{0, 1, 20, 255}) {
+                    for (int cell : new int[]{0, 112, GomokuBoard.BOARD_SIZE * GomokuBoard.BOARD_SIZE - 1,
+                            TranspositionTable.NO_MOVE}) {
+                        hash = hash * 6364136223846793005L + 1442695040888963407L;
+                        table.store(hash, depth, score, flag, cell);
+                        long data = table.probe(hash);
+                        assertNotEquals(TranspositionTable.MISS, data);
+                        assertEquals(score, TranspositionTable.scoreOf(data));
+                        assertEquals(depth, TranspositionTable.depthOf(data));
+                        assertEquals(flag, TranspositionTable.flagOf(data));
+                        assertEquals(cell, TranspositionTable.moveOf(data));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void store_clampsDepthAndEncodesMoves() {
+        TranspositionTable table = new TranspositionTable(1024);
+
+        table.store(1L, 300, 5, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        assertEquals(255, TranspositionTable.depthOf(table.probe(1L)));
+
+        table.store(2L, -4, 5, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        assertEquals(0, TranspositionTable.depthOf(table.probe(2L)));
+
+        table.store(3L, 6, 5, TranspositionTable.EXACT, new GomokuEvaluator.Move(14, 3, 0));
+        assertEquals(14 * GomokuBoard.BOARD_SIZE + 3, TranspositionTable.moveOf(table.probe(3L)));
+
+        table.store(4L, 6, 5, TranspositionTable.EXACT, (GomokuEvaluator.Move) null);
+        assertEquals(TranspositionTable.NO_MOVE, TranspositionTable.moveOf(table.probe(4L)));
+    }
+
+    @Test
+    public void probe_rejectsOtherPositionsInTheSameBucket() {
+        TranspositionTable table = new TranspositionTable(16);  // 4 buckets: low 2 bits pick the bucket
+        table.store(0x100L, 5, 77, TranspositionTable.EXACT, 10);
+
+        assertEquals(77, TranspositionTable.scoreOf(table.probe(0x100L)));
+        assertEquals(TranspositionTable.MISS, table.probe(0x200L));
+        assertEquals(TranspositionTable.MISS, table.probe(0x100L ^ (1L << 40)));
+    }
+
+    @Test
+    public void probe_rejectsTornSlot() throws Exception {
+        TranspositionTable table = new TranspositionTable(4);   // a single bucket
+        table.store(0x10L, 5, 77, TranspositionTable.EXACT, 10);
+        table.store(0x20L, 9, -3, TranspositionTable.LOWER_BOUND, 20);
+        AtomicLongArray slots = slots(table);
+
+        // Pair the key word of one entry with the data word of the other, as a reader racing two writers would see
+        int first = findSlot(slots, table.probe(0x10L));
+        int second = findSlot(slots, table.probe(0x20L));
+        slots.set(first + 1, slots.get(second + 1));
+
+        assertEquals(TranspositionTable.MISS, table.probe(0x10L));
+        assertEquals(-3, TranspositionTable.scoreOf(table.probe(0x20L)));
+    }
+
+    @Test
+    public void concurrentWriters_neverProduceForeignData() throws Exception {
+        // 16 positions over the 4 buckets of a 16-slot table, so writers keep overwriting the slots readers probe
+        TranspositionTable table = new TranspositionTable(16);
+        long[] keys = new long[16];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = (k + 1) * 0x9E3779B97F4A7C15L;
+        }
+        AtomicBoolean foreign = new AtomicBoolean();
+        AtomicLong hits = new AtomicLong();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    // score and move are functions of the position, so data from another position is detectable
+                    int k = random.nextInt(keys.length);
+                    table.store(keys[k], random.nextInt(30), -1000 * k - 1, TranspositionTable.EXACT, k);
+                    int j = random.nextInt(keys.length);
+                    long data = table.probe(keys[j]);
+                    if (data != TranspositionTable.MISS) {
+                        hits.incrementAndGet();
+                        if (TranspositionTable.scoreOf(data) != -1000 * j - 1 || TranspositionTable.moveOf(data) != j) {
+                            foreign.set(true);
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(foreign.get());
+        assertTrue(hits.get() > 0);
+    }
+
+    @Test
+    public void clear_invalidatesEveryEntry() {
+        TranspositionTable table = new TranspositionTable(1024);
+        for (long hash = 1; hash <= 100; hash++) {
+            table.store(hash, 3, 1, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        }
+        table.clear();
+        for (long hash = 1; hash <= 100; hash++) {
+            assertEquals(TranspositionTable.MISS, table.probe(hash));
+        }
+    }
+
+    @Test
+    public void clearedEntries_areReplacedBeforeNewOnes() {
+        TranspositionTable table = new TranspositionTable(4);  // a single bucket
+        for (long hash = 1; hash <= 4; hash++) {
+            table.store(hash << 4, 30, 7, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        }
+        table.clear();
+        // Four shallow entries fit in the four slots the cleared deep entries occupied
+        for (long hash = 5; hash <= 8; hash++) {
+            table.store(hash << 4, 1, (int) hash, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+        }
+        for (long hash = 5; hash <= 8; hash++) {
+            assertEquals("entry " + hash, (int) hash, TranspositionTable.scoreOf(table.probe(hash << 4)));
+        }
+    }
+
+    @Test
+    public void staleDeepEntry_isReplacedAcrossGenerationWrap() {
+        for (int searches : new int[]{200, 255, 256 + 100}) {
+            TranspositionTable table = new TranspositionTable(4);  // a single bucket
+            table.store(1L, 20, 7, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+            for (int i = 0; i < searches; i++) {
+                table.newSearch();
+            }
+            for (long hash = 2; hash <= 5; hash++) {
+                table.store(hash << 4, 3, 1, TranspositionTable.EXACT, TranspositionTable.NO_MOVE);
+            }
+            assertEquals("after " + searches + " searches", TranspositionTable.MISS, table.probe(1L));
+        }
+    }
+
+    private static AtomicLongArray slots(TranspositionTable table) throws Exception {
+        Field field = TranspositionTable.class.getDeclaredField("table");
+        field.setAccessible(true);
+        return (AtomicLongArray) field.get(table);
+    }
+
+    /**
+     * Index of the key word of the slot holding this data word
+     */
+    private static int findSlot(AtomicLongArray slots, long data) {
+        for (int i = 0; i < slots.length(); i += 2) {
+            if (slots.get(i + 1) == data) {
+                return i;
+            }
+        }
+        throw new AssertionError("entry not found");
+    }
+}